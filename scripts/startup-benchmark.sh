@@ -0,0 +1,86 @@
+#!/usr/bin/env bash
+#
+# Measures how long the packaged application takes until it answers its first
+# HTTP request, and its resident memory at that point, for the fat jar as
+# built, the extracted jar, the extracted jar with Spring AOT, and with Spring
+# AOT and a class data sharing archive.
+#
+# Build with the aot profile first:
+#
+#   ./mvnw clean package -Paot -DskipTests
+#   scripts/startup-benchmark.sh [runs]
+#
+# Needs Linux for reading the resident memory from /proc.
+
+set -euo pipefail
+
+RUNS=${1:-5}
+PORT=${PORT:-8090}
+URL="http://localhost:$PORT/"
+WORK=target/startup-benchmark
+
+cd "$(dirname "$0")/.."
+
+JAR=$(ls target/*.jar 2>/dev/null | grep -v '\.original$' | head -n 1 || true)
+if [ -z "$JAR" ]; then
+    echo "No jar in target, run ./mvnw clean package -Paot -DskipTests" >&2
+    exit 1
+fi
+
+# The CDS archive needs an unpacked jar, and must be recreated for every build
+rm -rf "$WORK"
+java -Djarmode=tools -jar "$JAR" extract --destination "$WORK" >/dev/null
+mv "$WORK"/*.jar "$WORK/app.jar"
+echo "Training run for the CDS archive..."
+(cd "$WORK" && java -XX:ArchiveClassesAtExit=app.jsa -Dspring.aot.enabled=true \
+    -Dspring.context.exit=onRefresh -jar app.jar --spring.profiles.active=prod \
+    >training.log 2>&1)
+
+# Starts the given jar with the given JVM options, waits for the first
+# successful response and prints the elapsed milliseconds and the RSS in MB
+measure() {
+    local jar=$1
+    shift
+    local start pid elapsed rss
+    start=$(date +%s%N)
+    (cd "$WORK" && exec java "$@" -jar "$jar" --spring.profiles.active=prod \
+        --server.port="$PORT" >run.log 2>&1) &
+    pid=$!
+    until curl -s -o /dev/null -f "$URL"; do
+        if ! kill -0 "$pid" 2>/dev/null; then
+            echo "Application exited, see $WORK/run.log" >&2
+            exit 1
+        fi
+        sleep 0.05
+    done
+    elapsed=$(( ($(date +%s%N) - start) / 1000000 ))
+    rss=$(awk '/VmRSS/ { printf "%d", $2 / 1024 }' "/proc/$pid/status")
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+    echo "$elapsed $rss"
+}
+
+# Prints the median of the numbers on stdin
+median() {
+    sort -n | awk '{ values[NR] = $1 } END { print values[int((NR + 1) / 2)] }'
+}
+
+report() {
+    local name=$1
+    shift
+    local results=()
+    for ((i = 0; i < RUNS; i++)); do
+        results+=("$(measure "$@")")
+    done
+    local time rss
+    time=$(printf '%s\n' "${results[@]}" | cut -d' ' -f1 | median)
+    rss=$(printf '%s\n' "${results[@]}" | cut -d' ' -f2 | median)
+    printf '%-12s %10s ms %8s MB\n' "$name" "$time" "$rss"
+}
+
+echo "Median of $RUNS runs, time to first request and RSS:"
+report "fat jar" "$PWD/$JAR"
+report "extracted" app.jar
+report "aot" app.jar -Dspring.aot.enabled=true
+report "aot+cds" app.jar -XX:SharedArchiveFile=app.jsa \
+    -Dspring.aot.enabled=true
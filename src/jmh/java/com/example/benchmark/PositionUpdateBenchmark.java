@@ -0,0 +1,159 @@
+package com.example.benchmark;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+import com.example.geo.GeoFormat;
+import com.example.geo.Place;
+import com.example.geo.ReverseGeocoder;
+import com.example.track.TrackHistory;
+import com.vaadin.flow.component.map.configuration.Coordinate;
+import com.vaadin.flow.component.map.configuration.feature.MarkerFeature;
+import com.vaadin.flow.component.map.configuration.layer.FeatureLayer;
+
+/**
+ * Measures the per-update work of the position views: formatting the
+ * coordinate fields, formatting the timestamp, recording a log entry, looking
+ * up the nearest place and updating the map marker. Run with the GC profiler
+ * to see the allocation rate next to the throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PositionUpdateBenchmark {
+
+    /**
+     * The log entry record the coordinate log used to create per update.
+     */
+    record LogEntry(String time, double latitude, double longitude,
+            double accuracy) {
+    }
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter
+            .ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private final double latitude = 60.169857;
+    private final double longitude = 24.938379;
+    private final double accuracy = 12.5;
+    private final double altitude = 14.2;
+    private final double heading = 271.3;
+    private final double speed = 1.37;
+    private long timestamp;
+
+    private final GeoFormat format = new GeoFormat();
+    private ReverseGeocoder geocoder;
+    private ReverseGeocoder uncachedGeocoder;
+    private double geocodeOffset;
+    private TrackHistory history;
+    private FeatureLayer layer;
+    private MarkerFeature marker;
+
+    @Setup
+    public void setup() {
+        timestamp = System.currentTimeMillis();
+        history = new TrackHistory(1000);
+        layer = new FeatureLayer();
+        marker = new MarkerFeature(new Coordinate(longitude, latitude));
+        layer.addFeature(marker);
+        Resource cities = new ClassPathResource("geo/cities.txt");
+        geocoder = new ReverseGeocoder(cities, 0, 65536, 6);
+        uncachedGeocoder = new ReverseGeocoder(cities, 0, 1, 6);
+    }
+
+    @Benchmark
+    public void formatCoordinates(Blackhole blackhole) {
+        blackhole.consume(String.format("%.6f\u00B0", latitude));
+        blackhole.consume(String.format("%.6f\u00B0", longitude));
+        blackhole.consume(String.format("%.1f m", accuracy));
+        blackhole.consume(String.format("%.1f m", altitude));
+        blackhole.consume(String.format("%.1f\u00B0", heading));
+        blackhole.consume(String.format("%.2f m/s", speed));
+    }
+
+    @Benchmark
+    public void formatCoordinatesGeoFormat(Blackhole blackhole) {
+        blackhole.consume(format.degrees(latitude));
+        blackhole.consume(format.degrees(longitude));
+        blackhole.consume(format.meters(accuracy));
+        blackhole.consume(format.meters(altitude));
+        blackhole.consume(format.heading(heading));
+        blackhole.consume(format.speed(speed));
+    }
+
+    @Benchmark
+    public String formatTimeNewFormatter() {
+        return DateTimeFormatter.ofPattern("HH:mm:ss")
+                .withZone(ZoneId.systemDefault())
+                .format(Instant.ofEpochMilli(timestamp));
+    }
+
+    @Benchmark
+    public String formatTimeSharedFormatter() {
+        return TIME_FORMAT.format(Instant.ofEpochMilli(timestamp));
+    }
+
+    @Benchmark
+    public String formatTimeGeoFormat() {
+        return format.clockTime(timestamp);
+    }
+
+    @Benchmark
+    public LogEntry createLogEntry() {
+        String time = DateTimeFormatter.ofPattern("HH:mm:ss")
+                .withZone(ZoneId.systemDefault())
+                .format(Instant.ofEpochMilli(timestamp));
+        return new LogEntry(time, latitude, longitude, accuracy);
+    }
+
+    @Benchmark
+    public long addToTrackHistory() {
+        return history.add(latitude, longitude, accuracy, timestamp);
+    }
+
+    @Benchmark
+    public Place reverseGeocodeCached() {
+        return geocoder.nearest(latitude, longitude).orElseThrow();
+    }
+
+    @Benchmark
+    public Place reverseGeocodeUncached() {
+        // Alternate between two cells, so every lookup misses the cache
+        geocodeOffset = geocodeOffset == 0 ? 0.1 : 0;
+        return uncachedGeocoder
+                .nearest(latitude + geocodeOffset, longitude).orElseThrow();
+    }
+
+    @Benchmark
+    public MarkerFeature replaceMarker() {
+        layer.removeFeature(marker);
+        marker = new MarkerFeature(new Coordinate(longitude, latitude));
+        marker.setText("You are here");
+        layer.addFeature(marker);
+        return marker;
+    }
+
+    @Benchmark
+    public MarkerFeature moveMarker() {
+        marker.setCoordinates(new Coordinate(longitude, latitude));
+        return marker;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.track.StreamingSimplifier;
+import com.example.track.TrackSimplifier;
+
+/**
+ * Measures the cost per added point of the track simplifier on a synthetic
+ * random-walk track, and reports how many points each level keeps per point
+ * added.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TrackSimplifierBenchmark {
+
+    private static final int TRACK_POINTS = 1 << 16;
+
+    /**
+     * Ratio of points out to points in, per level, at the end of each
+     * iteration.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Ratio {
+        public double zoom12;
+        public double zoom18;
+    }
+
+    private final double[] latitudes = new double[TRACK_POINTS];
+    private final double[] longitudes = new double[TRACK_POINTS];
+    private TrackSimplifier simplifier;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void createTrack() {
+        // A walk at roughly 1.4 m/s with GPS noise, one fix per second
+        Random random = new Random(42);
+        double latitude = 60.17;
+        double longitude = 24.94;
+        double bearing = 0;
+        for (int i = 0; i < TRACK_POINTS; i++) {
+            bearing += random.nextGaussian() * 0.2;
+            latitude += Math.cos(bearing) * 1.4 / 111_320;
+            longitude += Math.sin(bearing) * 1.4 / 55_660;
+            latitudes[i] = latitude + random.nextGaussian() * 3 / 111_320;
+            longitudes[i] = longitude + random.nextGaussian() * 3 / 55_660;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void createSimplifier() {
+        simplifier = new TrackSimplifier(1000);
+        next = 0;
+    }
+
+    @Benchmark
+    public void addPoint(Ratio ratio) {
+        int i = next++ & (TRACK_POINTS - 1);
+        simplifier.add(latitudes[i], longitudes[i]);
+        ratio.zoom12 = ratio(simplifier.forZoom(12));
+        ratio.zoom18 = ratio(simplifier.forZoom(18));
+    }
+
+    private static double ratio(StreamingSimplifier level) {
+        return (double) level.size() / level.inputCount();
+    }
+}
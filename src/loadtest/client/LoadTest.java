@@ -0,0 +1,284 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Headless load test for the track view. Each simulated client opens the
+ * {@code track} route like a browser would, then keeps its UI alive by
+ * polling for changes. Positions are generated on the server by the
+ * {@code loadtest} profile, which also measures render latency.
+ * <p>
+ * Build the application with the {@code loadtest} Maven profile, start it
+ * with {@code --spring.profiles.active=loadtest} and run this file directly,
+ * without compiling:
+ *
+ * <pre>
+ * java src/loadtest/client/LoadTest.java clients=1000 ramp=60s duration=120s
+ * </pre>
+ *
+ * Arguments, all optional: {@code url} (default http://localhost:8080),
+ * {@code clients} (100), {@code ramp} (10s), {@code duration} (60s) and
+ * {@code poll} (1s), the interval between two requests of a client.
+ */
+public class LoadTest {
+
+    private static final Pattern CSRF_TOKEN = Pattern
+            .compile("\"Vaadin-Security-Key\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern UI_ID = Pattern
+            .compile("\"v-uiId\"\\s*:\\s*(\\d+)");
+    private static final Pattern SYNC_ID = Pattern
+            .compile("\"syncId\"\\s*:\\s*(-?\\d+)");
+    private static final Pattern SESSION_COOKIE = Pattern
+            .compile("(JSESSIONID=[^;]+)");
+    private static final Pattern STAT = Pattern
+            .compile("^(\\w+)=(.*)$", Pattern.MULTILINE);
+
+    private final URI base;
+    private final Duration poll;
+    private final HttpClient http = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(10)).build();
+    private final AtomicInteger connected = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong responseBytes = new AtomicLong();
+    private volatile boolean running = true;
+
+    LoadTest(URI base, Duration poll) {
+        this.base = base;
+        this.poll = poll;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            if (split < 0) {
+                System.err.println("Expected name=value: " + arg);
+                System.exit(1);
+            }
+            options.put(arg.substring(0, split), arg.substring(split + 1));
+        }
+        URI base = URI.create(
+                options.getOrDefault("url", "http://localhost:8080") + "/");
+        int clients = Integer.parseInt(options.getOrDefault("clients", "100"));
+        Duration ramp = duration(options.getOrDefault("ramp", "10s"));
+        Duration duration = duration(options.getOrDefault("duration", "60s"));
+        Duration poll = duration(options.getOrDefault("poll", "1s"));
+
+        new LoadTest(base, poll).run(clients, ramp, duration);
+    }
+
+    void run(int clients, Duration ramp, Duration duration)
+            throws Exception {
+        Map<String, String> before = stats(true);
+        System.out.printf("Baseline: %s MB heap after GC, %s sessions%n",
+                megabytes(before.get("heapUsed")), before.get("sessions"));
+
+        try (ExecutorService executor = Executors
+                .newVirtualThreadPerTaskExecutor()) {
+            long delayNanos = ramp.toNanos() / Math.max(1, clients);
+            long start = System.nanoTime();
+            for (int i = 0; i < clients; i++) {
+                executor.submit(this::client);
+                long next = start + (i + 1) * delayNanos;
+                long sleep = next - System.nanoTime();
+                if (sleep > 0) {
+                    Thread.sleep(Duration.ofNanos(sleep));
+                }
+            }
+            System.out.printf("Started %d clients, %d connected, %d failed%n",
+                    clients, connected.get(), failed.get());
+
+            // Measure the steady state only
+            post("loadtest/reset");
+            long end = System.nanoTime() + duration.toNanos();
+            while (System.nanoTime() < end) {
+                Thread.sleep(Duration.ofSeconds(5));
+                Map<String, String> stats = stats(false);
+                System.out.printf(
+                        "%s sessions, p50 %s ms, p99 %s ms, CPU %.0f%%, %d requests%n",
+                        stats.get("sessions"), stats.get("latencyP50"),
+                        stats.get("latencyP99"),
+                        Double.parseDouble(stats.get("processCpuLoad")) * 100,
+                        requests.get());
+            }
+
+            Map<String, String> after = stats(true);
+            running = false;
+            report(before, after);
+        }
+    }
+
+    private void report(Map<String, String> before, Map<String, String> after) {
+        int sessions = Integer.parseInt(after.get("sessions"));
+        long heapDelta = Long.parseLong(after.get("heapUsed"))
+                - Long.parseLong(before.get("heapUsed"));
+        long heapMax = Long.parseLong(after.get("heapMax"));
+
+        System.out.println();
+        System.out.printf("Sessions:          %d (%d failed)%n", sessions,
+                failed.get());
+        System.out.printf("Heap after GC:     %s MB (+%s MB)%n",
+                megabytes(after.get("heapUsed")),
+                megabytes(String.valueOf(heapDelta)));
+        if (sessions > 0) {
+            long perSession = heapDelta / sessions;
+            System.out.printf("Heap per session:  %d KB%n", perSession / 1024);
+            System.out.printf("Sessions in 2 GB:  ~%d%n",
+                    2L * 1024 * 1024 * 1024 / Math.max(1, perSession));
+            if (heapMax > 0) {
+                System.out.printf("Sessions in -Xmx:  ~%d%n",
+                        heapMax / Math.max(1, perSession));
+            }
+        }
+        System.out.printf("Render latency:    p50 %s ms, p90 %s ms, "
+                + "p99 %s ms, max %s ms (%s renders)%n",
+                after.get("latencyP50"), after.get("latencyP90"),
+                after.get("latencyP99"), after.get("latencyMax"),
+                after.get("renders"));
+        System.out.printf("Process CPU load:  %.0f%% of %s processors%n",
+                Double.parseDouble(after.get("processCpuLoad")) * 100,
+                after.get("availableProcessors"));
+        System.out.printf("Client traffic:    %d requests, %d MB received%n",
+                requests.get(), responseBytes.get() / (1024 * 1024));
+    }
+
+    /**
+     * One simulated browser: loads the page, initializes the UI and polls
+     * until the test ends.
+     */
+    private void client() {
+        try {
+            HttpResponse<String> page = send(HttpRequest
+                    .newBuilder(base.resolve("track")).GET(), null);
+            Matcher cookie = SESSION_COOKIE.matcher(String.join(";",
+                    page.headers().allValues("set-cookie")));
+            if (!cookie.find()) {
+                throw new IOException("No session cookie");
+            }
+            String session = cookie.group(1);
+
+            HttpResponse<String> init = send(HttpRequest
+                    .newBuilder(base.resolve("?v-r=init&location=track"
+                            + "&query=&v-bw=1280&v-bh=800&v-sw=1920"
+                            + "&v-sh=1080&v-wn=" + encode("loadtest")
+                            + "&v-tzo=0&v-tzid=UTC&v-dstd=0&v-rtzo=0"
+                            + "&v-dston=false&v-curdate="
+                            + System.currentTimeMillis()
+                            + "&v-td=false&v-pr=1&v-np=" + encode("Linux")))
+                    .GET(), session);
+            String csrfToken = find(CSRF_TOKEN, init.body());
+            String uiId = find(UI_ID, init.body());
+            int syncId = Integer.parseInt(find(SYNC_ID, init.body()));
+            int clientId = 0;
+            connected.incrementAndGet();
+
+            while (running) {
+                Thread.sleep(poll);
+                String message = "{\"csrfToken\":\"" + csrfToken
+                        + "\",\"rpc\":[],\"syncId\":" + syncId
+                        + ",\"clientId\":" + clientId + "}";
+                HttpResponse<String> response = send(HttpRequest
+                        .newBuilder(base.resolve(
+                                "?v-r=uidl&v-uiId=" + uiId))
+                        .header("Content-Type",
+                                "application/json; charset=UTF-8")
+                        .POST(HttpRequest.BodyPublishers.ofString(message)),
+                        session);
+                clientId++;
+                Matcher sync = SYNC_ID.matcher(response.body());
+                if (sync.find()) {
+                    syncId = Integer.parseInt(sync.group(1));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            if (failed.incrementAndGet() <= 5) {
+                System.err.println("Client failed: " + e);
+            }
+        }
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request,
+            String session) throws IOException, InterruptedException {
+        if (session != null) {
+            request.header("Cookie", session);
+        }
+        HttpResponse<String> response = http.send(
+                request.timeout(Duration.ofSeconds(30)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        requests.incrementAndGet();
+        responseBytes.addAndGet(response.body().length());
+        if (response.statusCode() != 200) {
+            throw new IOException("HTTP " + response.statusCode() + " for "
+                    + response.uri());
+        }
+        return response;
+    }
+
+    private Map<String, String> stats(boolean gc)
+            throws IOException, InterruptedException {
+        HttpResponse<String> response = http.send(HttpRequest
+                .newBuilder(base.resolve("loadtest/stats?gc=" + gc)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("HTTP " + response.statusCode()
+                    + " for the stats, is the loadtest profile active?");
+        }
+        Map<String, String> stats = new HashMap<>();
+        Matcher matcher = STAT.matcher(response.body());
+        while (matcher.find()) {
+            stats.put(matcher.group(1), matcher.group(2).trim());
+        }
+        return stats;
+    }
+
+    private void post(String path) throws IOException, InterruptedException {
+        http.send(HttpRequest.newBuilder(base.resolve(path))
+                .POST(HttpRequest.BodyPublishers.noBody()).build(),
+                HttpResponse.BodyHandlers.discarding());
+    }
+
+    private static String find(Pattern pattern, String text)
+            throws IOException {
+        Matcher matcher = pattern.matcher(text);
+        if (!matcher.find()) {
+            throw new IOException("No match for " + pattern + " in "
+                    + text.substring(0, Math.min(200, text.length())));
+        }
+        return matcher.group(1);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static String megabytes(String bytes) {
+        return String.valueOf(Long.parseLong(bytes) / (1024 * 1024));
+    }
+
+    private static Duration duration(String value) {
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.replace("ms", "")));
+        }
+        if (value.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(value.replace("m", "")));
+        }
+        return Duration.ofSeconds(Long.parseLong(value.replace("s", "")));
+    }
+}
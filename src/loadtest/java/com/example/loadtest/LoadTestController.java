@@ -0,0 +1,77 @@
+package com.example.loadtest;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.sun.management.OperatingSystemMXBean;
+
+/**
+ * Reports server side measurements for the load test harness as
+ * {@code key=value} lines: heap per tracked session, render latency
+ * percentiles and CPU load.
+ */
+@RestController
+@ConditionalOnProperty(name = "geo.simulation.enabled", havingValue = "true")
+public class LoadTestController {
+
+    private final SimulatedPositionSource source;
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final OperatingSystemMXBean os = ManagementFactory
+            .getPlatformMXBean(OperatingSystemMXBean.class);
+
+    public LoadTestController(SimulatedPositionSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Returns the current measurements.
+     *
+     * @param gc
+     *            whether to run a full GC first, so that the heap size only
+     *            includes live objects
+     */
+    @GetMapping(path = "/loadtest/stats", produces = MediaType.TEXT_PLAIN_VALUE)
+    public String stats(@RequestParam(defaultValue = "false") boolean gc) {
+        if (gc) {
+            System.gc();
+        }
+        long heapUsed = memory.getHeapMemoryUsage().getUsed();
+        int sessions = source.activeStreams();
+        LatencyHistogram latency = source.renderLatency();
+
+        StringBuilder result = new StringBuilder();
+        line(result, "sessions", sessions);
+        line(result, "rate", source.rate());
+        line(result, "fixes", source.generatedFixes());
+        line(result, "heapUsed", heapUsed);
+        line(result, "heapMax", memory.getHeapMemoryUsage().getMax());
+        line(result, "renders", latency.count());
+        line(result, "latencyP50", latency.percentile(50));
+        line(result, "latencyP90", latency.percentile(90));
+        line(result, "latencyP99", latency.percentile(99));
+        line(result, "latencyMax", latency.percentile(100));
+        line(result, "processCpuLoad", os.getProcessCpuLoad());
+        line(result, "processCpuTime", os.getProcessCpuTime());
+        line(result, "availableProcessors", os.getAvailableProcessors());
+        return result.toString();
+    }
+
+    /**
+     * Clears the latency histogram, for example after the warm-up phase.
+     */
+    @PostMapping("/loadtest/reset")
+    public void reset() {
+        source.renderLatency().reset();
+    }
+
+    private static void line(StringBuilder target, String key, Object value) {
+        target.append(key).append('=').append(value).append('\n');
+    }
+}
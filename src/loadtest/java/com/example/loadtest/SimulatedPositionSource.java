@@ -0,0 +1,180 @@
+package com.example.loadtest;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.example.geo.GeoMath;
+import com.example.track.Fix;
+import com.example.track.PositionFeed;
+import com.vaadin.flow.function.SerializableConsumer;
+import com.vaadin.flow.shared.Registration;
+
+/**
+ * Generates synthetic position streams in place of the browser Geolocation
+ * API, so that the tracking view can be load tested with headless clients.
+ * Each stream is a random walk around a common center, emitted at a fixed
+ * rate.
+ * <p>
+ * Only part of the application when built with the {@code loadtest} Maven
+ * profile, and only active when {@code geo.simulation.enabled} is
+ * {@code true}, as in the {@code loadtest} Spring profile.
+ */
+@Component
+@ConditionalOnProperty(name = "geo.simulation.enabled", havingValue = "true")
+public class SimulatedPositionSource implements PositionFeed {
+
+    private final double rateHz;
+    private final double centerLatitude;
+    private final double centerLongitude;
+    private final double radiusMeters;
+    private final double walkingSpeed;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private final AtomicLong generatedFixes = new AtomicLong();
+    private final LatencyHistogram renderLatency = new LatencyHistogram();
+
+    public SimulatedPositionSource(
+            @Value("${geo.simulation.rate:1}") double rateHz,
+            @Value("${geo.simulation.latitude:60.1699}") double centerLatitude,
+            @Value("${geo.simulation.longitude:24.9384}") double centerLongitude,
+            @Value("${geo.simulation.radius:2000}") double radiusMeters,
+            @Value("${geo.simulation.speed:1.4}") double walkingSpeed) {
+        if (!(rateHz > 0)) {
+            throw new IllegalArgumentException(
+                    "Simulation rate must be positive: " + rateHz);
+        }
+        this.rateHz = rateHz;
+        this.centerLatitude = centerLatitude;
+        this.centerLongitude = centerLongitude;
+        this.radiusMeters = radiusMeters;
+        this.walkingSpeed = walkingSpeed;
+        this.scheduler = Executors.newScheduledThreadPool(
+                Runtime.getRuntime().availableProcessors(), runnable -> {
+                    Thread thread = new Thread(runnable, "position-simulator");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Starts a new position stream. The first position is emitted right away,
+     * the following ones at the configured rate, on a simulator thread.
+     *
+     * @param consumer
+     *            receives the positions
+     * @return a registration that stops the stream
+     */
+    @Override
+    public Registration start(SerializableConsumer<Fix> consumer) {
+        Walk walk = new Walk(consumer);
+        long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rateHz);
+        // Spread the streams over the period so they do not all fire at once
+        long initialDelay = ThreadLocalRandom.current().nextLong(periodNanos);
+        ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(walk::step,
+                initialDelay, periodNanos, TimeUnit.NANOSECONDS);
+        activeStreams.incrementAndGet();
+        return () -> {
+            if (future.cancel(false)) {
+                activeStreams.decrementAndGet();
+            }
+        };
+    }
+
+    /**
+     * Records the time from generating a position until it was rendered.
+     */
+    @Override
+    public void rendered(Fix fix) {
+        renderLatency.record(System.currentTimeMillis() - fix.timestamp());
+    }
+
+    public int activeStreams() {
+        return activeStreams.get();
+    }
+
+    public long generatedFixes() {
+        return generatedFixes.get();
+    }
+
+    public LatencyHistogram renderLatency() {
+        return renderLatency;
+    }
+
+    public double rate() {
+        return rateHz;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * A random walk with a slowly changing heading that turns back towards
+     * the center when it gets too far.
+     */
+    private final class Walk {
+
+        private final SerializableConsumer<Fix> consumer;
+        private double latitude;
+        private double longitude;
+        private double heading;
+
+        Walk(SerializableConsumer<Fix> consumer) {
+            this.consumer = consumer;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            double distance = radiusMeters * Math.sqrt(random.nextDouble());
+            double bearing = random.nextDouble(2 * Math.PI);
+            latitude = centerLatitude + distance * Math.cos(bearing)
+                    / GeoMath.METERS_PER_DEGREE;
+            longitude = centerLongitude + distance * Math.sin(bearing)
+                    / metersPerDegreeLongitude();
+            heading = random.nextDouble(360);
+        }
+
+        void step() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            heading = (heading + random.nextGaussian() * 20 + 360) % 360;
+            if (GeoMath.distanceMeters(latitude, longitude, centerLatitude,
+                    centerLongitude) > radiusMeters) {
+                heading = (Math.toDegrees(Math.atan2(
+                        (centerLongitude - longitude)
+                                * metersPerDegreeLongitude(),
+                        (centerLatitude - latitude)
+                                * GeoMath.METERS_PER_DEGREE))
+                        + 360) % 360;
+            }
+            double step = walkingSpeed / rateHz;
+            latitude += step * Math.cos(Math.toRadians(heading))
+                    / GeoMath.METERS_PER_DEGREE;
+            longitude += step * Math.sin(Math.toRadians(heading))
+                    / metersPerDegreeLongitude();
+
+            generatedFixes.incrementAndGet();
+            try {
+                consumer.accept(new Fix(latitude, longitude,
+                        5 + random.nextDouble(15), null, null, heading,
+                        walkingSpeed, System.currentTimeMillis()));
+            } catch (RuntimeException e) {
+                // An exception would silently cancel the periodic task
+                // without updating the stream count
+            }
+        }
+
+        private double metersPerDegreeLongitude() {
+            return GeoMath.METERS_PER_DEGREE
+                    * Math.max(0.01, Math.cos(Math.toRadians(latitude)));
+        }
+    }
+}
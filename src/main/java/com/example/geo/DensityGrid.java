@@ -0,0 +1,326 @@
+package com.example.geo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.example.track.TrackStore;
+
+/**
+ * Number of recorded positions per area, at several resolutions, for drawing
+ * where users cluster.
+ * <p>
+ * Level {@code z} divides the Web Mercator square into {@code 2^z} by
+ * {@code 2^z} cells, like the map tiles of zoom level {@code z}. Each position
+ * increments one counter per level, so the counts for any zoom are available
+ * without visiting the positions. Counters are {@link LongAdder}s, which
+ * spread concurrent increments of a busy cell over several memory locations
+ * instead of contending on one. Only cells with positions take memory.
+ * <p>
+ * The grid is rebuilt from the {@link TrackStore} on startup, replaying the
+ * tracks in parallel. A position recorded meanwhile is counted in the new
+ * grid from {@link #add(String, double, double)} only if its track has been
+ * replayed already, so that it is neither lost nor counted twice. The
+ * handoff is per track rather than by timestamp, as timestamps come from the
+ * clocks of the devices. Counts are still approximate around a rebuild: a
+ * position appended while its track is being replayed, or to a track created
+ * as the rebuild starts, may be missed or counted twice. That is at most one
+ * position for each track being recorded at the time, and the next rebuild
+ * counts it correctly.
+ */
+@Component
+public class DensityGrid {
+
+    private static final Logger log = LoggerFactory
+            .getLogger(DensityGrid.class);
+
+    /**
+     * Latitude limit of the Web Mercator projection.
+     */
+    private static final double MAX_LATITUDE = 85.05112878;
+
+    /**
+     * A grid cell with at least one position.
+     *
+     * @param level
+     *            the resolution level
+     * @param x
+     *            column from the west
+     * @param y
+     *            row from the north
+     * @param count
+     *            number of positions in the cell
+     */
+    public record Cell(int level, int x, int y, long count) {
+
+        public double west() {
+            return longitude(x, level);
+        }
+
+        public double east() {
+            return longitude(x + 1, level);
+        }
+
+        public double north() {
+            return latitude(y, level);
+        }
+
+        public double south() {
+            return latitude(y + 1, level);
+        }
+    }
+
+    /**
+     * The counters of all levels.
+     */
+    private static final class Levels {
+
+        private final List<ConcurrentHashMap<Long, LongAdder>> cells;
+        private final LongAdder total = new LongAdder();
+
+        Levels(int maxLevel) {
+            cells = new ArrayList<>(maxLevel + 1);
+            for (int level = 0; level <= maxLevel; level++) {
+                cells.add(new ConcurrentHashMap<>());
+            }
+        }
+
+        void add(double latitude, double longitude) {
+            double x = mercatorX(longitude);
+            double y = mercatorY(latitude);
+            for (int level = 0; level < cells.size(); level++) {
+                int size = 1 << level;
+                long key = key(level, Math.min((int) (x * size), size - 1),
+                        Math.min((int) (y * size), size - 1));
+                ConcurrentHashMap<Long, LongAdder> levelCells = cells
+                        .get(level);
+                LongAdder counter = levelCells.get(key);
+                if (counter == null) {
+                    counter = levelCells.computeIfAbsent(key,
+                            k -> new LongAdder());
+                }
+                counter.increment();
+            }
+            total.increment();
+        }
+    }
+
+    /**
+     * A rebuild in progress.
+     *
+     * @param levels
+     *            the new counters
+     * @param pending
+     *            the tracks that have not been replayed yet
+     */
+    private record Rebuild(Levels levels, Set<String> pending) {
+    }
+
+    private final TrackStore trackStore;
+    private final int maxLevel;
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private volatile Levels levels;
+    private volatile Rebuild rebuild;
+
+    /**
+     * Creates a grid.
+     *
+     * @param trackStore
+     *            the store to rebuild the grid from
+     * @param maxLevel
+     *            the finest level, 16 has cells of about 600 m at the equator
+     */
+    public DensityGrid(TrackStore trackStore,
+            @Value("${geo.density.max-level:16}") int maxLevel) {
+        if (maxLevel < 0 || maxLevel > 24) {
+            throw new IllegalArgumentException(
+                    "Max level must be in [0, 24], was " + maxLevel);
+        }
+        this.trackStore = trackStore;
+        this.maxLevel = maxLevel;
+        this.levels = new Levels(maxLevel);
+    }
+
+    public int getMaxLevel() {
+        return maxLevel;
+    }
+
+    /**
+     * Returns the number of counted positions.
+     */
+    public long total() {
+        return levels.total.sum();
+    }
+
+    /**
+     * Counts a position that has been appended to a track in the store. May
+     * be called from any thread.
+     *
+     * @param trackId
+     *            the track the position was appended to
+     */
+    public void add(String trackId, double latitude, double longitude) {
+        Levels current = levels;
+        current.add(latitude, longitude);
+        // A running rebuild counts the position when it replays the track,
+        // unless that has happened already
+        Rebuild running = rebuild;
+        if (running != null && running.levels() != current
+                && !running.pending().contains(trackId)) {
+            running.levels().add(latitude, longitude);
+        }
+    }
+
+    /**
+     * Recounts all positions in the track store, replaying the tracks in
+     * parallel on the common fork/join pool. The current counts stay in use
+     * until the new ones are complete.
+     *
+     * @return the number of replayed positions
+     */
+    public long rebuild() {
+        rebuildLock.lock();
+        try {
+            long start = System.currentTimeMillis();
+            Levels rebuilt = new Levels(maxLevel);
+            List<String> tracks = trackStore.tracks();
+            Set<String> pending = ConcurrentHashMap.newKeySet();
+            pending.addAll(tracks);
+            rebuild = new Rebuild(rebuilt, pending);
+            long count;
+            try {
+                count = tracks.parallelStream().mapToLong(track -> {
+                    long replayed = trackStore.replay(track,
+                            (timestamp, latitude, longitude,
+                                    accuracy) -> rebuilt.add(latitude,
+                                            longitude));
+                    pending.remove(track);
+                    return replayed;
+                }).sum();
+                levels = rebuilt;
+            } finally {
+                rebuild = null;
+            }
+            log.info("Rebuilt density grid from {} positions in {} ms", count,
+                    System.currentTimeMillis() - start);
+            return count;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void rebuildOnStartup() {
+        Thread.ofVirtual().name("density-rebuild").start(() -> {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                log.error("Unable to rebuild density grid", e);
+            }
+        });
+    }
+
+    /**
+     * Returns the cells with positions on a level within an area.
+     *
+     * @param level
+     *            the level, from 0 to {@link #getMaxLevel()}
+     * @param south
+     *            southern edge of the area in degrees
+     * @param west
+     *            western edge of the area in degrees
+     * @param north
+     *            northern edge of the area in degrees
+     * @param east
+     *            eastern edge of the area in degrees
+     */
+    public List<Cell> cells(int level, double south, double west,
+            double north, double east) {
+        if (level < 0 || level > maxLevel) {
+            throw new IllegalArgumentException("Invalid level " + level);
+        }
+        int size = 1 << level;
+        int minX = Math.max(0, (int) (mercatorX(Math.max(west, -180)) * size));
+        int maxX = Math.min(size - 1,
+                (int) (mercatorX(Math.min(east, 180)) * size));
+        int minY = Math.max(0, (int) (mercatorY(north) * size));
+        int maxY = Math.min(size - 1, (int) (mercatorY(south) * size));
+        List<Cell> result = new ArrayList<>();
+        if (minX > maxX || minY > maxY) {
+            return result;
+        }
+
+        ConcurrentHashMap<Long, LongAdder> levelCells = levels.cells
+                .get(level);
+        long area = (long) (maxX - minX + 1) * (maxY - minY + 1);
+        if (area <= levelCells.size()) {
+            // Look up every cell of the area
+            for (int x = minX; x <= maxX; x++) {
+                for (int y = minY; y <= maxY; y++) {
+                    LongAdder counter = levelCells.get(key(level, x, y));
+                    if (counter != null) {
+                        result.add(new Cell(level, x, y, counter.sum()));
+                    }
+                }
+            }
+        } else {
+            // Fewer cells with positions than in the area
+            for (Map.Entry<Long, LongAdder> entry : levelCells.entrySet()) {
+                int x = (int) (entry.getKey() & (size - 1));
+                int y = (int) (entry.getKey() >>> level);
+                if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                    result.add(new Cell(level, x, y, entry.getValue().sum()));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the key of a cell: its index in row-major order. Up to level 16
+     * the index fits in an int and is its own hash code, whereas separate
+     * halves for x and y would hash all cells with the same {@code x ^ y} to
+     * one bucket.
+     */
+    private static long key(int level, int x, int y) {
+        return (long) y << level | x;
+    }
+
+    /**
+     * Returns the Web Mercator x of a longitude, from 0 in the west to 1 in
+     * the east.
+     */
+    private static double mercatorX(double longitude) {
+        return (longitude + 180) / 360;
+    }
+
+    /**
+     * Returns the Web Mercator y of a latitude, from 0 in the north to 1 in
+     * the south.
+     */
+    private static double mercatorY(double latitude) {
+        double sin = Math.sin(Math.toRadians(
+                Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude))));
+        return 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+    }
+
+    private static double longitude(int x, int level) {
+        return x * 360.0 / (1 << level) - 180;
+    }
+
+    private static double latitude(int y, int level) {
+        double n = Math.PI * (1 - 2.0 * y / (1 << level));
+        return Math.toDegrees(Math.atan(Math.sinh(n)));
+    }
+}
@@ -0,0 +1,336 @@
+package com.example.geo;
+
+import java.text.DecimalFormatSymbols;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Formats coordinates, distances, speeds and times for display without the
+ * overhead of {@link String#format(String, Object...)} and
+ * {@link DateTimeFormatter}. Values are written into a
+ * reusable buffer, and only the resulting string is allocated.
+ * <p>
+ * The output is identical to the {@code String.format} patterns and
+ * {@code DateTimeFormatter} patterns the views used before, for the locale and
+ * time zone the instance was created with. Values that cannot be formatted
+ * exactly with the fast path, such as decimal ties that depend on the shortest
+ * decimal representation of a double, are delegated to
+ * {@code String.format}.
+ * <p>
+ * Instances are not thread-safe; use one per UI.
+ */
+public class GeoFormat {
+
+    private static final long[] POWERS_OF_TEN = { 1L, 10L, 100L, 1_000L,
+            10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L };
+    private static final String[] FALLBACK_PATTERNS = { "%.0f", "%.1f",
+            "%.2f", "%.3f", "%.4f", "%.5f", "%.6f", "%.7f", "%.8f" };
+    /**
+     * Largest scaled value that is still exact enough in a double for the
+     * fast path.
+     */
+    private static final double MAX_SCALED = 1e15;
+    /**
+     * Distance from a decimal tie below which rounding is delegated to
+     * {@code String.format}.
+     */
+    private static final double TIE_EPSILON = 1e-6;
+    private static final int SECONDS_PER_DAY = 86_400;
+
+    private static final ConcurrentHashMap<Locale, Character> DECIMAL_SEPARATORS = new ConcurrentHashMap<>();
+
+    private final Locale locale;
+    private final ZoneRules zoneRules;
+    /**
+     * Decimal separator of the locale, or 0 if the locale uses other digits
+     * than ASCII and all numbers go through {@code String.format}.
+     */
+    private final char decimalSeparator;
+    private final StringBuilder buffer = new StringBuilder(32);
+
+    // Offset of the time zone, valid between two transitions
+    private long offsetValidFrom = Long.MAX_VALUE;
+    private long offsetValidUntil = Long.MIN_VALUE;
+    private int offsetSeconds;
+
+    /**
+     * Creates a formatter for the default format locale and the system time
+     * zone, which {@code String.format} and the views used.
+     */
+    public GeoFormat() {
+        this(Locale.getDefault(Locale.Category.FORMAT), ZoneId.systemDefault());
+    }
+
+    public GeoFormat(Locale locale, ZoneId zone) {
+        this.locale = locale;
+        this.zoneRules = zone.getRules();
+        this.decimalSeparator = DECIMAL_SEPARATORS.computeIfAbsent(locale,
+                key -> {
+                    DecimalFormatSymbols symbols = DecimalFormatSymbols
+                            .getInstance(key);
+                    return symbols.getZeroDigit() == '0'
+                            ? symbols.getDecimalSeparator()
+                            : (char) 0;
+                });
+    }
+
+    /**
+     * Formats a latitude or longitude like {@code "%.6f\u00B0"}.
+     */
+    public String degrees(double degrees) {
+        buffer.setLength(0);
+        appendFixed(buffer, degrees, 6);
+        return buffer.append('\u00B0').toString();
+    }
+
+    /**
+     * Formats a heading like {@code "%.1f\u00B0"}.
+     */
+    public String heading(double degrees) {
+        buffer.setLength(0);
+        appendFixed(buffer, degrees, 1);
+        return buffer.append('\u00B0').toString();
+    }
+
+    /**
+     * Formats a distance like {@code "%.1f m"}.
+     */
+    public String meters(double meters) {
+        buffer.setLength(0);
+        appendFixed(buffer, meters, 1);
+        return buffer.append(" m").toString();
+    }
+
+    /**
+     * Formats a speed like {@code "%.2f m/s"}.
+     */
+    public String speed(double metersPerSecond) {
+        buffer.setLength(0);
+        appendFixed(buffer, metersPerSecond, 2);
+        return buffer.append(" m/s").toString();
+    }
+
+    /**
+     * Formats a distance in meters below one kilometer and in kilometers with
+     * one decimal above, like {@code "%.0f m"} and {@code "%.1f km"}.
+     */
+    public String distance(double meters) {
+        buffer.setLength(0);
+        appendDistance(buffer, meters);
+        return buffer.toString();
+    }
+
+    /**
+     * Formats a place and the distance to it, like
+     * {@code "Helsinki, FI (1.2 km)"}.
+     */
+    public String place(Place place, double distanceMeters) {
+        buffer.setLength(0);
+        buffer.append(place.name());
+        if (!place.countryCode().isEmpty()) {
+            buffer.append(", ").append(place.countryCode());
+        }
+        buffer.append(" (");
+        appendDistance(buffer, distanceMeters);
+        return buffer.append(')').toString();
+    }
+
+    /**
+     * Formats an elapsed time in whole seconds, minutes or hours, like
+     * {@code "42 s"}, {@code "5 min"} or {@code "3 h"}.
+     *
+     * @param millis
+     *            the elapsed time in milliseconds
+     */
+    public String elapsed(long millis) {
+        buffer.setLength(0);
+        long seconds = millis / 1000;
+        if (seconds < 60) {
+            buffer.append(seconds).append(" s");
+        } else if (seconds < 3600) {
+            buffer.append(seconds / 60).append(" min");
+        } else {
+            buffer.append(seconds / 3600).append(" h");
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Formats a time like the {@code "HH:mm:ss"} pattern.
+     *
+     * @param epochMillis
+     *            the time in epoch milliseconds
+     */
+    public String clockTime(long epochMillis) {
+        buffer.setLength(0);
+        appendClockTime(buffer, epochMillis);
+        return buffer.toString();
+    }
+
+    /**
+     * Formats a date and time like the {@code "yyyy-MM-dd HH:mm:ss"} pattern.
+     *
+     * @param epochMillis
+     *            the time in epoch milliseconds
+     */
+    public String dateTime(long epochMillis) {
+        buffer.setLength(0);
+        appendDate(buffer, epochMillis);
+        buffer.append(' ');
+        appendClockTime(buffer, epochMillis);
+        return buffer.toString();
+    }
+
+    /**
+     * Formats a coordinate log row like
+     * {@code "%s  %.4f, %.4f  \u00B1%.0fm"} with the clock time of the position.
+     */
+    public String logRow(long epochMillis, double latitude, double longitude,
+            double accuracy) {
+        buffer.setLength(0);
+        appendClockTime(buffer, epochMillis);
+        buffer.append("  ");
+        appendFixed(buffer, latitude, 4);
+        buffer.append(", ");
+        appendFixed(buffer, longitude, 4);
+        buffer.append("  \u00B1");
+        appendFixed(buffer, accuracy, 0);
+        return buffer.append('m').toString();
+    }
+
+    /**
+     * Appends a number with a fixed number of decimals, like the {@code %.nf}
+     * conversion of {@link java.util.Formatter}.
+     *
+     * @param decimals
+     *            the number of decimals, from 0 to 8
+     */
+    public void appendFixed(StringBuilder target, double value, int decimals) {
+        double scaled = Math.abs(value) * POWERS_OF_TEN[decimals];
+        if (decimalSeparator == 0 || !(scaled < MAX_SCALED)) {
+            // Also covers NaN and infinity
+            target.append(String.format(locale, FALLBACK_PATTERNS[decimals],
+                    value));
+            return;
+        }
+        long whole = (long) scaled;
+        double fraction = scaled - whole;
+        if (Math.abs(fraction - 0.5) < TIE_EPSILON + 4 * Math.ulp(scaled)) {
+            // Formatter rounds the shortest decimal representation half up,
+            // which can differ from the binary value close to a tie. Both it
+            // and the scaling can be off by a few units in the last place,
+            // which for large values is more than the epsilon
+            target.append(String.format(locale, FALLBACK_PATTERNS[decimals],
+                    value));
+            return;
+        }
+        if (fraction > 0.5) {
+            whole++;
+        }
+
+        // Formatter keeps the sign of negative zero and of values rounding
+        // to zero
+        if (Double.compare(value, 0.0) < 0) {
+            target.append('-');
+        }
+        long divisor = POWERS_OF_TEN[decimals];
+        target.append(whole / divisor);
+        if (decimals > 0) {
+            target.append(decimalSeparator);
+            long remainder = whole % divisor;
+            for (int i = decimals - 1; i >= 0; i--) {
+                target.append((char) ('0' + remainder / POWERS_OF_TEN[i] % 10));
+            }
+        }
+    }
+
+    private void appendDistance(StringBuilder target, double meters) {
+        // Round first, so 999.6 m is shown as 1.0 km instead of 1000 m
+        if (Math.abs(meters) < 999.5) {
+            appendFixed(target, meters, 0);
+            target.append(" m");
+        } else {
+            appendFixed(target, meters / 1000, 1);
+            target.append(" km");
+        }
+    }
+
+    private void appendClockTime(StringBuilder target, long epochMillis) {
+        long localSeconds = toLocalSeconds(epochMillis);
+        int secondOfDay = (int) Math.floorMod(localSeconds, SECONDS_PER_DAY);
+        appendTwoDigits(target, secondOfDay / 3600);
+        target.append(':');
+        appendTwoDigits(target, secondOfDay / 60 % 60);
+        target.append(':');
+        appendTwoDigits(target, secondOfDay % 60);
+    }
+
+    private void appendDate(StringBuilder target, long epochMillis) {
+        long epochDay = Math.floorDiv(toLocalSeconds(epochMillis),
+                SECONDS_PER_DAY);
+        // Civil date from days since the epoch, see
+        // http://howardhinnant.github.io/date_algorithms.html#civil_from_days
+        long z = epochDay + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long dayOfEra = z - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524
+                - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra
+                - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3
+                : shiftedMonth - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        if (year < 1 || year > 9999) {
+            // Year of era and sign handling of the pattern, not worth
+            // duplicating
+            target.append(DateTimeFormatter.ofPattern("yyyy-MM-dd", locale)
+                    .format(LocalDate.of((int) year, month, day)));
+            return;
+        }
+        appendTwoDigits(target, (int) (year / 100));
+        appendTwoDigits(target, (int) (year % 100));
+        target.append('-');
+        appendTwoDigits(target, month);
+        target.append('-');
+        appendTwoDigits(target, day);
+    }
+
+    private long toLocalSeconds(long epochMillis) {
+        long epochSecond = Math.floorDiv(epochMillis, 1000);
+        if (epochSecond < offsetValidFrom || epochSecond >= offsetValidUntil) {
+            updateOffset(epochSecond);
+        }
+        return epochSecond + offsetSeconds;
+    }
+
+    private void updateOffset(long epochSecond) {
+        Instant instant = Instant.ofEpochSecond(epochSecond);
+        offsetSeconds = zoneRules.getOffset(instant).getTotalSeconds();
+        if (zoneRules.isFixedOffset()) {
+            offsetValidFrom = Long.MIN_VALUE;
+            offsetValidUntil = Long.MAX_VALUE;
+            return;
+        }
+        ZoneOffsetTransition previous = zoneRules
+                .previousTransition(instant.plusSeconds(1));
+        ZoneOffsetTransition next = zoneRules.nextTransition(instant);
+        offsetValidFrom = previous != null ? previous.toEpochSecond()
+                : Long.MIN_VALUE;
+        offsetValidUntil = next != null ? next.toEpochSecond()
+                : Long.MAX_VALUE;
+    }
+
+    private static void appendTwoDigits(StringBuilder target, int value) {
+        target.append((char) ('0' + value / 10))
+                .append((char) ('0' + value % 10));
+    }
+}
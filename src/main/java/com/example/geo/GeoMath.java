@@ -0,0 +1,47 @@
+package com.example.geo;
+
+/**
+ * Spherical earth helpers shared by the geo services.
+ */
+public final class GeoMath {
+
+    /**
+     * Mean earth radius in meters.
+     */
+    public static final double EARTH_RADIUS_METERS = 6_371_008.8;
+
+    /**
+     * Length of one degree of latitude in meters.
+     */
+    public static final double METERS_PER_DEGREE = Math.PI
+            * EARTH_RADIUS_METERS / 180;
+
+    private GeoMath() {
+    }
+
+    /**
+     * Returns the great-circle distance between two positions in meters.
+     */
+    public static double distanceMeters(double lat1, double lon1, double lat2,
+            double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double sinLat = Math.sin(dLat / 2);
+        double sinLon = Math.sin(dLon / 2);
+        double a = sinLat * sinLat + Math.cos(Math.toRadians(lat1))
+                * Math.cos(Math.toRadians(lat2)) * sinLon * sinLon;
+        return 2 * EARTH_RADIUS_METERS
+                * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    /**
+     * Normalizes a longitude to the range [-180, 180).
+     */
+    public static double normalizeLongitude(double longitude) {
+        double normalized = (longitude + 180) % 360;
+        if (normalized < 0) {
+            normalized += 360;
+        }
+        return normalized - 180;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.geo;
+
+/**
+ * The latest known position of a tracked session.
+ *
+ * @param id
+ *            the session id
+ * @param label
+ *            a display name for the session
+ * @param latitude
+ *            latitude in degrees
+ * @param longitude
+ *            longitude in degrees
+ * @param accuracy
+ *            accuracy radius in meters
+ * @param timestamp
+ *            time of the position in epoch milliseconds
+ */
+public record LiveSession(String id, String label, double latitude,
+        double longitude, double accuracy, long timestamp) {
+}
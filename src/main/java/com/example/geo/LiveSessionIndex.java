@@ -0,0 +1,228 @@
+package com.example.geo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Server-wide spatial index of the latest position of every tracked session.
+ * <p>
+ * Positions are bucketed into a grid of fixed-size latitude/longitude cells.
+ * Buckets are concurrent maps, so sessions updating in different cells never
+ * contend and a query only visits the cells overlapping its area instead of
+ * scanning every session. An area covering more cells than there are occupied
+ * ones visits the occupied cells instead, so that a large radius costs no
+ * more than the number of sessions.
+ */
+@Component
+public class LiveSessionIndex {
+
+    private final double cellSize;
+    private final int latitudeCells;
+    private final int longitudeCells;
+    private final ConcurrentHashMap<String, LiveSession> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, ConcurrentHashMap<String, LiveSession>> cells = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an index.
+     *
+     * @param cellSize
+     *            the size of a grid cell in degrees
+     */
+    public LiveSessionIndex(
+            @Value("${geo.live-index.cell-size:0.05}") double cellSize) {
+        if (!(cellSize > 0 && cellSize <= 90)) {
+            throw new IllegalArgumentException(
+                    "Cell size must be in (0, 90] degrees, was " + cellSize);
+        }
+        this.cellSize = cellSize;
+        latitudeCells = (int) Math.ceil(180 / cellSize);
+        longitudeCells = (int) Math.ceil(360 / cellSize);
+    }
+
+    /**
+     * Records the latest position of a session, adding the session if it is
+     * not yet indexed. Updates of a single session are expected to come from
+     * one thread at a time.
+     */
+    public void update(LiveSession session) {
+        long cell = cellOf(session.latitude(), session.longitude());
+        LiveSession previous = sessions.put(session.id(), session);
+        if (previous != null) {
+            long previousCell = cellOf(previous.latitude(),
+                    previous.longitude());
+            if (previousCell != cell) {
+                removeFromCell(previousCell, session.id());
+            }
+        }
+        // Insert inside compute, so a concurrent removal of the last entry
+        // of the bucket cannot drop the bucket this session is added to
+        cells.compute(cell, (key, bucket) -> {
+            ConcurrentHashMap<String, LiveSession> target = bucket != null
+                    ? bucket
+                    : new ConcurrentHashMap<>();
+            target.put(session.id(), session);
+            return target;
+        });
+    }
+
+    /**
+     * Removes a session from the index.
+     */
+    public void remove(String id) {
+        LiveSession previous = sessions.remove(id);
+        if (previous != null) {
+            removeFromCell(cellOf(previous.latitude(), previous.longitude()),
+                    id);
+        }
+    }
+
+    public Optional<LiveSession> get(String id) {
+        return Optional.ofNullable(sessions.get(id));
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    public Collection<LiveSession> all() {
+        return sessions.values();
+    }
+
+    /**
+     * Finds the sessions within the given distance of a position.
+     *
+     * @param radius
+     *            the search radius in meters
+     * @return the matching sessions in no particular order
+     */
+    public List<LiveSession> findWithin(double latitude, double longitude,
+            double radius) {
+        double latDelta = radius / GeoMath.METERS_PER_DEGREE;
+        // A circle around a pole covers every longitude
+        double lonDelta = Math.abs(latitude) + latDelta >= 90 ? 180
+                : latDelta / Math.cos(
+                        Math.toRadians(Math.abs(latitude) + latDelta));
+
+        List<LiveSession> result = new ArrayList<>();
+        forEachCell(latitude - latDelta, longitude - lonDelta,
+                latitude + latDelta, longitude + lonDelta, bucket -> {
+                    for (LiveSession session : bucket.values()) {
+                        if (GeoMath.distanceMeters(latitude, longitude,
+                                session.latitude(),
+                                session.longitude()) <= radius) {
+                            result.add(session);
+                        }
+                    }
+                });
+        return result;
+    }
+
+    /**
+     * Finds the sessions inside a bounding box. A box with
+     * {@code minLongitude > maxLongitude} crosses the antimeridian.
+     *
+     * @return the matching sessions in no particular order
+     */
+    public List<LiveSession> findInBox(double minLatitude,
+            double minLongitude, double maxLatitude, double maxLongitude) {
+        double normalizedMin = GeoMath.normalizeLongitude(minLongitude);
+        double normalizedMax = GeoMath.normalizeLongitude(maxLongitude);
+        boolean wraps = normalizedMin > normalizedMax
+                || maxLongitude - minLongitude >= 360;
+        double lonSpan = maxLongitude - minLongitude >= 360 ? 360
+                : (normalizedMax - normalizedMin + 360) % 360;
+
+        List<LiveSession> result = new ArrayList<>();
+        forEachCell(minLatitude, normalizedMin, maxLatitude,
+                normalizedMin + lonSpan, bucket -> {
+                    for (LiveSession session : bucket.values()) {
+                        double lat = session.latitude();
+                        double lon = GeoMath
+                                .normalizeLongitude(session.longitude());
+                        boolean lonInside = wraps
+                                ? lon >= normalizedMin || lon <= normalizedMax
+                                : lon >= normalizedMin
+                                        && lon <= normalizedMax;
+                        if (lat >= minLatitude && lat <= maxLatitude
+                                && lonInside) {
+                            result.add(session);
+                        }
+                    }
+                });
+        return result;
+    }
+
+    private void forEachCell(double minLatitude, double minLongitude,
+            double maxLatitude, double maxLongitude,
+            Consumer<ConcurrentHashMap<String, LiveSession>> action) {
+        int fromLat = latitudeCell(Math.max(-90, minLatitude));
+        int toLat = latitudeCell(Math.min(90, maxLatitude));
+        int fromLon = longitudeCell(minLongitude);
+        long lonCount = maxLongitude - minLongitude >= 360 ? longitudeCells
+                : Math.min(longitudeCells, (long) Math
+                        .floor((maxLongitude - minLongitude) / cellSize) + 2);
+
+        if ((long) (toLat - fromLat + 1) * lonCount > cells.size()) {
+            // Fewer occupied cells than cells in the area
+            for (Map.Entry<Long, ConcurrentHashMap<String, LiveSession>> entry : cells
+                    .entrySet()) {
+                int lat = (int) (entry.getKey() / longitudeCells);
+                int lon = (int) (entry.getKey() % longitudeCells);
+                if (lat >= fromLat && lat <= toLat && (lon - fromLon
+                        + longitudeCells) % longitudeCells < lonCount) {
+                    action.accept(entry.getValue());
+                }
+            }
+            return;
+        }
+        for (int lat = fromLat; lat <= toLat; lat++) {
+            for (long i = 0; i < lonCount; i++) {
+                int lon = (int) ((fromLon + i) % longitudeCells);
+                ConcurrentHashMap<String, LiveSession> bucket = cells
+                        .get(key(lat, lon));
+                if (bucket != null) {
+                    action.accept(bucket);
+                }
+            }
+        }
+    }
+
+    private void removeFromCell(long cell, String id) {
+        cells.computeIfPresent(cell, (key, bucket) -> {
+            bucket.remove(id);
+            return bucket.isEmpty() ? null : bucket;
+        });
+    }
+
+    private long cellOf(double latitude, double longitude) {
+        return key(latitudeCell(latitude), longitudeCell(longitude));
+    }
+
+    private int latitudeCell(double latitude) {
+        int cell = (int) Math.floor((latitude + 90) / cellSize);
+        return Math.max(0, Math.min(latitudeCells - 1, cell));
+    }
+
+    private int longitudeCell(double longitude) {
+        int cell = (int) Math.floor(
+                (GeoMath.normalizeLongitude(longitude) + 180) / cellSize);
+        return Math.min(longitudeCells - 1, cell);
+    }
+
+    /**
+     * Returns the index of a cell in row-major order. Separate halves for
+     * the two cells would give the same hash code to every cell with the
+     * same {@code latitudeCell ^ longitudeCell}.
+     */
+    private long key(int latitudeCell, int longitudeCell) {
+        return (long) latitudeCell * longitudeCells + longitudeCell;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.geo;
+
+/**
+ * A named place known to the {@link ReverseGeocoder}.
+ *
+ * @param name
+ *            the place name
+ * @param countryCode
+ *            ISO 3166 country code, or an empty string if not known
+ * @param latitude
+ *            latitude in degrees
+ * @param longitude
+ *            longitude in degrees
+ * @param population
+ *            number of inhabitants, or 0 if not known
+ */
+public record Place(String name, String countryCode, double latitude,
+        double longitude, long population) {
+}
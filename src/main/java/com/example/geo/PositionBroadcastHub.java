@@ -0,0 +1,150 @@
+package com.example.geo;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.example.track.Fix;
+import com.vaadin.flow.shared.Registration;
+
+/**
+ * Fans the positions of tracked sessions out to everyone following them.
+ * <p>
+ * Each position is published once as an immutable {@link SharedPosition}
+ * that all followers receive as is, so the cost of publishing does not
+ * depend on the number of followers beyond handing over a reference.
+ * Followers of a session are kept in a copy-on-write list, since positions
+ * are published far more often than followers come and go. Followers must
+ * not block; UIs should coalesce the positions they receive and render only
+ * the latest one.
+ * <p>
+ * The latest position of a session is kept, so a new follower sees it
+ * immediately instead of waiting for the next one.
+ */
+@Component
+public class PositionBroadcastHub {
+
+    private static final Logger log = LoggerFactory
+            .getLogger(PositionBroadcastHub.class);
+
+    /**
+     * A published position.
+     *
+     * @param sessionId
+     *            the id of the tracked session
+     * @param label
+     *            a display name for the session
+     * @param fix
+     *            the position
+     * @param place
+     *            the nearest place, or {@code null} if not known
+     * @param ended
+     *            whether the session has stopped tracking, in which case this
+     *            is its last position
+     */
+    public record SharedPosition(String sessionId, String label, Fix fix,
+            Place place, boolean ended) {
+    }
+
+    private static final class Channel {
+
+        private final List<Consumer<SharedPosition>> followers = new CopyOnWriteArrayList<>();
+        private volatile SharedPosition latest;
+    }
+
+    private final ConcurrentHashMap<String, Channel> channels = new ConcurrentHashMap<>();
+
+    /**
+     * Publishes a position to the followers of its session. Positions of a
+     * session are expected to be published from one thread at a time.
+     */
+    public void publish(SharedPosition position) {
+        Channel channel = channels.computeIfAbsent(position.sessionId(),
+                id -> new Channel());
+        channel.latest = position;
+        deliver(channel, position);
+    }
+
+    /**
+     * Tells the followers of a session that it has stopped tracking, by
+     * publishing its last position again as ended.
+     */
+    public void end(String sessionId) {
+        Channel channel = channels.get(sessionId);
+        if (channel == null) {
+            return;
+        }
+        SharedPosition last = channel.latest;
+        if (last != null && !last.ended()) {
+            SharedPosition ended = new SharedPosition(last.sessionId(),
+                    last.label(), last.fix(), last.place(), true);
+            channel.latest = ended;
+            deliver(channel, ended);
+        }
+        channels.computeIfPresent(sessionId,
+                (id, existing) -> existing.followers.isEmpty() ? null
+                        : existing);
+    }
+
+    /**
+     * Starts following a session. The follower immediately receives the
+     * latest position of the session, if there is one, and then every
+     * published position until the registration is removed. It is called
+     * from the publishing thread and must return quickly.
+     *
+     * @return a registration for no longer following the session
+     */
+    public Registration follow(String sessionId,
+            Consumer<SharedPosition> follower) {
+        // Added inside compute, so that a concurrent end() cannot drop the
+        // channel the follower is added to
+        Channel channel = channels.compute(sessionId, (id, existing) -> {
+            Channel target = existing != null ? existing : new Channel();
+            target.followers.add(follower);
+            return target;
+        });
+        SharedPosition latest = channel.latest;
+        if (latest != null) {
+            follower.accept(latest);
+        }
+        return () -> channels.computeIfPresent(sessionId, (id, existing) -> {
+            existing.followers.remove(follower);
+            SharedPosition last = existing.latest;
+            boolean active = last != null && !last.ended();
+            return existing.followers.isEmpty() && !active ? null : existing;
+        });
+    }
+
+    /**
+     * Returns the latest position of a session.
+     */
+    public Optional<SharedPosition> latest(String sessionId) {
+        Channel channel = channels.get(sessionId);
+        return channel == null ? Optional.empty()
+                : Optional.ofNullable(channel.latest);
+    }
+
+    /**
+     * Returns the number of followers of a session.
+     */
+    public int followers(String sessionId) {
+        Channel channel = channels.get(sessionId);
+        return channel == null ? 0 : channel.followers.size();
+    }
+
+    private static void deliver(Channel channel, SharedPosition position) {
+        for (Consumer<SharedPosition> follower : channel.followers) {
+            try {
+                follower.accept(position);
+            } catch (RuntimeException e) {
+                log.warn("Follower of {} failed", position.sessionId(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.example.geo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Finds the nearest named place of a position, fully offline.
+ * <p>
+ * Places are read once at startup from a file in the GeoNames dump format and
+ * stored in a KD-tree over unit vectors, so the search has no special cases at
+ * the poles or the antimeridian. The tree is a set of primitive arrays in
+ * implicit layout: the root of every subtree is the middle element of its
+ * range.
+ * <p>
+ * Results are memoized in a lock-free direct-mapped cache keyed by geohash
+ * cell, so positions of many sessions in the same area are answered without
+ * searching. All positions in a cell get the place nearest to the first
+ * position looked up in it, which can differ from the exact answer close to
+ * the midpoint of two places.
+ */
+@Component
+public class ReverseGeocoder {
+
+    private static final Logger log = LoggerFactory
+            .getLogger(ReverseGeocoder.class);
+
+    // Columns of the GeoNames dump format
+    private static final int NAME = 1;
+    private static final int LATITUDE = 4;
+    private static final int LONGITUDE = 5;
+    private static final int COUNTRY_CODE = 8;
+    private static final int POPULATION = 14;
+
+    private static final int MAX_GEOHASH_PRECISION = 12;
+
+    private final Place[] places;
+    /**
+     * Unit vectors of the places in tree order, three values per place.
+     */
+    private final double[] points;
+    /**
+     * Index into {@link #places} of each tree node.
+     */
+    private final int[] placeIndexes;
+    private final int geohashBits;
+    private final AtomicReferenceArray<CacheEntry> cache;
+    private final int cacheMask;
+
+    private record CacheEntry(long cell, int node) {
+    }
+
+    /**
+     * Creates a geocoder of the places in a GeoNames dump file.
+     *
+     * @param cities
+     *            the file, for example {@code cities15000.txt}
+     * @param minPopulation
+     *            places with fewer inhabitants are skipped
+     * @param cacheSize
+     *            number of cached cells, rounded up to a power of two
+     * @param geohashPrecision
+     *            length of the geohash of a cached cell, 6 is about 1 km
+     */
+    @Autowired
+    public ReverseGeocoder(
+            @Value("${geo.geocoder.cities:classpath:geo/cities.txt}") Resource cities,
+            @Value("${geo.geocoder.min-population:0}") long minPopulation,
+            @Value("${geo.geocoder.cache-size:65536}") int cacheSize,
+            @Value("${geo.geocoder.geohash-precision:6}") int geohashPrecision) {
+        this(read(cities, minPopulation), cacheSize, geohashPrecision);
+        log.info("Loaded {} places from {}", places.length,
+                cities.getDescription());
+    }
+
+    public ReverseGeocoder(List<Place> places, int cacheSize,
+            int geohashPrecision) {
+        if (geohashPrecision < 1
+                || geohashPrecision > MAX_GEOHASH_PRECISION) {
+            throw new IllegalArgumentException("Geohash precision must be "
+                    + "in [1, " + MAX_GEOHASH_PRECISION + "], was "
+                    + geohashPrecision);
+        }
+        if (cacheSize < 1 || cacheSize > 1 << 30) {
+            throw new IllegalArgumentException(
+                    "Cache size must be in [1, 2^30], was " + cacheSize);
+        }
+        this.places = places.toArray(Place[]::new);
+        int count = this.places.length;
+        points = new double[count * 3];
+        placeIndexes = new int[count];
+        for (int i = 0; i < count; i++) {
+            Place place = this.places[i];
+            double lat = Math.toRadians(place.latitude());
+            double lon = Math.toRadians(place.longitude());
+            points[i * 3] = Math.cos(lat) * Math.cos(lon);
+            points[i * 3 + 1] = Math.cos(lat) * Math.sin(lon);
+            points[i * 3 + 2] = Math.sin(lat);
+            placeIndexes[i] = i;
+        }
+        build(0, count, 0);
+
+        geohashBits = geohashPrecision * 5;
+        int size = Integer.highestOneBit(cacheSize - 1) << 1;
+        cache = new AtomicReferenceArray<>(Math.max(1, size));
+        cacheMask = cache.length() - 1;
+    }
+
+    /**
+     * Finds the place nearest to a position.
+     *
+     * @return the nearest place, or an empty optional if there are no places
+     */
+    public Optional<Place> nearest(double latitude, double longitude) {
+        if (places.length == 0 || !Double.isFinite(latitude)
+                || !Double.isFinite(longitude)) {
+            return Optional.empty();
+        }
+        long cell = geohash(latitude, longitude);
+        int slot = (int) (mix(cell) & cacheMask);
+        CacheEntry entry = cache.get(slot);
+        if (entry == null || entry.cell() != cell) {
+            entry = new CacheEntry(cell, search(latitude, longitude));
+            cache.set(slot, entry);
+        }
+        return Optional.of(places[placeIndexes[entry.node()]]);
+    }
+
+    public int size() {
+        return places.length;
+    }
+
+    private int search(double latitude, double longitude) {
+        double lat = Math.toRadians(latitude);
+        double lon = Math.toRadians(longitude);
+        double[] query = { Math.cos(lat) * Math.cos(lon),
+                Math.cos(lat) * Math.sin(lon), Math.sin(lat) };
+        // Best node and its squared chord distance
+        double[] best = { -1, Double.POSITIVE_INFINITY };
+        search(query, 0, places.length, 0, best);
+        return (int) best[0];
+    }
+
+    private void search(double[] query, int from, int to, int axis,
+            double[] best) {
+        if (from >= to) {
+            return;
+        }
+        int node = (from + to) >>> 1;
+        double dx = points[node * 3] - query[0];
+        double dy = points[node * 3 + 1] - query[1];
+        double dz = points[node * 3 + 2] - query[2];
+        double distance = dx * dx + dy * dy + dz * dz;
+        if (distance < best[1]) {
+            best[0] = node;
+            best[1] = distance;
+        }
+        double split = query[axis] - points[node * 3 + axis];
+        int nextAxis = axis == 2 ? 0 : axis + 1;
+        if (split < 0) {
+            search(query, from, node, nextAxis, best);
+            if (split * split < best[1]) {
+                search(query, node + 1, to, nextAxis, best);
+            }
+        } else {
+            search(query, node + 1, to, nextAxis, best);
+            if (split * split < best[1]) {
+                search(query, from, node, nextAxis, best);
+            }
+        }
+    }
+
+    /**
+     * Orders the range so that its middle element is the median along the
+     * axis, then does the same for both halves with the next axis.
+     */
+    private void build(int from, int to, int axis) {
+        if (to - from <= 1) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        select(from, to - 1, middle, axis);
+        int nextAxis = axis == 2 ? 0 : axis + 1;
+        build(from, middle, nextAxis);
+        build(middle + 1, to, nextAxis);
+    }
+
+    /**
+     * Quickselect: moves the k-th smallest element along the axis to index k,
+     * with smaller elements before and larger after it.
+     */
+    private void select(int left, int right, int k, int axis) {
+        while (left < right) {
+            double pivot = points[((left + right) >>> 1) * 3 + axis];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (points[i * 3 + axis] < pivot) {
+                    i++;
+                }
+                while (points[j * 3 + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int a, int b) {
+        for (int c = 0; c < 3; c++) {
+            double point = points[a * 3 + c];
+            points[a * 3 + c] = points[b * 3 + c];
+            points[b * 3 + c] = point;
+        }
+        int index = placeIndexes[a];
+        placeIndexes[a] = placeIndexes[b];
+        placeIndexes[b] = index;
+    }
+
+    /**
+     * Returns the bits of the geohash of a position, interleaving longitude
+     * and latitude bits starting with longitude.
+     */
+    private long geohash(double latitude, double longitude) {
+        long lat = quantize(latitude, -90, 180, geohashBits / 2);
+        long lon = quantize(GeoMath.normalizeLongitude(longitude), -180, 360,
+                geohashBits - geohashBits / 2);
+        long hash = 0;
+        for (int bit = geohashBits - 1; bit >= 0; bit--) {
+            int index = (geohashBits - 1 - bit) / 2;
+            long source = (geohashBits - 1 - bit) % 2 == 0
+                    ? lon >>> (geohashBits - geohashBits / 2 - 1 - index)
+                    : lat >>> (geohashBits / 2 - 1 - index);
+            hash |= (source & 1) << bit;
+        }
+        return hash;
+    }
+
+    private static long quantize(double value, double min, double range,
+            int bits) {
+        long cells = 1L << bits;
+        return Math.min(cells - 1, (long) ((value - min) / range * cells));
+    }
+
+    private static long mix(long value) {
+        // Finalizer of SplitMix64, spreads neighboring cells over the cache
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    private static List<Place> read(Resource cities, long minPopulation) {
+        List<Place> places = new ArrayList<>();
+        try (InputStream in = cities.getInputStream();
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] columns = line.split("\t", -1);
+                long population = columns.length > POPULATION
+                        && !columns[POPULATION].isEmpty()
+                                ? Long.parseLong(columns[POPULATION])
+                                : 0;
+                if (population < minPopulation) {
+                    continue;
+                }
+                places.add(new Place(columns[NAME], columns[COUNTRY_CODE],
+                        Double.parseDouble(columns[LATITUDE]),
+                        Double.parseDouble(columns[LONGITUDE]), population));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(
+                    "Unable to read places from " + cities.getDescription(),
+                    e);
+        }
+        return places;
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.geofence;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A named polygon area. The polygon may have holes; a position is inside if
+ * it is inside the outer ring and not inside a hole.
+ * <p>
+ * Coordinates are kept in primitive arrays with the bounding box
+ * precomputed, so a containment test allocates nothing and rejects most
+ * positions with four comparisons. Polygons crossing the antimeridian are not
+ * supported.
+ */
+public final class Geofence {
+
+    private final String id;
+    private final String name;
+    /**
+     * Rings as interleaved longitude/latitude pairs, the first ring is the
+     * outer one. Rings are not explicitly closed.
+     */
+    private final double[][] rings;
+    private final double minLatitude;
+    private final double minLongitude;
+    private final double maxLatitude;
+    private final double maxLongitude;
+
+    Geofence(String id, String name, double[][] rings) {
+        if (rings.length == 0 || rings[0].length < 6) {
+            throw new IllegalArgumentException(
+                    "Geofence " + id + " needs at least three vertices");
+        }
+        this.id = id;
+        this.name = name;
+        this.rings = rings;
+        double[] outer = rings[0];
+        double minLat = Double.POSITIVE_INFINITY;
+        double minLon = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        double maxLon = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < outer.length; i += 2) {
+            minLon = Math.min(minLon, outer[i]);
+            maxLon = Math.max(maxLon, outer[i]);
+            minLat = Math.min(minLat, outer[i + 1]);
+            maxLat = Math.max(maxLat, outer[i + 1]);
+        }
+        minLatitude = minLat;
+        minLongitude = minLon;
+        maxLatitude = maxLat;
+        maxLongitude = maxLon;
+    }
+
+    /**
+     * Parses a fence from a WKT polygon, for example
+     * {@code POLYGON ((24.93 60.16, 24.95 60.16, 24.95 60.17, 24.93 60.16))}.
+     * Coordinates are longitude first, as in WKT.
+     *
+     * @throws IllegalArgumentException
+     *             if the text is not a valid polygon
+     */
+    public static Geofence fromWkt(String id, String name, String wkt) {
+        String text = wkt.strip();
+        if (!text.regionMatches(true, 0, "POLYGON", 0, 7)) {
+            throw new IllegalArgumentException(
+                    "Expected a WKT POLYGON: " + abbreviate(text));
+        }
+        int open = text.indexOf('(');
+        int close = text.lastIndexOf(')');
+        if (open < 0 || close < open) {
+            throw new IllegalArgumentException(
+                    "Unbalanced parentheses: " + abbreviate(text));
+        }
+        List<double[]> rings = new ArrayList<>();
+        String body = text.substring(open + 1, close);
+        int ringStart = body.indexOf('(');
+        while (ringStart >= 0) {
+            int ringEnd = body.indexOf(')', ringStart);
+            if (ringEnd < 0) {
+                throw new IllegalArgumentException(
+                        "Unbalanced parentheses: " + abbreviate(text));
+            }
+            rings.add(parseRing(body.substring(ringStart + 1, ringEnd)));
+            ringStart = body.indexOf('(', ringEnd);
+        }
+        if (rings.isEmpty()) {
+            throw new IllegalArgumentException(
+                    "Polygon has no rings: " + abbreviate(text));
+        }
+        return new Geofence(id, name, rings.toArray(double[][]::new));
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getMinLatitude() {
+        return minLatitude;
+    }
+
+    public double getMinLongitude() {
+        return minLongitude;
+    }
+
+    public double getMaxLatitude() {
+        return maxLatitude;
+    }
+
+    public double getMaxLongitude() {
+        return maxLongitude;
+    }
+
+    /**
+     * Checks whether a position is inside the fence.
+     */
+    public boolean contains(double latitude, double longitude) {
+        if (latitude < minLatitude || latitude > maxLatitude
+                || longitude < minLongitude || longitude > maxLongitude) {
+            return false;
+        }
+        // Even-odd rule over all rings, which also excludes the holes
+        boolean inside = false;
+        for (double[] ring : rings) {
+            int n = ring.length;
+            for (int i = 0, j = n - 2; i < n; j = i, i += 2) {
+                double xi = ring[i];
+                double yi = ring[i + 1];
+                double xj = ring[j];
+                double yj = ring[j + 1];
+                if ((yi > latitude) != (yj > latitude) && longitude < (xj - xi)
+                        * (latitude - yi) / (yj - yi) + xi) {
+                    inside = !inside;
+                }
+            }
+        }
+        return inside;
+    }
+
+    @Override
+    public String toString() {
+        return "Geofence[" + id + ", " + name + "]";
+    }
+
+    private static double[] parseRing(String text) {
+        String[] points = text.split(",");
+        int count = points.length;
+        double[] ring = new double[count * 2];
+        for (int i = 0; i < count; i++) {
+            String[] xy = points[i].strip().split("\\s+");
+            if (xy.length < 2) {
+                throw new IllegalArgumentException(
+                        "Invalid point: " + points[i].strip());
+            }
+            ring[i * 2] = Double.parseDouble(xy[0]);
+            ring[i * 2 + 1] = Double.parseDouble(xy[1]);
+        }
+        // Drop the closing point that repeats the first one
+        if (count > 1 && ring[0] == ring[count * 2 - 2]
+                && ring[1] == ring[count * 2 - 1]) {
+            double[] open = new double[(count - 1) * 2];
+            System.arraycopy(ring, 0, open, 0, open.length);
+            return open;
+        }
+        return ring;
+    }
+
+    private static String abbreviate(String text) {
+        return text.length() > 60 ? text.substring(0, 60) + "..." : text;
+    }
+}
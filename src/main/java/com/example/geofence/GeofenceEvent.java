@@ -0,0 +1,37 @@
+package com.example.geofence;
+
+/**
+ * A tracked session entering, leaving or staying in a geofence.
+ *
+ * @param type
+ *            what happened
+ * @param sessionId
+ *            the tracked session
+ * @param fence
+ *            the geofence
+ * @param latitude
+ *            latitude of the position that caused the event
+ * @param longitude
+ *            longitude of the position that caused the event
+ * @param timestamp
+ *            time of the position in epoch milliseconds
+ */
+public record GeofenceEvent(Type type, String sessionId, Geofence fence,
+        double latitude, double longitude, long timestamp) {
+
+    public enum Type {
+        /**
+         * The session moved into the fence.
+         */
+        ENTER,
+        /**
+         * The session moved out of the fence, or the fence was removed.
+         */
+        EXIT,
+        /**
+         * The session has stayed in the fence for the dwell time. Sent once
+         * per visit.
+         */
+        DWELL
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.geofence;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Immutable spatial index of geofences, a packed R-tree bulk loaded with the
+ * Sort-Tile-Recursive algorithm.
+ * <p>
+ * Bounding boxes of all nodes are stored level by level in one primitive
+ * array, leaves first. The children of a node are the consecutive nodes of
+ * the level below, so the tree needs no pointers. A point query visits only
+ * the nodes whose box contains the point and tests the polygons of the
+ * matching leaves.
+ */
+public final class GeofenceIndex {
+
+    private static final int NODE_SIZE = 16;
+
+    private static final GeofenceIndex EMPTY = new GeofenceIndex(List.of());
+
+    private final Geofence[] fences;
+    /**
+     * Boxes as minLatitude, minLongitude, maxLatitude, maxLongitude per node.
+     */
+    private final double[] boxes;
+    /**
+     * Index of the first node of each level in {@link #boxes}, with the total
+     * node count as the last element.
+     */
+    private final int[] levelStarts;
+
+    /**
+     * Builds an index of the given fences.
+     */
+    public GeofenceIndex(List<Geofence> fences) {
+        this.fences = sortTileRecursive(fences.toArray(Geofence[]::new));
+
+        int levels = 1;
+        int total = this.fences.length;
+        for (int size = this.fences.length; size > 1; levels++) {
+            size = (size + NODE_SIZE - 1) / NODE_SIZE;
+            total += size;
+        }
+        levelStarts = new int[levels + 1];
+        boxes = new double[total * 4];
+
+        for (int i = 0; i < this.fences.length; i++) {
+            Geofence fence = this.fences[i];
+            boxes[i * 4] = fence.getMinLatitude();
+            boxes[i * 4 + 1] = fence.getMinLongitude();
+            boxes[i * 4 + 2] = fence.getMaxLatitude();
+            boxes[i * 4 + 3] = fence.getMaxLongitude();
+        }
+        int start = 0;
+        int size = this.fences.length;
+        for (int level = 1; level < levels; level++) {
+            int parentStart = start + size;
+            int parentSize = (size + NODE_SIZE - 1) / NODE_SIZE;
+            levelStarts[level] = parentStart;
+            for (int parent = 0; parent < parentSize; parent++) {
+                int node = parentStart + parent;
+                boxes[node * 4] = Double.POSITIVE_INFINITY;
+                boxes[node * 4 + 1] = Double.POSITIVE_INFINITY;
+                boxes[node * 4 + 2] = Double.NEGATIVE_INFINITY;
+                boxes[node * 4 + 3] = Double.NEGATIVE_INFINITY;
+                int childEnd = Math.min(size, (parent + 1) * NODE_SIZE);
+                for (int child = parent * NODE_SIZE; child < childEnd; child++) {
+                    int c = start + child;
+                    boxes[node * 4] = Math.min(boxes[node * 4], boxes[c * 4]);
+                    boxes[node * 4 + 1] = Math.min(boxes[node * 4 + 1],
+                            boxes[c * 4 + 1]);
+                    boxes[node * 4 + 2] = Math.max(boxes[node * 4 + 2],
+                            boxes[c * 4 + 2]);
+                    boxes[node * 4 + 3] = Math.max(boxes[node * 4 + 3],
+                            boxes[c * 4 + 3]);
+                }
+            }
+            start = parentStart;
+            size = parentSize;
+        }
+        levelStarts[levels] = total;
+    }
+
+    /**
+     * Returns an index without fences.
+     */
+    public static GeofenceIndex empty() {
+        return EMPTY;
+    }
+
+    public int size() {
+        return fences.length;
+    }
+
+    /**
+     * Calls the consumer with every fence that contains the position.
+     */
+    public void forEachContaining(double latitude, double longitude,
+            Consumer<Geofence> consumer) {
+        if (fences.length == 0) {
+            return;
+        }
+        int root = levelStarts.length - 2;
+        search(root, 0, latitude, longitude, consumer);
+    }
+
+    private void search(int level, int index, double latitude,
+            double longitude, Consumer<Geofence> consumer) {
+        int node = levelStarts[level] + index;
+        if (latitude < boxes[node * 4] || longitude < boxes[node * 4 + 1]
+                || latitude > boxes[node * 4 + 2]
+                || longitude > boxes[node * 4 + 3]) {
+            return;
+        }
+        if (level == 0) {
+            Geofence fence = fences[index];
+            if (fence.contains(latitude, longitude)) {
+                consumer.accept(fence);
+            }
+            return;
+        }
+        int childLevelSize = levelStarts[level] - levelStarts[level - 1];
+        int childEnd = Math.min(childLevelSize, (index + 1) * NODE_SIZE);
+        for (int child = index * NODE_SIZE; child < childEnd; child++) {
+            search(level - 1, child, latitude, longitude, consumer);
+        }
+    }
+
+    /**
+     * Orders the fences so that each run of {@link #NODE_SIZE} fences forms a
+     * compact leaf: sorted into vertical slices by longitude, and by latitude
+     * within each slice.
+     */
+    private static Geofence[] sortTileRecursive(Geofence[] fences) {
+        int leaves = (fences.length + NODE_SIZE - 1) / NODE_SIZE;
+        int slices = (int) Math.ceil(Math.sqrt(leaves));
+        int sliceSize = slices * NODE_SIZE;
+        Arrays.sort(fences, Comparator.comparingDouble(
+                fence -> fence.getMinLongitude() + fence.getMaxLongitude()));
+        for (int from = 0; from < fences.length; from += sliceSize) {
+            Arrays.sort(fences, from,
+                    Math.min(fences.length, from + sliceSize),
+                    Comparator.comparingDouble(fence -> fence.getMinLatitude()
+                            + fence.getMaxLatitude()));
+        }
+        return fences;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.geofence;
+
+import java.util.EventListener;
+
+/**
+ * Receives the geofence events of all tracked sessions.
+ * <p>
+ * Listeners are called on the thread that processes the position, which
+ * holds no session lock. They must return quickly and must access any UI
+ * through {@link com.vaadin.flow.component.UI#access}.
+ */
+@FunctionalInterface
+public interface GeofenceListener extends EventListener {
+
+    void onGeofenceEvent(GeofenceEvent event);
+}
@@ -0,0 +1,187 @@
+package com.example.geofence;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.vaadin.flow.shared.Registration;
+
+/**
+ * Evaluates tracked positions against the configured geofences.
+ * <p>
+ * Fences are read from a text file with one fence per line: an id, a name
+ * and a WKT polygon, separated by tabs. Empty lines and lines starting with
+ * {@code #} are ignored. The file is checked for changes periodically; a
+ * changed file is parsed and indexed on the scheduler thread and then swapped
+ * in atomically, so lookups never wait for a reload. If the new file is
+ * invalid, the previous fences stay in use.
+ * <p>
+ * Each tracked session gets a {@link GeofenceTracker} from
+ * {@link #tracker(String)}, which turns positions into events. Events are
+ * returned to the session and published to the listeners added with
+ * {@link #addListener(GeofenceListener)}.
+ */
+@Component
+public class GeofenceService {
+
+    private static final Logger log = LoggerFactory
+            .getLogger(GeofenceService.class);
+
+    private final Path file;
+    private final Duration dwellTime;
+    private final AtomicReference<GeofenceIndex> index = new AtomicReference<>(
+            GeofenceIndex.empty());
+    private final List<GeofenceListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile FileTime loadedModified;
+
+    /**
+     * Creates a service.
+     *
+     * @param file
+     *            the file with the fences, need not exist yet
+     * @param dwellTime
+     *            time a session must stay in a fence for a dwell event
+     */
+    public GeofenceService(
+            @Value("${geo.geofence.file:data/geofences.txt}") Path file,
+            @Value("${geo.geofence.dwell-time:5m}") Duration dwellTime) {
+        this.file = file;
+        this.dwellTime = dwellTime;
+        reloadIfModified();
+    }
+
+    /**
+     * Returns the fences in use.
+     */
+    public GeofenceIndex getIndex() {
+        return index.get();
+    }
+
+    /**
+     * Replaces the fences in use. Sessions get exit events for the fences
+     * that no longer contain them on their next position.
+     */
+    public void setIndex(GeofenceIndex newIndex) {
+        index.set(newIndex);
+    }
+
+    /**
+     * Creates the tracker of a session. Trackers are not thread-safe; use one
+     * per session and update it from one thread at a time.
+     */
+    public GeofenceTracker tracker(String sessionId) {
+        return new GeofenceTracker(this, sessionId, dwellTime);
+    }
+
+    /**
+     * Adds a listener for the events of all sessions.
+     *
+     * @return a registration for removing the listener
+     */
+    public Registration addListener(GeofenceListener listener) {
+        listeners.add(listener);
+        return () -> listeners.remove(listener);
+    }
+
+    void publish(GeofenceEvent event) {
+        for (GeofenceListener listener : listeners) {
+            try {
+                listener.onGeofenceEvent(event);
+            } catch (RuntimeException e) {
+                log.warn("Geofence listener failed for {}", event, e);
+            }
+        }
+    }
+
+    /**
+     * Reloads the fences if the file has changed since it was last read.
+     */
+    @Scheduled(fixedDelayString = "${geo.geofence.reload-interval:10s}")
+    public void reloadIfModified() {
+        FileTime modified;
+        try {
+            modified = Files.getLastModifiedTime(file);
+        } catch (NoSuchFileException e) {
+            if (loadedModified != null) {
+                log.info("Geofence file {} was removed", file);
+                loadedModified = null;
+                index.set(GeofenceIndex.empty());
+            }
+            return;
+        } catch (IOException e) {
+            log.warn("Unable to check geofence file {}", file, e);
+            return;
+        }
+        if (modified.equals(loadedModified)) {
+            return;
+        }
+        try {
+            GeofenceIndex loaded = new GeofenceIndex(read(file));
+            index.set(loaded);
+            log.info("Loaded {} geofences from {}", loaded.size(), file);
+        } catch (UncheckedIOException | IllegalArgumentException e) {
+            log.error("Unable to load geofences from {}, keeping {} "
+                    + "previous fences", file, index.get().size(), e);
+        }
+        // Also on errors, so that an invalid file is not parsed again until
+        // it changes
+        loadedModified = modified;
+    }
+
+    private static List<Geofence> read(Path file) {
+        List<Geofence> fences = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
+        try (BufferedReader reader = Files.newBufferedReader(file,
+                StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] columns = line.split("\t", 3);
+                if (columns.length < 3) {
+                    throw new IllegalArgumentException(file + ":" + lineNumber
+                            + ": expected id, name and polygon separated "
+                            + "by tabs");
+                }
+                String id = columns[0].strip();
+                if (!ids.add(id)) {
+                    throw new IllegalArgumentException(file + ":" + lineNumber
+                            + ": duplicate geofence id " + id);
+                }
+                try {
+                    fences.add(Geofence.fromWkt(id, columns[1].strip(),
+                            columns[2]));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(
+                            file + ":" + lineNumber + ": " + e.getMessage(),
+                            e);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(
+                    "Unable to read geofences from " + file, e);
+        }
+        return fences;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.geofence;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Geofence state of one tracked session. Only the fences the session is
+ * currently inside are kept, so the state stays small no matter how many
+ * fences are configured.
+ * <p>
+ * Fences are matched by id, so a session stays inside a fence across a
+ * reload that changes its shape or name. Instances are not thread-safe.
+ */
+public class GeofenceTracker {
+
+    private final GeofenceService service;
+    private final String sessionId;
+    private final long dwellMillis;
+    private final Map<String, Visit> visits = new HashMap<>();
+    private final List<Geofence> containing = new ArrayList<>();
+    private int generation;
+
+    private static final class Visit {
+        private Geofence fence;
+        private final long enteredAt;
+        private boolean dwellReported;
+        private int seen;
+
+        Visit(Geofence fence, long enteredAt) {
+            this.fence = fence;
+            this.enteredAt = enteredAt;
+        }
+    }
+
+    GeofenceTracker(GeofenceService service, String sessionId,
+            Duration dwellTime) {
+        this.service = service;
+        this.sessionId = sessionId;
+        this.dwellMillis = dwellTime.toMillis();
+    }
+
+    /**
+     * Updates the state with a new position of the session. The events are
+     * also published to the listeners of the service.
+     *
+     * @param timestamp
+     *            time of the position in epoch milliseconds
+     * @return the resulting events, usually none
+     */
+    public List<GeofenceEvent> update(double latitude, double longitude,
+            long timestamp) {
+        generation++;
+        containing.clear();
+        service.getIndex().forEachContaining(latitude, longitude,
+                containing::add);
+
+        List<GeofenceEvent> events = null;
+        for (Geofence fence : containing) {
+            Visit visit = visits.get(fence.getId());
+            GeofenceEvent.Type type = null;
+            if (visit == null) {
+                visit = new Visit(fence, timestamp);
+                visits.put(fence.getId(), visit);
+                type = GeofenceEvent.Type.ENTER;
+            } else {
+                visit.fence = fence;
+                if (!visit.dwellReported
+                        && timestamp - visit.enteredAt >= dwellMillis) {
+                    visit.dwellReported = true;
+                    type = GeofenceEvent.Type.DWELL;
+                }
+            }
+            visit.seen = generation;
+            if (type != null) {
+                events = add(events, new GeofenceEvent(type, sessionId, fence,
+                        latitude, longitude, timestamp));
+            }
+        }
+        if (visits.size() > containing.size()) {
+            for (Iterator<Visit> it = visits.values().iterator(); it
+                    .hasNext();) {
+                Visit visit = it.next();
+                if (visit.seen != generation) {
+                    it.remove();
+                    events = add(events,
+                            new GeofenceEvent(GeofenceEvent.Type.EXIT,
+                                    sessionId, visit.fence, latitude,
+                                    longitude, timestamp));
+                }
+            }
+        }
+        if (events == null) {
+            return List.of();
+        }
+        events.forEach(service::publish);
+        return events;
+    }
+
+    /**
+     * Returns the fences the session is currently inside.
+     */
+    public List<Geofence> getInside() {
+        return visits.values().stream().map(visit -> visit.fence).toList();
+    }
+
+    private static List<GeofenceEvent> add(List<GeofenceEvent> events,
+            GeofenceEvent event) {
+        List<GeofenceEvent> target = events != null ? events
+                : new ArrayList<>(2);
+        target.add(event);
+        return target;
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.stereotype.Component;
+
+import com.example.track.PositionFilter;
+import com.vaadin.flow.component.geolocation.GeolocationError;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Micrometer meters for the geolocation traffic of the views. All meters are
+ * registered up front, so recording is a lock-free update of an existing
+ * meter without a registry lookup.
+ * <p>
+ * Meters:
+ * <ul>
+ * <li>{@code geo.track.sessions}: views currently tracking a position</li>
+ * <li>{@code geo.track.fixes}: positions received by tracking views, tagged
+ * with the {@code outcome} of the position filter</li>
+ * <li>{@code geo.track.updates}: filtered positions shown by tracking
+ * views</li>
+ * <li>{@code geo.track.errors}: errors received by tracking views, tagged
+ * with the error {@code code}</li>
+ * <li>{@code geo.track.update.duration}: time spent processing a position
+ * on the ingest pipeline: filtering, geofences, nearest place and storing.
+ * Does not include showing it.</li>
+ * <li>{@code geo.track.render.duration}: time spent showing the latest
+ * positions of a session in its view, once per coalesced update while
+ * holding the session lock</li>
+ * <li>{@code geo.track.ingest.dropped}: positions dropped because the ingest
+ * pipeline of the session fell behind</li>
+ * <li>{@code geo.track.persist.errors}: tracked positions that could not be
+ * written to the track store</li>
+ * <li>{@code geo.track.history.size}: entries in the coordinate log of a
+ * session, sampled on every render</li>
+ * <li>{@code geo.get.requests}: completed one-shot position requests,
+ * tagged with the {@code outcome} and the error {@code code}. Requests
+ * answered from the server-side position cache have the outcome
+ * {@code cached}.</li>
+ * <li>{@code geo.get.duration}: time from a one-shot request until its
+ * result, tagged with the {@code outcome}</li>
+ * </ul>
+ */
+@Component
+public class GeolocationMetrics {
+
+    private static final String SUCCESS = "success";
+    private static final String ERROR = "error";
+    private static final String CACHED = "cached";
+    private static final String NONE = "none";
+
+    private final AtomicInteger trackingSessions = new AtomicInteger();
+    private final Counter[] trackFixes;
+    private final Counter trackUpdates;
+    private final Counter[] trackErrors;
+    private final Timer trackUpdateDuration;
+    private final Timer trackRenderDuration;
+    private final Counter ingestDropped;
+    private final Counter persistErrors;
+    private final DistributionSummary historySize;
+    private final Counter getSuccesses;
+    private final Counter getCacheHits;
+    private final Counter[] getErrors;
+    private final Timer getSuccessDuration;
+    private final Timer getErrorDuration;
+
+    public GeolocationMetrics(MeterRegistry registry) {
+        Gauge.builder("geo.track.sessions", trackingSessions,
+                AtomicInteger::get)
+                .description("Views currently tracking a position")
+                .register(registry);
+        trackFixes = new Counter[PositionFilter.Outcome.values().length];
+        for (PositionFilter.Outcome outcome : PositionFilter.Outcome
+                .values()) {
+            trackFixes[outcome.ordinal()] = Counter.builder("geo.track.fixes")
+                    .description("Positions received by tracking views")
+                    .tag("outcome", outcome.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+        trackUpdates = Counter.builder("geo.track.updates")
+                .description("Filtered positions shown by tracking views")
+                .register(registry);
+        trackErrors = new Counter[ErrorCode.values().length];
+        for (ErrorCode code : ErrorCode.values()) {
+            trackErrors[code.ordinal()] = Counter.builder("geo.track.errors")
+                    .description("Errors received by tracking views")
+                    .tag("code", code.tag).register(registry);
+        }
+        trackUpdateDuration = Timer.builder("geo.track.update.duration")
+                .description("Time spent processing a tracked position")
+                .register(registry);
+        trackRenderDuration = Timer.builder("geo.track.render.duration")
+                .description("Time spent showing tracked positions")
+                .register(registry);
+        ingestDropped = Counter.builder("geo.track.ingest.dropped")
+                .description("Positions dropped by a full ingest queue")
+                .register(registry);
+        persistErrors = Counter.builder("geo.track.persist.errors")
+                .description("Tracked positions not written to the store")
+                .register(registry);
+        historySize = DistributionSummary.builder("geo.track.history.size")
+                .description("Entries in the coordinate log of a session")
+                .baseUnit("entries").register(registry);
+
+        getSuccesses = Counter.builder("geo.get.requests")
+                .description("Completed one-shot position requests")
+                .tag("outcome", SUCCESS).tag("code", NONE)
+                .register(registry);
+        getCacheHits = Counter.builder("geo.get.requests")
+                .description("Completed one-shot position requests")
+                .tag("outcome", CACHED).tag("code", NONE)
+                .register(registry);
+        getErrors = new Counter[ErrorCode.values().length];
+        for (ErrorCode code : ErrorCode.values()) {
+            getErrors[code.ordinal()] = Counter.builder("geo.get.requests")
+                    .description("Completed one-shot position requests")
+                    .tag("outcome", ERROR).tag("code", code.tag)
+                    .register(registry);
+        }
+        getSuccessDuration = Timer.builder("geo.get.duration")
+                .description("Time until a one-shot position request "
+                        + "completed")
+                .tag("outcome", SUCCESS).register(registry);
+        getErrorDuration = Timer.builder("geo.get.duration")
+                .description("Time until a one-shot position request "
+                        + "completed")
+                .tag("outcome", ERROR).register(registry);
+    }
+
+    /**
+     * Records that a view started tracking. Call {@link #trackingStopped()}
+     * when it stops.
+     */
+    public void trackingStarted() {
+        trackingSessions.incrementAndGet();
+    }
+
+    public void trackingStopped() {
+        trackingSessions.decrementAndGet();
+    }
+
+    /**
+     * Records a position received by a tracking view and what the position
+     * filter did with it.
+     */
+    public void trackFiltered(PositionFilter.Outcome outcome) {
+        trackFixes[outcome.ordinal()].increment();
+    }
+
+    /**
+     * Records a tracked position that passed the position filter.
+     *
+     * @param durationNanos
+     *            time spent processing the position
+     */
+    public void trackUpdate(long durationNanos) {
+        trackUpdates.increment();
+        trackUpdateDuration.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the time a tracking view spent showing its latest positions.
+     *
+     * @param durationNanos
+     *            time spent updating the components of the view
+     */
+    public void trackRender(long durationNanos) {
+        trackRenderDuration.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the number of entries in a session's coordinate log.
+     */
+    public void trackHistorySize(int size) {
+        historySize.record(size);
+    }
+
+    public void ingestDropped() {
+        ingestDropped.increment();
+    }
+
+    public void persistFailed() {
+        persistErrors.increment();
+    }
+
+    public void trackError(int code) {
+        trackErrors[ErrorCode.of(code).ordinal()].increment();
+    }
+
+    /**
+     * Records a successful one-shot position request.
+     *
+     * @param startNanos
+     *            the {@link System#nanoTime()} when the request was made
+     */
+    public void getSuccess(long startNanos) {
+        getSuccesses.increment();
+        getSuccessDuration.record(System.nanoTime() - startNanos,
+                TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records a one-shot position request answered from the server-side
+     * cache, without asking the browser.
+     */
+    public void getCached() {
+        getCacheHits.increment();
+    }
+
+    /**
+     * Records a failed one-shot position request.
+     *
+     * @param startNanos
+     *            the {@link System#nanoTime()} when the request was made
+     * @param code
+     *            the {@link GeolocationError} code
+     */
+    public void getError(long startNanos, int code) {
+        getErrors[ErrorCode.of(code).ordinal()].increment();
+        getErrorDuration.record(System.nanoTime() - startNanos,
+                TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Tag values of the error codes. Unknown codes share one tag, so that a
+     * misbehaving client cannot create new time series.
+     */
+    private enum ErrorCode {
+        PERMISSION_DENIED("permission_denied"),
+        POSITION_UNAVAILABLE("position_unavailable"),
+        TIMEOUT("timeout"),
+        UNKNOWN("unknown");
+
+        private final String tag;
+
+        ErrorCode(String tag) {
+            this.tag = tag;
+        }
+
+        static ErrorCode of(int code) {
+            return switch (code) {
+                case GeolocationError.PERMISSION_DENIED -> PERMISSION_DENIED;
+                case GeolocationError.POSITION_UNAVAILABLE ->
+                    POSITION_UNAVAILABLE;
+                case GeolocationError.TIMEOUT -> TIMEOUT;
+                default -> UNKNOWN;
+            };
+        }
+    }
+}
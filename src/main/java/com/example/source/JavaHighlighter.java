@@ -0,0 +1,174 @@
+package com.example.source;
+
+import java.util.Set;
+
+/**
+ * Minimal syntax highlighter for Java sources. Produces one HTML fragment per
+ * line with keywords, literals, annotations and comments wrapped in
+ * {@code <span class="src-...">} elements. Block comments and text blocks
+ * spanning several lines are tracked across lines.
+ */
+final class JavaHighlighter {
+
+    private static final Set<String> KEYWORDS = Set.of("abstract", "assert",
+            "boolean", "break", "byte", "case", "catch", "char", "class",
+            "const", "continue", "default", "do", "double", "else", "enum",
+            "extends", "final", "finally", "float", "for", "goto", "if",
+            "implements", "import", "instanceof", "int", "interface", "long",
+            "native", "new", "package", "private", "protected", "public",
+            "record", "return", "sealed", "short", "static", "strictfp",
+            "super", "switch", "synchronized", "this", "throw", "throws",
+            "transient", "try", "var", "void", "volatile", "while", "yield",
+            "true", "false", "null");
+
+    private enum State {
+        CODE, BLOCK_COMMENT, TEXT_BLOCK
+    }
+
+    private JavaHighlighter() {
+    }
+
+    /**
+     * Highlights the given lines.
+     *
+     * @return an HTML fragment for each line
+     */
+    static String[] highlight(String[] lines) {
+        String[] result = new String[lines.length];
+        State state = State.CODE;
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; i < lines.length; i++) {
+            html.setLength(0);
+            state = highlightLine(lines[i], state, html);
+            result[i] = html.toString();
+        }
+        return result;
+    }
+
+    private static State highlightLine(String line, State state,
+            StringBuilder html) {
+        int pos = 0;
+        int length = line.length();
+        while (pos < length) {
+            if (state == State.BLOCK_COMMENT) {
+                int end = line.indexOf("*/", pos);
+                int stop = end < 0 ? length : end + 2;
+                span(html, "comment", line, pos, stop);
+                pos = stop;
+                if (end >= 0) {
+                    state = State.CODE;
+                }
+                continue;
+            }
+            if (state == State.TEXT_BLOCK) {
+                int end = line.indexOf("\"\"\"", pos);
+                int stop = end < 0 ? length : end + 3;
+                span(html, "string", line, pos, stop);
+                pos = stop;
+                if (end >= 0) {
+                    state = State.CODE;
+                }
+                continue;
+            }
+
+            char c = line.charAt(pos);
+            if (line.startsWith("//", pos)) {
+                span(html, "comment", line, pos, length);
+                pos = length;
+            } else if (line.startsWith("/*", pos)) {
+                state = State.BLOCK_COMMENT;
+                int end = line.indexOf("*/", pos + 2);
+                int stop = end < 0 ? length : end + 2;
+                span(html, "comment", line, pos, stop);
+                pos = stop;
+                if (end >= 0) {
+                    state = State.CODE;
+                }
+            } else if (line.startsWith("\"\"\"", pos)) {
+                state = State.TEXT_BLOCK;
+                int end = line.indexOf("\"\"\"", pos + 3);
+                int stop = end < 0 ? length : end + 3;
+                span(html, "string", line, pos, stop);
+                pos = stop;
+                if (end >= 0) {
+                    state = State.CODE;
+                }
+            } else if (c == '"' || c == '\'') {
+                int stop = endOfLiteral(line, pos, c);
+                span(html, "string", line, pos, stop);
+                pos = stop;
+            } else if (c == '@' && pos + 1 < length
+                    && Character.isJavaIdentifierStart(line.charAt(pos + 1))) {
+                int stop = endOfIdentifier(line, pos + 1);
+                span(html, "annotation", line, pos, stop);
+                pos = stop;
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int stop = endOfIdentifier(line, pos);
+                if (KEYWORDS.contains(line.substring(pos, stop))) {
+                    span(html, "keyword", line, pos, stop);
+                } else {
+                    escape(html, line, pos, stop);
+                }
+                pos = stop;
+            } else if (Character.isDigit(c)) {
+                int stop = pos + 1;
+                while (stop < length && (Character.isLetterOrDigit(
+                        line.charAt(stop)) || line.charAt(stop) == '.'
+                        || line.charAt(stop) == '_')) {
+                    stop++;
+                }
+                span(html, "number", line, pos, stop);
+                pos = stop;
+            } else {
+                escape(html, line, pos, pos + 1);
+                pos++;
+            }
+        }
+        return state;
+    }
+
+    private static int endOfLiteral(String line, int start, char quote) {
+        int pos = start + 1;
+        while (pos < line.length()) {
+            char c = line.charAt(pos);
+            if (c == '\\') {
+                pos += 2;
+            } else if (c == quote) {
+                return pos + 1;
+            } else {
+                pos++;
+            }
+        }
+        return line.length();
+    }
+
+    private static int endOfIdentifier(String line, int start) {
+        int pos = start + 1;
+        while (pos < line.length()
+                && Character.isJavaIdentifierPart(line.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static void span(StringBuilder html, String type, String line,
+            int start, int end) {
+        html.append("<span class=\"src-").append(type).append("\">");
+        escape(html, line, start, Math.min(end, line.length()));
+        html.append("</span>");
+    }
+
+    private static void escape(StringBuilder html, String line, int start,
+            int end) {
+        for (int i = start; i < end; i++) {
+            char c = line.charAt(i);
+            switch (c) {
+                case '<' -> html.append("&lt;");
+                case '>' -> html.append("&gt;");
+                case '&' -> html.append("&amp;");
+                case '"' -> html.append("&quot;");
+                default -> html.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.source;
+
+/**
+ * An indexed source file.
+ *
+ * @param fileName
+ *            the file name without directories
+ * @param markerLine
+ *            the zero-based line containing the {@code // #geolocation}
+ *            marker, or -1 if there is none
+ * @param highlightedLines
+ *            the syntax highlighted HTML of each line
+ */
+public record SourceFile(String fileName, int markerLine,
+        String[] highlightedLines) {
+
+    /**
+     * Returns the number of lines.
+     */
+    public int lineCount() {
+        return highlightedLines.length;
+    }
+
+    /**
+     * Returns the syntax highlighted HTML of a line.
+     */
+    public String highlightedLine(int line) {
+        return highlightedLines[line];
+    }
+}
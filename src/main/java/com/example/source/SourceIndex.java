@@ -0,0 +1,167 @@
+package com.example.source;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+/**
+ * Shared cache of the application sources shown by the View Source feature.
+ * All sources are read and indexed once at startup: only the line of the
+ * {@code // #geolocation} marker and the syntax highlighted HTML of every
+ * line are kept, so opening a view does no I/O or parsing.
+ * <p>
+ * In development mode the sources are read from {@code src/main/java}, and a
+ * file is indexed again when it has changed since it was last read, so edits
+ * show up without a restart. In a packaged application they are read from
+ * the {@code sources/} resources that the build copies into the jar.
+ */
+@Component
+public class SourceIndex {
+
+    private static final Logger log = LoggerFactory
+            .getLogger(SourceIndex.class);
+
+    private static final Path SOURCE_DIRECTORY = Path.of("src/main/java");
+    private static final String SOURCE_RESOURCE_ROOTS = "classpath*:sources/";
+    private static final String SOURCE_RESOURCES = "classpath*:sources/**/*.java";
+    private static final String MARKER = "// #geolocation";
+
+    /**
+     * An indexed source with the modification time of its file, or
+     * {@code null} for a packaged source.
+     */
+    private record IndexedSource(FileTime lastModified, SourceFile source) {
+    }
+
+    private final boolean development;
+    private final Map<String, IndexedSource> sources;
+
+    public SourceIndex() {
+        development = Files.isDirectory(SOURCE_DIRECTORY);
+        Map<String, IndexedSource> indexed = new HashMap<>();
+        try {
+            if (development) {
+                indexDirectory(indexed);
+            } else {
+                indexResources(indexed);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to index sources", e);
+        }
+        sources = development ? new ConcurrentHashMap<>(indexed)
+                : Map.copyOf(indexed);
+        log.debug("Indexed {} source files", sources.size());
+    }
+
+    /**
+     * Finds the source of a class.
+     *
+     * @return the source, or an empty optional if it is not available
+     */
+    public Optional<SourceFile> find(Class<?> type) {
+        String key = type.getName().replace('.', '/') + ".java";
+        IndexedSource indexed = development
+                ? sources.compute(key, SourceIndex::reindex)
+                : sources.get(key);
+        return Optional.ofNullable(indexed).map(IndexedSource::source);
+    }
+
+    /**
+     * Indexes a file of the source directory again if it has changed since
+     * it was indexed.
+     */
+    private static IndexedSource reindex(String key, IndexedSource indexed) {
+        Path file = SOURCE_DIRECTORY.resolve(key);
+        try {
+            FileTime lastModified = Files.getLastModifiedTime(file);
+            if (indexed != null && lastModified.equals(indexed.lastModified())) {
+                return indexed;
+            }
+            return new IndexedSource(lastModified,
+                    index(file.getFileName().toString(),
+                            Files.readAllBytes(file)));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Unable to read {}", file, e);
+            return indexed;
+        }
+    }
+
+    private static void indexDirectory(Map<String, IndexedSource> indexed)
+            throws IOException {
+        List<Path> javaFiles;
+        try (Stream<Path> files = Files.walk(SOURCE_DIRECTORY)) {
+            javaFiles = files.filter(path -> path.toString().endsWith(".java"))
+                    .toList();
+        }
+        for (Path file : javaFiles) {
+            String key = SOURCE_DIRECTORY.relativize(file).toString()
+                    .replace(file.getFileSystem().getSeparator(), "/");
+            indexed.put(key, new IndexedSource(Files.getLastModifiedTime(file),
+                    index(file.getFileName().toString(),
+                            Files.readAllBytes(file))));
+        }
+    }
+
+    private static void indexResources(Map<String, IndexedSource> indexed)
+            throws IOException {
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver(
+                SourceIndex.class.getClassLoader());
+        // The key of a source is its path below the sources/ directory it was
+        // found in, which a package may contain as well
+        List<String> roots = new ArrayList<>();
+        for (Resource root : resolver.getResources(SOURCE_RESOURCE_ROOTS)) {
+            roots.add(root.getURI().toString());
+        }
+        for (Resource resource : resolver.getResources(SOURCE_RESOURCES)) {
+            String uri = resource.getURI().toString();
+            String root = roots.stream().filter(uri::startsWith).findFirst()
+                    .orElse(null);
+            if (root == null) {
+                log.debug("No source root for {}", uri);
+                continue;
+            }
+            try (InputStream in = resource.getInputStream()) {
+                indexed.put(uri.substring(root.length()),
+                        new IndexedSource(null, index(resource.getFilename(),
+                                in.readAllBytes())));
+            }
+        }
+    }
+
+    static SourceFile index(String fileName, byte[] bytes) {
+        String[] text = new String(bytes, StandardCharsets.UTF_8).split("\n",
+                -1);
+        int markerLine = -1;
+        for (int i = 0; i < text.length; i++) {
+            if (text[i].endsWith("\r")) {
+                text[i] = text[i].substring(0, text[i].length() - 1);
+            }
+            if (markerLine < 0 && text[i].contains(MARKER)) {
+                markerLine = i;
+            }
+        }
+
+        return new SourceFile(fileName, markerLine,
+                JavaHighlighter.highlight(text));
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.tiles;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A small thread-safe least recently used cache.
+ *
+ * @param <K>
+ *            the key type
+ * @param <V>
+ *            the value type
+ */
+class LruCache<K, V> {
+
+    private final Map<K, V> entries;
+
+    /**
+     * Creates a cache.
+     *
+     * @param capacity
+     *            the maximum number of entries
+     */
+    LruCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException(
+                    "Capacity must be positive: " + capacity);
+        }
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    synchronized V get(K key) {
+        return entries.get(key);
+    }
+
+    synchronized void put(K key, V value) {
+        entries.put(key, value);
+    }
+}
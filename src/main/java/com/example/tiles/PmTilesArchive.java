@@ -0,0 +1,460 @@
+package com.example.tiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+import org.springframework.boot.json.JsonParserFactory;
+
+/**
+ * Read-only access to the tiles of a
+ * <a href="https://github.com/protomaps/PMTiles/blob/main/spec/v3/spec.md">PMTiles
+ * v3</a> archive.
+ * <p>
+ * The whole file is memory-mapped, and tiles are returned as read-only views
+ * of the mapping, so serving a tile does not copy it onto the heap.
+ * Directories are decompressed on first use and kept in an LRU cache together
+ * with the locations of recently requested tiles, so a hot tile is found
+ * without walking the directories.
+ * <p>
+ * Instances are thread-safe.
+ */
+public class PmTilesArchive {
+
+    /**
+     * Type of the tiles in an archive.
+     */
+    public enum TileType {
+        UNKNOWN("application/octet-stream"),
+        MVT("application/vnd.mapbox-vector-tile"),
+        PNG("image/png"),
+        JPEG("image/jpeg"),
+        WEBP("image/webp"),
+        AVIF("image/avif");
+
+        private final String contentType;
+
+        TileType(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * Checks whether the tiles are images that a raster tile layer can
+         * show.
+         */
+        public boolean isRaster() {
+            return this == PNG || this == JPEG || this == WEBP || this == AVIF;
+        }
+    }
+
+    /**
+     * Compression of the tiles or directories in an archive.
+     */
+    public enum Compression {
+        UNKNOWN(null), NONE(null), GZIP("gzip"), BROTLI("br"), ZSTD("zstd");
+
+        private final String contentEncoding;
+
+        Compression(String contentEncoding) {
+            this.contentEncoding = contentEncoding;
+        }
+
+        /**
+         * Returns the HTTP content encoding, or {@code null} if the data is
+         * not compressed.
+         */
+        public String getContentEncoding() {
+            return contentEncoding;
+        }
+    }
+
+    /**
+     * A tile.
+     *
+     * @param data
+     *            read-only view of the tile bytes, possibly compressed
+     * @param etag
+     *            entity tag, unique for the tile in this version of the file
+     */
+    public record Tile(ByteBuffer data, String etag) {
+    }
+
+    private static final int HEADER_SIZE = 127;
+    private static final int MAX_ZOOM = 26;
+    private static final int MAX_DIRECTORY_DEPTH = 4;
+    /**
+     * Size of the mapped chunks. A single mapping is limited to 2 GB.
+     */
+    private static final int CHUNK_BITS = 30;
+
+    /**
+     * A decompressed directory.
+     */
+    private record Directory(long[] tileIds, int[] runLengths, long[] offsets,
+            int[] lengths) {
+    }
+
+    /**
+     * Location of a tile in the tile data section.
+     */
+    private record TileLocation(long offset, int length) {
+    }
+
+    private final Path file;
+    private final MappedByteBuffer[] chunks;
+    private final String version;
+    private final long rootDirectoryOffset;
+    private final int rootDirectoryLength;
+    private final long leafDirectoriesOffset;
+    private final long tileDataOffset;
+    private final Compression internalCompression;
+    private final Compression tileCompression;
+    private final TileType tileType;
+    private final int minZoom;
+    private final int maxZoom;
+    private final double[] bounds;
+    private final double[] center;
+    private final Map<String, Object> metadata;
+    private final LruCache<Long, Directory> directories;
+    private final LruCache<Long, TileLocation> tiles;
+
+    /**
+     * Opens an archive.
+     *
+     * @param file
+     *            the archive file
+     * @param cacheSize
+     *            number of tile locations and of directories to cache
+     * @throws UncheckedIOException
+     *             if the file cannot be read
+     * @throws IllegalArgumentException
+     *             if the file is not a supported PMTiles archive
+     */
+    public PmTilesArchive(Path file, int cacheSize) {
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            int count = (int) ((size + (1L << CHUNK_BITS) - 1) >>> CHUNK_BITS);
+            chunks = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long start = (long) i << CHUNK_BITS;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(1L << CHUNK_BITS, size - start));
+            }
+            version = Long.toHexString(size) + "-" + Long.toHexString(
+                    Files.getLastModifiedTime(file).toMillis());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open " + file, e);
+        }
+
+        ByteBuffer header = read(0, HEADER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        byte[] magic = new byte[7];
+        header.get(0, magic);
+        if (!"PMTiles".equals(new String(magic, StandardCharsets.US_ASCII))
+                || header.get(7) != 3) {
+            throw new IllegalArgumentException(
+                    file + " is not a PMTiles version 3 archive");
+        }
+        rootDirectoryOffset = header.getLong(8);
+        rootDirectoryLength = (int) header.getLong(16);
+        long metadataOffset = header.getLong(24);
+        int metadataLength = (int) header.getLong(32);
+        leafDirectoriesOffset = header.getLong(40);
+        tileDataOffset = header.getLong(56);
+        internalCompression = compression(header.get(97));
+        tileCompression = compression(header.get(98));
+        int type = header.get(99);
+        tileType = type >= 0 && type < TileType.values().length
+                ? TileType.values()[type]
+                : TileType.UNKNOWN;
+        minZoom = Byte.toUnsignedInt(header.get(100));
+        maxZoom = Byte.toUnsignedInt(header.get(101));
+        bounds = new double[] { header.getInt(102) / 1e7,
+                header.getInt(106) / 1e7, header.getInt(110) / 1e7,
+                header.getInt(114) / 1e7 };
+        center = new double[] { header.getInt(119) / 1e7,
+                header.getInt(123) / 1e7,
+                Byte.toUnsignedInt(header.get(118)) };
+        if (internalCompression != Compression.NONE
+                && internalCompression != Compression.GZIP) {
+            throw new IllegalArgumentException(file + " uses "
+                    + internalCompression + " for directories and metadata, "
+                    + "only NONE and GZIP are supported");
+        }
+        metadata = metadataLength == 0 ? Map.of()
+                : parseMetadata(decompress(
+                        read(metadataOffset, metadataLength), "metadata"));
+
+        directories = new LruCache<>(cacheSize);
+        tiles = new LruCache<>(cacheSize);
+    }
+
+    /**
+     * Finds a tile.
+     *
+     * @return the tile, or an empty optional if the archive has no such tile
+     */
+    public Optional<Tile> tile(int z, int x, int y) {
+        if (z < minZoom || z > maxZoom || z > MAX_ZOOM || x < 0 || y < 0
+                || x >= 1 << z || y >= 1 << z) {
+            return Optional.empty();
+        }
+        long tileId = tileId(z, x, y);
+        TileLocation location = tiles.get(tileId);
+        if (location == null) {
+            location = locate(tileId);
+            if (location == null) {
+                return Optional.empty();
+            }
+            tiles.put(tileId, location);
+        }
+        return Optional.of(new Tile(
+                read(tileDataOffset + location.offset(), location.length()),
+                '"' + version + "-" + Long.toHexString(location.offset())
+                        + '"'));
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public TileType getTileType() {
+        return tileType;
+    }
+
+    public Compression getTileCompression() {
+        return tileCompression;
+    }
+
+    public int getMinZoom() {
+        return minZoom;
+    }
+
+    public int getMaxZoom() {
+        return maxZoom;
+    }
+
+    /**
+     * Returns the bounds as min longitude, min latitude, max longitude and max
+     * latitude.
+     */
+    public double[] getBounds() {
+        return bounds.clone();
+    }
+
+    /**
+     * Returns the center as longitude, latitude and zoom level.
+     */
+    public double[] getCenter() {
+        return center.clone();
+    }
+
+    /**
+     * Returns the attribution of the tiles from the archive metadata. It may
+     * contain HTML links.
+     *
+     * @return the attribution, or an empty optional if the metadata has none
+     */
+    public Optional<String> getAttribution() {
+        return metadata.get("attribution") instanceof String attribution
+                && !attribution.isBlank() ? Optional.of(attribution)
+                        : Optional.empty();
+    }
+
+    private TileLocation locate(long tileId) {
+        long offset = rootDirectoryOffset;
+        int length = rootDirectoryLength;
+        for (int depth = 0; depth < MAX_DIRECTORY_DEPTH; depth++) {
+            Directory directory = directory(offset, length);
+            int entry = findEntry(directory, tileId);
+            if (entry < 0) {
+                return null;
+            }
+            if (directory.runLengths()[entry] > 0) {
+                return new TileLocation(directory.offsets()[entry],
+                        directory.lengths()[entry]);
+            }
+            // Points to a leaf directory
+            offset = leafDirectoriesOffset + directory.offsets()[entry];
+            length = directory.lengths()[entry];
+        }
+        return null;
+    }
+
+    private Directory directory(long offset, int length) {
+        Directory directory = directories.get(offset);
+        if (directory == null) {
+            directory = parseDirectory(
+                    decompress(read(offset, length), "directory"));
+            directories.put(offset, directory);
+        }
+        return directory;
+    }
+
+    /**
+     * Returns the entry covering a tile, or -1 if there is none.
+     */
+    private static int findEntry(Directory directory, long tileId) {
+        long[] tileIds = directory.tileIds();
+        int low = 0;
+        int high = tileIds.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long cmp = tileIds[middle] - tileId;
+            if (cmp < 0) {
+                low = middle + 1;
+            } else if (cmp > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        // The entry before the insertion point may cover a run of tiles, or
+        // be a leaf directory starting before the tile
+        if (high >= 0) {
+            int runLength = directory.runLengths()[high];
+            if (runLength == 0 || tileId - tileIds[high] < runLength) {
+                return high;
+            }
+        }
+        return -1;
+    }
+
+    private static Directory parseDirectory(ByteBuffer data) {
+        int count = (int) readVarint(data);
+        long[] tileIds = new long[count];
+        int[] runLengths = new int[count];
+        long[] offsets = new long[count];
+        int[] lengths = new int[count];
+        long lastId = 0;
+        for (int i = 0; i < count; i++) {
+            lastId += readVarint(data);
+            tileIds[i] = lastId;
+        }
+        for (int i = 0; i < count; i++) {
+            runLengths[i] = (int) readVarint(data);
+        }
+        for (int i = 0; i < count; i++) {
+            lengths[i] = (int) readVarint(data);
+        }
+        for (int i = 0; i < count; i++) {
+            long value = readVarint(data);
+            // Zero means directly after the previous entry
+            offsets[i] = value == 0 && i > 0
+                    ? offsets[i - 1] + lengths[i - 1]
+                    : value - 1;
+        }
+        return new Directory(tileIds, runLengths, offsets, lengths);
+    }
+
+    private Map<String, Object> parseMetadata(ByteBuffer data) {
+        String json = StandardCharsets.UTF_8.decode(data).toString();
+        try {
+            return JsonParserFactory.getJsonParser().parseMap(json);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(
+                    "Invalid metadata in " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private ByteBuffer decompress(ByteBuffer data, String section) {
+        if (internalCompression == Compression.NONE) {
+            return data;
+        }
+        byte[] compressed = new byte[data.remaining()];
+        data.get(compressed);
+        try (InputStream in = new GZIPInputStream(
+                new ByteArrayInputStream(compressed))) {
+            return ByteBuffer.wrap(in.readAllBytes());
+        } catch (IOException e) {
+            throw new UncheckedIOException(
+                    "Corrupt " + section + " in " + file, e);
+        }
+    }
+
+    /**
+     * Returns a read-only view of a range of the file. Only a range crossing
+     * two mapped chunks is copied.
+     */
+    private ByteBuffer read(long offset, int length) {
+        int chunk = (int) (offset >>> CHUNK_BITS);
+        int start = (int) (offset & ((1L << CHUNK_BITS) - 1));
+        if (chunk >= chunks.length
+                || offset + length > ((long) chunks.length - 1 << CHUNK_BITS)
+                        + chunks[chunks.length - 1].capacity()) {
+            throw new IllegalArgumentException(
+                    "Range outside of " + file + ": " + offset + "+" + length);
+        }
+        if (start + length <= chunks[chunk].capacity()) {
+            return chunks[chunk].slice(start, length).asReadOnlyBuffer();
+        }
+        ByteBuffer copy = ByteBuffer.allocate(length);
+        int first = chunks[chunk].capacity() - start;
+        copy.put(chunks[chunk].slice(start, first));
+        copy.put(chunks[chunk + 1].slice(0, length - first));
+        return copy.flip().asReadOnlyBuffer();
+    }
+
+    private static long readVarint(ByteBuffer data) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = data.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+
+    private static Compression compression(byte value) {
+        return value >= 0 && value < Compression.values().length
+                ? Compression.values()[value]
+                : Compression.UNKNOWN;
+    }
+
+    /**
+     * Returns the PMTiles tile id: the number of tiles on all lower zoom
+     * levels plus the position of the tile on the Hilbert curve of its zoom
+     * level.
+     */
+    static long tileId(int z, int x, int y) {
+        long id = ((1L << (2 * z)) - 1) / 3;
+        long tx = x;
+        long ty = y;
+        for (long s = 1L << z >>> 1; s > 0; s >>>= 1) {
+            long rx = (tx & s) > 0 ? 1 : 0;
+            long ry = (ty & s) > 0 ? 1 : 0;
+            id += s * s * ((3 * rx) ^ ry);
+            // Rotate the quadrant
+            if (ry == 0) {
+                if (rx == 1) {
+                    tx = s - 1 - tx;
+                    ty = s - 1 - ty;
+                }
+                long t = tx;
+                tx = ty;
+                ty = t;
+            }
+        }
+        return id;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.tiles;
+
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Opens the local tile archive when {@code geo.tiles.file} is set. Without
+ * it, the maps use the default OpenStreetMap tiles.
+ */
+@Configuration
+@ConditionalOnProperty("geo.tiles.file")
+public class TileConfiguration {
+
+    private static final Logger log = LoggerFactory
+            .getLogger(TileConfiguration.class);
+
+    @Bean
+    public PmTilesArchive tileArchive(@Value("${geo.tiles.file}") Path file,
+            @Value("${geo.tiles.cache-size:4096}") int cacheSize) {
+        PmTilesArchive archive = new PmTilesArchive(file, cacheSize);
+        log.info("Serving {} tiles for zoom {}-{} from {}",
+                archive.getTileType(), archive.getMinZoom(),
+                archive.getMaxZoom(), file);
+        return archive;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.tiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.util.zip.GZIPInputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.tiles.PmTilesArchive.Compression;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Serves the tiles of the local archive at {@code /tiles/{z}/{x}/{y}}.
+ * <p>
+ * Tiles are written straight from the memory-mapped file. Each tile has an
+ * entity tag derived from the file version and its location, so a revalidated
+ * tile is answered with 304 Not Modified without touching the file.
+ * Compressed vector tiles are sent as they are stored, with a matching
+ * {@code Content-Encoding}, to clients that accept the encoding. Gzip tiles
+ * are decompressed for other clients, and other encodings are answered with
+ * 406 Not Acceptable.
+ */
+@RestController
+@ConditionalOnProperty("geo.tiles.file")
+public class TileController {
+
+    private final PmTilesArchive archive;
+    private final String cacheControl;
+
+    public TileController(PmTilesArchive archive,
+            @Value("${geo.tiles.max-age:1d}") Duration maxAge) {
+        this.archive = archive;
+        this.cacheControl = "public, max-age=" + maxAge.toSeconds();
+    }
+
+    @GetMapping("/tiles/{z}/{x}/{y}")
+    public void tile(@PathVariable int z, @PathVariable int x,
+            @PathVariable int y,
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH,
+                    required = false) String ifNoneMatch,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING,
+                    required = false) String acceptEncoding,
+            HttpServletResponse response) throws IOException {
+        PmTilesArchive.Tile tile = archive.tile(z, x, y).orElse(null);
+        if (tile == null) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        String encoding = archive.getTileCompression().getContentEncoding();
+        boolean decompress = false;
+        String etag = tile.etag();
+        if (encoding != null) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (!accepts(acceptEncoding, encoding)) {
+                if (archive.getTileCompression() != Compression.GZIP) {
+                    response.setStatus(HttpStatus.NOT_ACCEPTABLE.value());
+                    return;
+                }
+                decompress = true;
+                // A different representation needs a different tag
+                etag = etag.substring(0, etag.length() - 1) + "-identity\"";
+            }
+        }
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        if (ifNoneMatch != null
+                && (ifNoneMatch.equals("*") || ifNoneMatch.contains(etag))) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+
+        ByteBuffer data = tile.data();
+        response.setContentType(archive.getTileType().getContentType());
+        if (decompress) {
+            byte[] compressed = new byte[data.remaining()];
+            data.get(compressed);
+            try (InputStream in = new GZIPInputStream(
+                    new ByteArrayInputStream(compressed))) {
+                in.transferTo(response.getOutputStream());
+            }
+            return;
+        }
+        response.setContentLength(data.remaining());
+        if (encoding != null) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding);
+        }
+        WritableByteChannel out = Channels
+                .newChannel(response.getOutputStream());
+        while (data.hasRemaining()) {
+            out.write(data);
+        }
+    }
+
+    /**
+     * Checks whether an {@code Accept-Encoding} header allows a content
+     * coding. A missing header is taken as accepting only unencoded
+     * responses, as clients that decode responses send one.
+     */
+    static boolean accepts(String acceptEncoding, String encoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        boolean wildcard = false;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.split(";");
+            String coding = parts[0].trim();
+            boolean allowed = true;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.regionMatches(true, 0, "q=", 0, 2)) {
+                    allowed = !parameter.substring(2).trim()
+                            .matches("0(\\.0{0,3})?");
+                }
+            }
+            // x-gzip is an old name of gzip
+            if (coding.equalsIgnoreCase(encoding) || encoding.equals("gzip")
+                    && coding.equalsIgnoreCase("x-gzip")) {
+                return allowed;
+            }
+            if (coding.equals("*")) {
+                wildcard = allowed;
+            }
+        }
+        return wildcard;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.track;
+
+import java.io.Serializable;
+
+import com.vaadin.flow.component.geolocation.GeolocationCoordinates;
+import com.vaadin.flow.component.geolocation.GeolocationPosition;
+
+/**
+ * A single position fix, decoupled from where it came from.
+ *
+ * @param latitude
+ *            latitude in degrees
+ * @param longitude
+ *            longitude in degrees
+ * @param accuracy
+ *            accuracy radius in meters
+ * @param altitude
+ *            altitude in meters, or {@code null} if not available
+ * @param altitudeAccuracy
+ *            altitude accuracy in meters, or {@code null} if not available
+ * @param heading
+ *            heading in degrees clockwise from north, or {@code null} if not
+ *            available
+ * @param speed
+ *            speed in meters per second, or {@code null} if not available
+ * @param timestamp
+ *            time of the fix in epoch milliseconds
+ */
+public record Fix(double latitude, double longitude, double accuracy,
+        Double altitude, Double altitudeAccuracy, Double heading,
+        Double speed, long timestamp) implements Serializable {
+
+    /**
+     * Creates a fix from a position reported by the browser.
+     */
+    public static Fix of(GeolocationPosition position) {
+        GeolocationCoordinates c = position.coords();
+        return new Fix(c.latitude(), c.longitude(), c.accuracy(),
+                c.altitude(), c.altitudeAccuracy(), c.heading(), c.speed(),
+                position.timestamp());
+    }
+}
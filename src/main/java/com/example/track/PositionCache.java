@@ -0,0 +1,89 @@
+package com.example.track;
+
+import java.io.Serializable;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.vaadin.flow.server.VaadinSession;
+
+/**
+ * The last known position of a Vaadin session, from one-shot requests as
+ * well as from tracking. Lets a position request with a maximum age be
+ * answered on the server without a round-trip to the browser.
+ * <p>
+ * The age of a cached position is measured from when the server received
+ * it, since the browser clock cannot be trusted to match the server clock.
+ * Positions may be stored from any thread.
+ */
+public class PositionCache implements Serializable {
+
+    /**
+     * A cached position.
+     *
+     * @param fix
+     *            the position
+     * @param highAccuracy
+     *            whether the position was requested with high accuracy
+     * @param receivedAt
+     *            when the server received the position, in epoch milliseconds
+     */
+    public record Entry(Fix fix, boolean highAccuracy, long receivedAt)
+            implements Serializable {
+
+        /**
+         * Returns the age of the position in milliseconds.
+         */
+        public long age() {
+            return Math.max(0, System.currentTimeMillis() - receivedAt);
+        }
+    }
+
+    private final AtomicReference<Entry> latest = new AtomicReference<>();
+
+    /**
+     * Returns the cache of a session, creating it if needed. Must be called
+     * with the session locked.
+     */
+    public static PositionCache of(VaadinSession session) {
+        PositionCache cache = session.getAttribute(PositionCache.class);
+        if (cache == null) {
+            cache = new PositionCache();
+            session.setAttribute(PositionCache.class, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Stores a position received now.
+     *
+     * @param highAccuracy
+     *            whether the position was requested with high accuracy
+     */
+    public void put(Fix fix, boolean highAccuracy) {
+        latest.set(new Entry(fix, highAccuracy, System.currentTimeMillis()));
+    }
+
+    /**
+     * Finds a position that satisfies a request.
+     *
+     * @param maximumAge
+     *            the maximum age in milliseconds
+     * @param highAccuracy
+     *            whether the request wants high accuracy, in which case a
+     *            position requested without it is not used
+     * @return the cached position, or an empty optional if there is none or
+     *         it is too old
+     */
+    public Optional<Entry> find(long maximumAge, boolean highAccuracy) {
+        Entry entry = latest.get();
+        if (entry == null || entry.age() > maximumAge
+                || (highAccuracy && !entry.highAccuracy())) {
+            return Optional.empty();
+        }
+        return Optional.of(entry);
+    }
+
+    public void clear() {
+        latest.set(null);
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.track;
+
+import com.vaadin.flow.function.SerializableConsumer;
+import com.vaadin.flow.shared.Registration;
+
+/**
+ * A server side source of positions for the track view, in addition to the
+ * browser Geolocation API. The application itself has none; the load test
+ * build provides one that generates synthetic positions for headless
+ * clients, which have no browser to get positions from.
+ */
+public interface PositionFeed {
+
+    /**
+     * Starts a new position stream.
+     *
+     * @param consumer
+     *            receives the positions, on a thread of the feed
+     * @return a registration that stops the stream
+     */
+    Registration start(SerializableConsumer<Fix> consumer);
+
+    /**
+     * Called when a position of a stream has been rendered.
+     */
+    default void rendered(Fix fix) {
+    }
+}
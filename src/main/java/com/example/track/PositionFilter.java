@@ -0,0 +1,270 @@
+package com.example.track;
+
+import com.example.geo.GeoMath;
+
+/**
+ * Smooths a stream of position fixes with a Kalman filter and suppresses
+ * fixes that do not move the position noticeably.
+ * <p>
+ * The filter uses a constant velocity model in a local east/north plane in
+ * meters. Each fix is weighted by its accuracy, which the Geolocation API
+ * reports as a 95% confidence radius, so a fix with a large radius barely
+ * moves the estimate. Fixes that are too far from the prediction to be
+ * explained by the accuracy and the expected acceleration are rejected as
+ * outliers, unless several arrive in a row, in which case the filter starts
+ * over from the latest fix.
+ * <p>
+ * A filtered position is only reported when it has moved beyond the
+ * combined error radius of the estimate and the last reported position, or
+ * when it is much more accurate than the last reported one. A phone standing still therefore reports its position once
+ * instead of every second.
+ * <p>
+ * Instances are not thread-safe; use one per tracked session.
+ */
+public class PositionFilter {
+
+    /**
+     * Result of adding a fix.
+     */
+    public enum Outcome {
+        /**
+         * The filtered position changed noticeably, see
+         * {@link PositionFilter#current()}.
+         */
+        ACCEPTED,
+        /**
+         * The fix was used, but the filtered position stayed within the error
+         * radius of the last reported one.
+         */
+        SUPPRESSED,
+        /**
+         * The fix was discarded as an outlier or as older than the previous
+         * fix.
+         */
+        REJECTED
+    }
+
+    /**
+     * Standard deviation of the acceleration, in m/s&sup2;, that the filter
+     * expects. Pedestrians and city traffic stay well within this.
+     */
+    public static final double DEFAULT_ACCELERATION = 1.5;
+    /**
+     * Movements shorter than this, in meters, are never reported.
+     */
+    public static final double DEFAULT_MIN_DISTANCE = 3;
+
+    /**
+     * Ratio of the 95% confidence radius to the standard deviation of a two
+     * dimensional normal distribution.
+     */
+    private static final double RADIUS_95 = 2.448;
+    /**
+     * Squared Mahalanobis distance with a 99.9% probability for two degrees of
+     * freedom. Fixes further from the prediction are outliers.
+     */
+    private static final double OUTLIER_DISTANCE_SQUARED = 13.8;
+    /**
+     * Number of consecutive outliers after which the filter assumes that the
+     * position really jumped.
+     */
+    private static final int MAX_CONSECUTIVE_OUTLIERS = 3;
+    /**
+     * Factor by which the accuracy must improve to report a position that has
+     * not moved.
+     */
+    private static final double ACCURACY_IMPROVEMENT = 0.5;
+    private static final double MIN_ACCURACY = 1;
+
+    private final double accelerationVariance;
+    private final double minDistance;
+
+    // Origin of the local plane, the first fix after a reset
+    private boolean initialized;
+    private double originLatitude;
+    private double originLongitude;
+    private double metersPerDegreeLongitude;
+    private long timestamp;
+
+    // State per axis: position and velocity. Both axes share the same
+    // covariance, since the noise is the same in all directions.
+    private double east;
+    private double eastVelocity;
+    private double north;
+    private double northVelocity;
+    private double positionVariance;
+    private double covariance;
+    private double velocityVariance;
+
+    private int consecutiveOutliers;
+    private Fix current;
+    private double reportedEast;
+    private double reportedNorth;
+    private double reportedAccuracy;
+
+    public PositionFilter() {
+        this(DEFAULT_ACCELERATION, DEFAULT_MIN_DISTANCE);
+    }
+
+    /**
+     * Creates a filter.
+     *
+     * @param acceleration
+     *            standard deviation of the expected acceleration in
+     *            m/s&sup2;, higher values follow quick changes of direction
+     *            more closely but smooth less
+     * @param minDistance
+     *            movements shorter than this, in meters, are never reported
+     */
+    public PositionFilter(double acceleration, double minDistance) {
+        if (!(acceleration > 0)) {
+            throw new IllegalArgumentException(
+                    "Acceleration must be positive: " + acceleration);
+        }
+        this.accelerationVariance = acceleration * acceleration;
+        this.minDistance = minDistance;
+    }
+
+    /**
+     * Adds a fix to the filter.
+     *
+     * @return whether the filtered position changed noticeably
+     */
+    public Outcome add(Fix fix) {
+        if (!initialized) {
+            reset(fix);
+            return Outcome.ACCEPTED;
+        }
+        double dt = (fix.timestamp() - timestamp) / 1000.0;
+        if (dt < 0 || !Double.isFinite(fix.latitude())
+                || !Double.isFinite(fix.longitude())) {
+            return Outcome.REJECTED;
+        }
+        double sigma = Math.max(MIN_ACCURACY, fix.accuracy()) / RADIUS_95;
+        double measurementVariance = sigma * sigma;
+
+        // Predict
+        double dt2 = dt * dt;
+        double predictedEast = east + eastVelocity * dt;
+        double predictedNorth = north + northVelocity * dt;
+        double p00 = positionVariance + dt * (2 * covariance
+                + dt * velocityVariance)
+                + accelerationVariance * dt2 * dt2 / 4;
+        double p01 = covariance + dt * velocityVariance
+                + accelerationVariance * dt2 * dt / 2;
+        double p11 = velocityVariance + accelerationVariance * dt2;
+
+        // Innovation
+        double residualEast = toEast(fix.longitude()) - predictedEast;
+        double residualNorth = toNorth(fix.latitude()) - predictedNorth;
+        double s = p00 + measurementVariance;
+        if ((residualEast * residualEast + residualNorth * residualNorth)
+                / s > OUTLIER_DISTANCE_SQUARED) {
+            if (++consecutiveOutliers < MAX_CONSECUTIVE_OUTLIERS) {
+                return Outcome.REJECTED;
+            }
+            // Not noise after all, the position jumped
+            reset(fix);
+            return Outcome.ACCEPTED;
+        }
+        consecutiveOutliers = 0;
+
+        // Update
+        double gainPosition = p00 / s;
+        double gainVelocity = p01 / s;
+        east = predictedEast + gainPosition * residualEast;
+        north = predictedNorth + gainPosition * residualNorth;
+        eastVelocity += gainVelocity * residualEast;
+        northVelocity += gainVelocity * residualNorth;
+        positionVariance = (1 - gainPosition) * p00;
+        covariance = (1 - gainPosition) * p01;
+        velocityVariance = p11 - gainVelocity * p01;
+        timestamp = fix.timestamp();
+
+        double accuracy = RADIUS_95 * Math.sqrt(positionVariance);
+        double moved = Math.hypot(east - reportedEast, north - reportedNorth);
+        // Both positions are estimates, so their distance has the error of
+        // both; the current error alone lets the wandering of a device
+        // standing still through
+        if (moved <= Math.max(minDistance,
+                Math.hypot(accuracy, reportedAccuracy))
+                && accuracy > reportedAccuracy * ACCURACY_IMPROVEMENT) {
+            return Outcome.SUPPRESSED;
+        }
+        report(fix, accuracy);
+        return Outcome.ACCEPTED;
+    }
+
+    /**
+     * Returns the last reported position, or {@code null} if no fix has been
+     * added yet. Its accuracy is the 95% confidence radius of the estimate.
+     */
+    public Fix current() {
+        return current;
+    }
+
+    /**
+     * Starts over, forgetting all fixes added so far.
+     */
+    public void reset() {
+        initialized = false;
+        current = null;
+        consecutiveOutliers = 0;
+    }
+
+    private void reset(Fix fix) {
+        initialized = true;
+        originLatitude = fix.latitude();
+        originLongitude = fix.longitude();
+        metersPerDegreeLongitude = GeoMath.METERS_PER_DEGREE
+                * Math.max(0.01, Math.cos(Math.toRadians(originLatitude)));
+        timestamp = fix.timestamp();
+        consecutiveOutliers = 0;
+
+        double sigma = Math.max(MIN_ACCURACY, fix.accuracy()) / RADIUS_95;
+        east = 0;
+        north = 0;
+        positionVariance = sigma * sigma;
+        covariance = 0;
+        if (fix.speed() != null && fix.heading() != null) {
+            double heading = Math.toRadians(fix.heading());
+            eastVelocity = fix.speed() * Math.sin(heading);
+            northVelocity = fix.speed() * Math.cos(heading);
+        } else {
+            eastVelocity = 0;
+            northVelocity = 0;
+        }
+        // Unknown velocity, allow for a brisk walk in any direction
+        velocityVariance = 4;
+        report(fix, Math.max(MIN_ACCURACY, fix.accuracy()));
+    }
+
+    private void report(Fix fix, double accuracy) {
+        reportedEast = east;
+        reportedNorth = north;
+        reportedAccuracy = accuracy;
+        double speed = Math.hypot(eastVelocity, northVelocity);
+        current = new Fix(fromNorth(north), fromEast(east), accuracy,
+                fix.altitude(), fix.altitudeAccuracy(),
+                fix.heading(),
+                fix.speed() != null ? speed : null, fix.timestamp());
+    }
+
+    private double toEast(double longitude) {
+        return GeoMath.normalizeLongitude(longitude - originLongitude)
+                * metersPerDegreeLongitude;
+    }
+
+    private double toNorth(double latitude) {
+        return (latitude - originLatitude) * GeoMath.METERS_PER_DEGREE;
+    }
+
+    private double fromEast(double east) {
+        return GeoMath.normalizeLongitude(
+                originLongitude + east / metersPerDegreeLongitude);
+    }
+
+    private double fromNorth(double north) {
+        return originLatitude + north / GeoMath.METERS_PER_DEGREE;
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.track;
+
+import com.example.geo.GeoMath;
+
+/**
+ * Simplifies a polyline online, as points arrive, within a bounded amount of
+ * memory.
+ * <p>
+ * The simplifier uses an opening window: points are collected after the last
+ * kept point (the anchor) for as long as all of them are within the tolerance
+ * of the segment from the anchor to the newest point. When a new point would
+ * break the tolerance, the previous point is kept and becomes the new anchor.
+ * The window is limited in size, so the cost per point is bounded.
+ * <p>
+ * Kept points are stored in primitive arrays of a fixed capacity. When they
+ * fill up, the tolerance is doubled and the kept points are simplified again
+ * in place, so the line of a track of any length, including its newest
+ * point, never has more than the given number of points.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class StreamingSimplifier {
+
+    private static final int WINDOW_SIZE = 64;
+
+    private final int maxPoints;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] windowLatitudes = new double[WINDOW_SIZE];
+    private final double[] windowLongitudes = new double[WINDOW_SIZE];
+    private double tolerance;
+    private double toleranceSquared;
+    private int size;
+    private int windowSize;
+    private long inputCount;
+    private long modificationCount;
+    private double changedLatitude;
+    private double changedLongitude;
+    private double metersPerLongitudeDegree;
+
+    /**
+     * Creates a simplifier.
+     *
+     * @param tolerance
+     *            the initial maximum distance in meters between a dropped
+     *            point and the simplified line
+     * @param maxPoints
+     *            the maximum number of kept points, at least 16
+     */
+    public StreamingSimplifier(double tolerance, int maxPoints) {
+        if (!(tolerance > 0)) {
+            throw new IllegalArgumentException(
+                    "Tolerance must be positive, was " + tolerance);
+        }
+        if (maxPoints < 16) {
+            throw new IllegalArgumentException(
+                    "At least 16 points are needed, was " + maxPoints);
+        }
+        this.maxPoints = maxPoints;
+        latitudes = new double[maxPoints - 1];
+        longitudes = new double[maxPoints - 1];
+        setTolerance(tolerance);
+    }
+
+    /**
+     * Adds the next point of the line.
+     */
+    public void add(double latitude, double longitude) {
+        inputCount++;
+        long keptModificationCount = modificationCount;
+        if (size == 0) {
+            metersPerLongitudeDegree = GeoMath.METERS_PER_DEGREE
+                    * Math.cos(Math.toRadians(latitude));
+            keep(latitude, longitude);
+            return;
+        }
+        if (windowSize == WINDOW_SIZE || (windowSize > 0
+                && exceedsTolerance(latitudes[size - 1], longitudes[size - 1],
+                        latitude, longitude, windowLatitudes,
+                        windowLongitudes, 0, windowSize))) {
+            // All points in the window are within the tolerance of the line
+            // to the previous point, so only that one needs to be kept
+            keep(windowLatitudes[windowSize - 1],
+                    windowLongitudes[windowSize - 1]);
+            windowSize = 0;
+        }
+        windowLatitudes[windowSize] = latitude;
+        windowLongitudes[windowSize] = longitude;
+        windowSize++;
+        // The newest point alone only counts as a change once it is further
+        // than the tolerance from where it was at the last change
+        if (modificationCount != keptModificationCount
+                || exceedsTolerance(changedLatitude, changedLongitude,
+                        latitude, longitude)) {
+            changed(latitude, longitude);
+        }
+    }
+
+    /**
+     * Returns the number of points of the simplified line, including the
+     * most recently added point.
+     */
+    public int size() {
+        return windowSize > 0 ? size + 1 : size;
+    }
+
+    /**
+     * Returns the latitude of a point of the simplified line.
+     *
+     * @param index
+     *            the index of the point, from 0 to {@code size() - 1}
+     */
+    public double latitude(int index) {
+        checkIndex(index);
+        return index < size ? latitudes[index]
+                : windowLatitudes[windowSize - 1];
+    }
+
+    /**
+     * Returns the longitude of a point of the simplified line.
+     *
+     * @param index
+     *            the index of the point, from 0 to {@code size() - 1}
+     */
+    public double longitude(int index) {
+        checkIndex(index);
+        return index < size ? longitudes[index]
+                : windowLongitudes[windowSize - 1];
+    }
+
+    /**
+     * Returns the number of points added so far.
+     */
+    public long inputCount() {
+        return inputCount;
+    }
+
+    /**
+     * Returns the current tolerance in meters. It grows when the kept points
+     * are simplified again to stay within the capacity.
+     */
+    public double tolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Returns a counter that changes whenever the kept points change, or the
+     * newest point has moved further than the tolerance since the last
+     * change. A line drawn at the last change is thus never off by more than
+     * the tolerance, without being redrawn for every added point.
+     */
+    public long modificationCount() {
+        return modificationCount;
+    }
+
+    private void keep(double latitude, double longitude) {
+        // One place is left for the newest point, which is not kept yet
+        if (size == maxPoints - 1) {
+            compact();
+        }
+        latitudes[size] = latitude;
+        longitudes[size] = longitude;
+        size++;
+        changed(latitude, longitude);
+    }
+
+    private void changed(double latitude, double longitude) {
+        modificationCount++;
+        changedLatitude = latitude;
+        changedLongitude = longitude;
+    }
+
+    /**
+     * Doubles the tolerance and simplifies the kept points again with the
+     * same opening window, in place, until there is room for more points.
+     * The first and last kept points always stay.
+     */
+    private void compact() {
+        do {
+            setTolerance(tolerance * 2);
+            int kept = 1;
+            int windowStart = 1;
+            for (int i = 1; i < size; i++) {
+                // Writes go to index kept, which is always below windowStart,
+                // so unread points are never overwritten
+                if (i > windowStart && (i - windowStart >= WINDOW_SIZE
+                        || exceedsTolerance(latitudes[kept - 1],
+                                longitudes[kept - 1], latitudes[i],
+                                longitudes[i], latitudes, longitudes,
+                                windowStart, i))) {
+                    latitudes[kept] = latitudes[i - 1];
+                    longitudes[kept] = longitudes[i - 1];
+                    kept++;
+                    windowStart = i;
+                }
+            }
+            latitudes[kept] = latitudes[size - 1];
+            longitudes[kept] = longitudes[size - 1];
+            size = kept + 1;
+        } while (size >= maxPoints - 1);
+    }
+
+    private boolean exceedsTolerance(double startLatitude,
+            double startLongitude, double endLatitude, double endLongitude,
+            double[] pointLatitudes, double[] pointLongitudes, int from,
+            int to) {
+        // Project to a local plane in meters around the start point
+        double kx = metersPerLongitudeDegree;
+        double ky = GeoMath.METERS_PER_DEGREE;
+        double bx = (endLongitude - startLongitude) * kx;
+        double by = (endLatitude - startLatitude) * ky;
+        double lengthSquared = bx * bx + by * by;
+        for (int i = from; i < to; i++) {
+            double px = (pointLongitudes[i] - startLongitude) * kx;
+            double py = (pointLatitudes[i] - startLatitude) * ky;
+            double t = lengthSquared == 0 ? 0
+                    : Math.max(0,
+                            Math.min(1, (px * bx + py * by) / lengthSquared));
+            double dx = px - t * bx;
+            double dy = py - t * by;
+            if (dx * dx + dy * dy > toleranceSquared) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean exceedsTolerance(double fromLatitude,
+            double fromLongitude, double toLatitude, double toLongitude) {
+        double dx = (toLongitude - fromLongitude) * metersPerLongitudeDegree;
+        double dy = (toLatitude - fromLatitude) * GeoMath.METERS_PER_DEGREE;
+        return dx * dx + dy * dy > toleranceSquared;
+    }
+
+    private void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+        this.toleranceSquared = tolerance * tolerance;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(
+                    "Index " + index + " out of bounds for size " + size());
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.track;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes recorded tracks as GPX or GeoJSON documents.
+ * <p>
+ * Positions are written one at a time while replaying the track from the
+ * {@link TrackStore}, so the memory needed does not depend on the length of
+ * the track. Coordinates are written with the seven decimals they are stored
+ * with.
+ */
+public final class TrackExport {
+
+    /**
+     * A document format.
+     */
+    public enum Format {
+        GPX("gpx", "application/gpx+xml"),
+        GEOJSON("geojson", "application/geo+json");
+
+        private final String extension;
+        private final String contentType;
+
+        Format(String extension, String contentType) {
+            this.extension = extension;
+            this.contentType = contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private TrackExport() {
+    }
+
+    /**
+     * Writes a track to a stream, optionally gzipped. The stream is closed.
+     *
+     * @param name
+     *            the name of the track in the document
+     * @return the number of written positions
+     * @throws IOException
+     *             if writing fails
+     */
+    public static long write(TrackStore store, String trackId, String name,
+            Format format, boolean gzip, OutputStream out) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : out,
+                StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            return switch (format) {
+            case GPX -> writeGpx(store, trackId, name, writer);
+            case GEOJSON -> writeGeoJson(store, trackId, name, writer);
+            };
+        } catch (UncheckedIOException e) {
+            // Thrown from the replay visitors
+            throw e.getCause();
+        }
+    }
+
+    private static long writeGpx(TrackStore store, String trackId,
+            String name, Writer writer) throws IOException {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<gpx version=\"1.1\" creator=\"geo-demo\" "
+                + "xmlns=\"http://www.topografix.com/GPX/1/1\">\n<trk>\n");
+        writer.write("<name>");
+        writeXmlText(name, writer);
+        writer.write("</name>\n<trkseg>\n");
+        long count = store.replay(trackId,
+                (timestamp, latitude, longitude, accuracy) -> {
+                    try {
+                        writer.write("<trkpt lat=\"");
+                        writeCoordinate(latitude, writer);
+                        writer.write("\" lon=\"");
+                        writeCoordinate(longitude, writer);
+                        writer.write("\"><time>");
+                        writer.write(Instant.ofEpochMilli(timestamp).toString());
+                        writer.write("</time></trkpt>\n");
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+        writer.write("</trkseg>\n</trk>\n</gpx>\n");
+        return count;
+    }
+
+    /**
+     * Writes a LineString feature with the times of the positions in the
+     * {@code coordinateProperties} property. The times come before the
+     * coordinates in the document, so the track is replayed twice.
+     */
+    private static long writeGeoJson(TrackStore store, String trackId,
+            String name, Writer writer) throws IOException {
+        writer.write("{\"type\":\"Feature\",\"properties\":{\"name\":");
+        writeJsonString(name, writer);
+        writer.write(",\"coordinateProperties\":{\"times\":[");
+        long count = store.replay(trackId,
+                new ListVisitor(writer, Long.MAX_VALUE) {
+                    @Override
+                    void writeItem(long timestamp, double latitude,
+                            double longitude) throws IOException {
+                        writer.write('"');
+                        writer.write(
+                                Instant.ofEpochMilli(timestamp).toString());
+                        writer.write('"');
+                    }
+                });
+        writer.write("]}},\"geometry\":{\"type\":\"LineString\","
+                + "\"coordinates\":[");
+        // Positions appended meanwhile are left out, so that every coordinate
+        // has a time
+        store.replay(trackId, new ListVisitor(writer, count) {
+            @Override
+            void writeItem(long timestamp, double latitude, double longitude)
+                    throws IOException {
+                writer.write('[');
+                writeCoordinate(longitude, writer);
+                writer.write(',');
+                writeCoordinate(latitude, writer);
+                writer.write(']');
+            }
+        });
+        writer.write("]}}\n");
+        return count;
+    }
+
+    /**
+     * Writes at most a given number of positions as comma-separated items.
+     */
+    private abstract static class ListVisitor implements TrackVisitor {
+
+        private final Writer writer;
+        private final long limit;
+        private long written;
+
+        ListVisitor(Writer writer, long limit) {
+            this.writer = writer;
+            this.limit = limit;
+        }
+
+        @Override
+        public void accept(long timestamp, double latitude, double longitude,
+                double accuracy) {
+            if (written == limit) {
+                return;
+            }
+            try {
+                if (written > 0) {
+                    writer.write(',');
+                }
+                writeItem(timestamp, latitude, longitude);
+                written++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        abstract void writeItem(long timestamp, double latitude,
+                double longitude) throws IOException;
+    }
+
+    /**
+     * Writes a coordinate in plain decimal notation, which both formats
+     * require, without going through a string.
+     */
+    private static void writeCoordinate(double degrees, Writer writer)
+            throws IOException {
+        long fixed = TrackSegment.toFixed(degrees);
+        if (fixed < 0) {
+            writer.write('-');
+            fixed = -fixed;
+        }
+        long scale = (long) TrackSegment.COORDINATE_SCALE;
+        writer.write(Long.toString(fixed / scale));
+        writer.write('.');
+        long fraction = fixed % scale;
+        for (long digit = scale / 10; digit > 0; digit /= 10) {
+            writer.write((char) ('0' + fraction / digit % 10));
+        }
+    }
+
+    /**
+     * Writes text as XML character data. Characters that XML does not allow
+     * are replaced with U+FFFD, and a carriage return is written as a
+     * reference, as parsers would turn it into a line feed.
+     */
+    private static void writeXmlText(String text, Writer writer)
+            throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+            case '<' -> writer.write("&lt;");
+            case '>' -> writer.write("&gt;");
+            case '&' -> writer.write("&amp;");
+            case '\r' -> writer.write("&#13;");
+            case '\t', '\n' -> writer.write(c);
+            default -> writer.write(c < 0x20 || c == '\uFFFE' || c == '\uFFFF'
+                    ? '\uFFFD'
+                    : c);
+            }
+        }
+    }
+
+    private static void writeJsonString(String text, Writer writer)
+            throws IOException {
+        writer.write('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                writer.write('\\');
+                writer.write(c);
+            } else if (c < 0x20) {
+                writer.write("\\u00");
+                writer.write(Character.forDigit(c >> 4, 16));
+                writer.write(Character.forDigit(c & 0xf, 16));
+            } else {
+                writer.write(c);
+            }
+        }
+        writer.write('"');
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.track;
+
+/**
+ * Fixed-capacity history of tracked positions. Values are kept in parallel
+ * primitive arrays and the oldest entries are overwritten once the capacity
+ * is reached, so the memory used by a history stays constant no matter how
+ * long tracking runs.
+ * <p>
+ * Every added position gets a sequence number, starting from zero and
+ * increasing by one per position. A sequence number stays valid until the
+ * entry is evicted, which makes it a stable key for UI rows. Entries can also
+ * be addressed by index, where index 0 is the most recent position.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class TrackHistory {
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] accuracies;
+    private final long[] timestamps;
+    private long nextSequence;
+
+    /**
+     * Creates an empty history.
+     *
+     * @param capacity
+     *            the maximum number of positions to keep
+     */
+    public TrackHistory(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException(
+                    "Capacity must be positive, was " + capacity);
+        }
+        latitudes = new double[capacity];
+        longitudes = new double[capacity];
+        accuracies = new double[capacity];
+        timestamps = new long[capacity];
+    }
+
+    /**
+     * Adds a position, evicting the oldest one if the history is full.
+     *
+     * @return the sequence number of the added position
+     */
+    public long add(double latitude, double longitude, double accuracy,
+            long timestamp) {
+        long sequence = nextSequence++;
+        int slot = (int) (sequence % latitudes.length);
+        latitudes[slot] = latitude;
+        longitudes[slot] = longitude;
+        accuracies[slot] = accuracy;
+        timestamps[slot] = timestamp;
+        return sequence;
+    }
+
+    public int capacity() {
+        return latitudes.length;
+    }
+
+    /**
+     * Returns the number of positions currently kept.
+     */
+    public int size() {
+        return (int) Math.min(nextSequence, latitudes.length);
+    }
+
+    public boolean isEmpty() {
+        return nextSequence == 0;
+    }
+
+    /**
+     * Returns the number of positions added since the history was created,
+     * including evicted ones.
+     */
+    public long totalCount() {
+        return nextSequence;
+    }
+
+    /**
+     * Returns the sequence number of the entry at the given index, where 0 is
+     * the most recent position.
+     */
+    public long sequenceAt(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(
+                    "Index " + index + " out of bounds for size " + size());
+        }
+        return nextSequence - 1 - index;
+    }
+
+    /**
+     * Checks whether the entry with the given sequence number is still kept.
+     */
+    public boolean contains(long sequence) {
+        return sequence >= nextSequence - size() && sequence < nextSequence;
+    }
+
+    public double latitude(long sequence) {
+        return latitudes[slot(sequence)];
+    }
+
+    public double longitude(long sequence) {
+        return longitudes[slot(sequence)];
+    }
+
+    public double accuracy(long sequence) {
+        return accuracies[slot(sequence)];
+    }
+
+    public long timestamp(long sequence) {
+        return timestamps[slot(sequence)];
+    }
+
+    private int slot(long sequence) {
+        if (!contains(sequence)) {
+            throw new IndexOutOfBoundsException(
+                    "Sequence " + sequence + " is not in the history");
+        }
+        return (int) (sequence % latitudes.length);
+    }
+}
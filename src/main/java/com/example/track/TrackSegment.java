@@ -0,0 +1,121 @@
+package com.example.track;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary layout of a track segment file.
+ * <p>
+ * A segment starts with a fixed-size header followed by records. Coordinates
+ * are stored as fixed-point integers with 1e-7 degree resolution (about 1 cm)
+ * and accuracy in decimeters. Each record holds the zigzag varint encoded
+ * differences of timestamp, latitude and longitude to the previous record of
+ * the same segment, followed by the accuracy as an unsigned varint. The first
+ * record of a segment is relative to zero, so every segment can be decoded on
+ * its own.
+ *
+ * <pre>
+ * offset  size  field
+ *      0     4  magic "GTRK"
+ *      4     2  format version
+ *      6     2  reserved
+ *      8     4  number of records
+ *     12     4  end of the record data
+ *     16     8  timestamp of the first record
+ *     24     8  timestamp of the last record
+ *     32        records
+ * </pre>
+ *
+ * The writer updates the data end and record count only after a record has
+ * been written completely, so readers never see partial records.
+ */
+final class TrackSegment {
+
+    static final int MAGIC = 0x4754524B;
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_COUNT_OFFSET = 8;
+    static final int DATA_END_OFFSET = 12;
+    static final int FIRST_TIMESTAMP_OFFSET = 16;
+    static final int LAST_TIMESTAMP_OFFSET = 24;
+    /**
+     * Upper bound for the encoded size of one record: three 64-bit varints
+     * and one 32-bit varint.
+     */
+    static final int MAX_RECORD_SIZE = 3 * 10 + 5;
+
+    static final double COORDINATE_SCALE = 1e7;
+    static final double ACCURACY_SCALE = 10;
+
+    static final String FILE_SUFFIX = ".seg";
+
+    private TrackSegment() {
+    }
+
+    static long toFixed(double degrees) {
+        return Math.round(degrees * COORDINATE_SCALE);
+    }
+
+    static double fromFixed(long fixed) {
+        return fixed / COORDINATE_SCALE;
+    }
+
+    static int toAccuracy(double meters) {
+        if (!(meters > 0)) {
+            return 0;
+        }
+        return (int) Math.min(Integer.MAX_VALUE,
+                Math.round(meters * ACCURACY_SCALE));
+    }
+
+    static double fromAccuracy(int decimeters) {
+        return decimeters / ACCURACY_SCALE;
+    }
+
+    static void writeHeader(ByteBuffer buffer) {
+        buffer.putInt(0, MAGIC);
+        buffer.putShort(4, VERSION);
+        buffer.putShort(6, (short) 0);
+        buffer.putInt(RECORD_COUNT_OFFSET, 0);
+        buffer.putInt(DATA_END_OFFSET, HEADER_SIZE);
+        buffer.putLong(FIRST_TIMESTAMP_OFFSET, 0);
+        buffer.putLong(LAST_TIMESTAMP_OFFSET, 0);
+    }
+
+    static boolean hasValidHeader(ByteBuffer buffer) {
+        return buffer.capacity() >= HEADER_SIZE
+                && buffer.getInt(0) == MAGIC
+                && buffer.getShort(4) == VERSION;
+    }
+
+    static void putSignedVarLong(ByteBuffer buffer, long value) {
+        putVarLong(buffer, (value << 1) ^ (value >> 63));
+    }
+
+    static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long getSignedVarLong(ByteBuffer buffer) {
+        long raw = getVarLong(buffer);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift >= 64) {
+                throw new IllegalStateException("Malformed varint");
+            }
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.track;
+
+/**
+ * Keeps simplified versions of a track for a range of map zoom levels. Each
+ * level is a {@link StreamingSimplifier} whose tolerance matches the size of
+ * a screen pixel at that zoom, so the line for a zoom level has no more
+ * detail than can be seen, and a whole track stays renderable however long it
+ * gets.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class TrackSimplifier {
+
+    /**
+     * Ground resolution of one pixel at zoom level 0 at the equator, in
+     * meters, for 256 pixel web mercator tiles.
+     */
+    private static final double METERS_PER_PIXEL_AT_ZOOM_0 = 156_543.03;
+    private static final double PIXEL_TOLERANCE = 1.5;
+    private static final int[] LEVEL_ZOOMS = { 6, 9, 12, 15, 18 };
+
+    private final StreamingSimplifier[] levels = new StreamingSimplifier[LEVEL_ZOOMS.length];
+
+    /**
+     * Creates a simplifier.
+     *
+     * @param maxPointsPerLevel
+     *            the maximum number of points kept for each zoom level
+     */
+    public TrackSimplifier(int maxPointsPerLevel) {
+        for (int i = 0; i < levels.length; i++) {
+            double tolerance = PIXEL_TOLERANCE * METERS_PER_PIXEL_AT_ZOOM_0
+                    / (1 << LEVEL_ZOOMS[i]);
+            levels[i] = new StreamingSimplifier(tolerance, maxPointsPerLevel);
+        }
+    }
+
+    /**
+     * Adds the next point of the track to every level.
+     */
+    public void add(double latitude, double longitude) {
+        for (StreamingSimplifier level : levels) {
+            level.add(latitude, longitude);
+        }
+    }
+
+    /**
+     * Returns the simplified track to draw at the given zoom: the coarsest
+     * level that is still at least as detailed as the zoom requires.
+     */
+    public StreamingSimplifier forZoom(double zoom) {
+        for (int i = 0; i < levels.length; i++) {
+            if (LEVEL_ZOOMS[i] >= zoom) {
+                return levels[i];
+            }
+        }
+        return levels[levels.length - 1];
+    }
+
+    /**
+     * Returns the number of points added so far.
+     */
+    public long inputCount() {
+        return levels[0].inputCount();
+    }
+}
@@ -0,0 +1,309 @@
+package com.example.track;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Local disk storage for recorded tracks. Each track is a directory of
+ * append-only segment files in the compact binary format described in
+ * {@link TrackSegment}, written through memory-mapped buffers and read back
+ * sequentially without any parsing beyond varint decoding.
+ * <p>
+ * Tracks are kept for a limited time and up to a total size. Tracks last
+ * written to before the maximum age, and the least recently written tracks
+ * exceeding the maximum size, are deleted periodically. Tracks with an open
+ * writer are never deleted.
+ */
+@Component
+public class TrackStore {
+
+    private static final Logger log = LoggerFactory
+            .getLogger(TrackStore.class);
+
+    private static final Pattern TRACK_ID = Pattern
+            .compile("[A-Za-z0-9_-]{1,64}");
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Duration maxAge;
+    private final long maxSize;
+    private final Set<TrackWriter> openWriters = ConcurrentHashMap
+            .newKeySet();
+
+    /**
+     * Creates a store.
+     *
+     * @param directory
+     *            the directory holding the tracks
+     * @param segmentSize
+     *            the size of a segment file
+     * @param maxAge
+     *            how long a track is kept after it was last written to
+     * @param maxSize
+     *            the maximum total size of all tracks
+     */
+    public TrackStore(
+            @Value("${geo.track-store.directory:data/tracks}") Path directory,
+            @Value("${geo.track-store.segment-size:4MB}") DataSize segmentSize,
+            @Value("${geo.track-store.max-age:30d}") Duration maxAge,
+            @Value("${geo.track-store.max-size:1GB}") DataSize maxSize) {
+        if (segmentSize.toBytes() < TrackSegment.HEADER_SIZE
+                + TrackSegment.MAX_RECORD_SIZE
+                || segmentSize.toBytes() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                    "Invalid segment size " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = (int) segmentSize.toBytes();
+        this.maxAge = maxAge;
+        this.maxSize = maxSize.toBytes();
+    }
+
+    /**
+     * Opens a writer that appends to the given track, creating the track if
+     * it does not exist yet.
+     *
+     * @param trackId
+     *            the track id, consisting of letters, digits, dashes and
+     *            underscores
+     * @throws UncheckedIOException
+     *             if the track cannot be opened for writing
+     */
+    public TrackWriter open(String trackId) {
+        Path trackDirectory = trackDirectory(trackId);
+        try {
+            TrackWriter writer = new TrackWriter(trackDirectory, segmentSize,
+                    openWriters::remove);
+            openWriters.add(writer);
+            return writer;
+        } catch (IOException e) {
+            throw new UncheckedIOException(
+                    "Unable to open track " + trackId, e);
+        }
+    }
+
+    /**
+     * Writes the positions appended by all open writers to disk.
+     */
+    @Scheduled(fixedDelayString = "${geo.track-store.sync-interval:5s}")
+    public void syncAll() {
+        openWriters.forEach(TrackWriter::sync);
+    }
+
+    @PreDestroy
+    void closeAll() {
+        List.copyOf(openWriters).forEach(TrackWriter::close);
+    }
+
+    /**
+     * Deletes the tracks that are older than the maximum age or exceed the
+     * maximum total size, least recently written first.
+     *
+     * @return the number of deleted tracks
+     */
+    @Scheduled(fixedDelayString = "${geo.track-store.cleanup-interval:1h}")
+    public int deleteExpired() {
+        record TrackFiles(Path directory, long lastModified, long size) {
+        }
+        Set<Path> open = openWriters.stream().map(TrackWriter::getDirectory)
+                .collect(Collectors.toSet());
+        List<TrackFiles> tracks = new ArrayList<>();
+        for (String trackId : tracks()) {
+            Path trackDirectory = directory.resolve(trackId);
+            long lastModified = 0;
+            long size = 0;
+            try (Stream<Path> files = Files.list(trackDirectory)) {
+                for (Path file : files.toList()) {
+                    lastModified = Math.max(lastModified,
+                            Files.getLastModifiedTime(file).toMillis());
+                    size += Files.size(file);
+                }
+            } catch (IOException e) {
+                log.warn("Unable to check track {}", trackDirectory, e);
+                continue;
+            }
+            tracks.add(new TrackFiles(trackDirectory, lastModified, size));
+        }
+        tracks.sort(Comparator.comparingLong(TrackFiles::lastModified)
+                .reversed());
+
+        long expiry = System.currentTimeMillis() - maxAge.toMillis();
+        long total = 0;
+        int deleted = 0;
+        for (TrackFiles track : tracks) {
+            total += track.size();
+            if (open.contains(track.directory())
+                    || (track.lastModified() >= expiry && total <= maxSize)) {
+                continue;
+            }
+            try {
+                deleteTrack(track.directory());
+                total -= track.size();
+                deleted++;
+            } catch (IOException e) {
+                log.warn("Unable to delete track {}", track.directory(), e);
+            }
+        }
+        if (deleted > 0) {
+            log.info("Deleted {} expired tracks from {}", deleted, directory);
+        }
+        return deleted;
+    }
+
+    private static void deleteTrack(Path trackDirectory) throws IOException {
+        try (Stream<Path> files = Files.list(trackDirectory)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(trackDirectory);
+    }
+
+    /**
+     * Checks whether a track with the given id has been recorded.
+     */
+    public boolean exists(String trackId) {
+        return Files.isDirectory(trackDirectory(trackId));
+    }
+
+    /**
+     * Returns the ids of all recorded tracks.
+     *
+     * @throws UncheckedIOException
+     *             if the store directory cannot be listed
+     */
+    public List<String> tracks() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(Files::isDirectory)
+                    .map(file -> file.getFileName().toString())
+                    .filter(name -> TRACK_ID.matcher(name).matches())
+                    .sorted().toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(
+                    "Unable to list tracks in " + directory, e);
+        }
+    }
+
+    /**
+     * Replays all positions of a track.
+     *
+     * @return the number of replayed positions
+     * @see #replay(String, long, long, TrackVisitor)
+     */
+    public long replay(String trackId, TrackVisitor visitor) {
+        return replay(trackId, Long.MIN_VALUE, Long.MAX_VALUE, visitor);
+    }
+
+    /**
+     * Replays the positions of a track recorded within a time range. Segments
+     * entirely outside of the range are skipped without being decoded.
+     * Positions appended while replaying may or may not be included.
+     *
+     * @param from
+     *            start of the range in epoch milliseconds, inclusive
+     * @param to
+     *            end of the range in epoch milliseconds, inclusive
+     * @return the number of replayed positions
+     * @throws UncheckedIOException
+     *             if reading the track fails
+     */
+    public long replay(String trackId, long from, long to,
+            TrackVisitor visitor) {
+        Path trackDirectory = trackDirectory(trackId);
+        if (!Files.isDirectory(trackDirectory)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.list(trackDirectory)) {
+            List<Path> segments = files
+                    .filter(file -> file.getFileName().toString()
+                            .endsWith(TrackSegment.FILE_SUFFIX))
+                    .sorted().toList();
+            long count = 0;
+            for (Path segment : segments) {
+                try {
+                    count += replaySegment(segment, from, to, visitor);
+                } catch (NoSuchFileException e) {
+                    // Deleted as expired meanwhile
+                }
+            }
+            return count;
+        } catch (IOException e) {
+            throw new UncheckedIOException(
+                    "Unable to read track " + trackId, e);
+        }
+    }
+
+    private static long replaySegment(Path segment, long from, long to,
+            TrackVisitor visitor) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segment,
+                StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        }
+        if (!TrackSegment.hasValidHeader(buffer)) {
+            return 0;
+        }
+        int dataEnd = buffer.getInt(TrackSegment.DATA_END_OFFSET);
+        if (dataEnd <= TrackSegment.HEADER_SIZE
+                || buffer.getLong(TrackSegment.LAST_TIMESTAMP_OFFSET) < from
+                || buffer.getLong(TrackSegment.FIRST_TIMESTAMP_OFFSET) > to) {
+            return 0;
+        }
+
+        ByteBuffer records = buffer.limit(Math.min(dataEnd, buffer.capacity()))
+                .position(TrackSegment.HEADER_SIZE);
+        long timestamp = 0;
+        long latitude = 0;
+        long longitude = 0;
+        long count = 0;
+        while (records.hasRemaining()) {
+            timestamp += TrackSegment.getSignedVarLong(records);
+            latitude += TrackSegment.getSignedVarLong(records);
+            longitude += TrackSegment.getSignedVarLong(records);
+            int accuracy = (int) TrackSegment.getVarLong(records);
+            if (timestamp >= from && timestamp <= to) {
+                visitor.accept(timestamp, TrackSegment.fromFixed(latitude),
+                        TrackSegment.fromFixed(longitude),
+                        TrackSegment.fromAccuracy(accuracy));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Path trackDirectory(String trackId) {
+        if (!TRACK_ID.matcher(trackId).matches()) {
+            throw new IllegalArgumentException("Invalid track id " + trackId);
+        }
+        return directory.resolve(trackId);
+    }
+}
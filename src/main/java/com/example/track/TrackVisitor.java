@@ -0,0 +1,24 @@
+package com.example.track;
+
+/**
+ * Receives the positions of a recorded track, in the order they were
+ * recorded.
+ */
+@FunctionalInterface
+public interface TrackVisitor {
+
+    /**
+     * Called for each recorded position.
+     *
+     * @param timestamp
+     *            time of the position in epoch milliseconds
+     * @param latitude
+     *            latitude in degrees
+     * @param longitude
+     *            longitude in degrees
+     * @param accuracy
+     *            accuracy radius in meters
+     */
+    void accept(long timestamp, double latitude, double longitude,
+            double accuracy);
+}
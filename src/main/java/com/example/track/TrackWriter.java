@@ -0,0 +1,190 @@
+package com.example.track;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Appends the positions of one track to memory-mapped segment files. A new
+ * segment is started when the current one is full. Appending does not
+ * allocate; the mapped pages are written to disk by {@link #sync()}, which
+ * {@link TrackStore} calls periodically, and when a segment is completed or
+ * the writer is closed.
+ * <p>
+ * Obtain instances from {@link TrackStore#open(String)}. Methods are
+ * synchronized so that the store can sync from its own thread, but a track is
+ * expected to have a single writer.
+ */
+public class TrackWriter implements AutoCloseable {
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Consumer<TrackWriter> onClose;
+    private MappedByteBuffer buffer;
+    private int segmentNumber;
+    private int recordCount;
+    private long previousTimestamp;
+    private long previousLatitude;
+    private long previousLongitude;
+    private boolean dirty;
+
+    TrackWriter(Path directory, int segmentSize,
+            Consumer<TrackWriter> onClose) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.onClose = onClose;
+        Files.createDirectories(directory);
+        openSegment(lastSegmentNumber(directory) + 1);
+    }
+
+    /**
+     * Appends a position to the track.
+     *
+     * @param timestamp
+     *            time of the position in epoch milliseconds
+     * @param accuracy
+     *            accuracy radius in meters
+     * @throws IllegalStateException
+     *             if the writer is closed
+     * @throws UncheckedIOException
+     *             if starting a new segment fails
+     */
+    public synchronized void append(long timestamp, double latitude,
+            double longitude, double accuracy) {
+        if (buffer == null) {
+            throw new IllegalStateException("Track writer is closed");
+        }
+        if (buffer.remaining() < TrackSegment.MAX_RECORD_SIZE) {
+            rollOver();
+        }
+        long fixedLatitude = TrackSegment.toFixed(latitude);
+        long fixedLongitude = TrackSegment.toFixed(longitude);
+        TrackSegment.putSignedVarLong(buffer, timestamp - previousTimestamp);
+        TrackSegment.putSignedVarLong(buffer,
+                fixedLatitude - previousLatitude);
+        TrackSegment.putSignedVarLong(buffer,
+                fixedLongitude - previousLongitude);
+        TrackSegment.putVarLong(buffer, TrackSegment.toAccuracy(accuracy));
+        previousTimestamp = timestamp;
+        previousLatitude = fixedLatitude;
+        previousLongitude = fixedLongitude;
+
+        if (recordCount == 0) {
+            buffer.putLong(TrackSegment.FIRST_TIMESTAMP_OFFSET, timestamp);
+        }
+        buffer.putLong(TrackSegment.LAST_TIMESTAMP_OFFSET, timestamp);
+        // Publish the record only after it has been written completely
+        buffer.putInt(TrackSegment.DATA_END_OFFSET, buffer.position());
+        buffer.putInt(TrackSegment.RECORD_COUNT_OFFSET, ++recordCount);
+        dirty = true;
+    }
+
+    /**
+     * Writes appended positions to disk.
+     */
+    public synchronized void sync() {
+        if (dirty && buffer != null) {
+            buffer.force();
+            dirty = false;
+        }
+    }
+
+    /**
+     * Syncs and closes the writer. The unused end of the last segment is cut
+     * off where the platform allows it. Closing an already closed writer has
+     * no effect.
+     */
+    @Override
+    public synchronized void close() {
+        if (buffer != null) {
+            sync();
+            int dataEnd = buffer.position();
+            buffer = null;
+            truncateSegment(dataEnd);
+            onClose.accept(this);
+        }
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Starts the next segment. If that fails, the full segment stays current
+     * and the next append tries again.
+     */
+    private void rollOver() {
+        sync();
+        try {
+            openSegment(segmentNumber + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(
+                    "Unable to start a new segment in " + directory, e);
+        }
+    }
+
+    private void openSegment(int number) throws IOException {
+        Path file = directory.resolve(segmentFileName(number));
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    segmentSize);
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (IOException e) {
+            // Created but not mapped, remove it so that a retry can create it
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException deleteFailure) {
+                e.addSuppressed(deleteFailure);
+            }
+            throw e;
+        }
+        buffer = mapped;
+        segmentNumber = number;
+        TrackSegment.writeHeader(buffer);
+        buffer.position(TrackSegment.HEADER_SIZE);
+        recordCount = 0;
+        previousTimestamp = 0;
+        previousLatitude = 0;
+        previousLongitude = 0;
+        dirty = true;
+    }
+
+    private void truncateSegment(int dataEnd) {
+        Path file = directory.resolve(segmentFileName(segmentNumber));
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.WRITE)) {
+            channel.truncate(dataEnd);
+        } catch (IOException e) {
+            // Not possible on all platforms while the file is still mapped,
+            // the segment then keeps its full size
+        }
+    }
+
+    static String segmentFileName(int segmentNumber) {
+        return String.format("%08d%s", segmentNumber,
+                TrackSegment.FILE_SUFFIX);
+    }
+
+    private static int lastSegmentNumber(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(TrackSegment.FILE_SUFFIX))
+                    .mapToInt(name -> Integer.parseInt(name.substring(0,
+                            name.length()
+                                    - TrackSegment.FILE_SUFFIX.length())))
+                    .max().orElse(0);
+        }
+    }
+}
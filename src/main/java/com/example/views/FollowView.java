@@ -0,0 +1,132 @@
+package com.example.views;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+
+import com.example.geo.GeoFormat;
+import com.example.geo.GeoMath;
+import com.example.geo.Place;
+import com.example.geo.PositionBroadcastHub;
+import com.example.geo.PositionBroadcastHub.SharedPosition;
+import com.example.tiles.PmTilesArchive;
+import com.example.track.Fix;
+import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.DetachEvent;
+import com.vaadin.flow.component.formlayout.FormLayout;
+import com.vaadin.flow.component.html.H2;
+import com.vaadin.flow.component.html.Paragraph;
+import com.vaadin.flow.component.html.Span;
+import com.vaadin.flow.component.map.Map;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.dom.ThemeList;
+import com.vaadin.flow.router.BeforeEvent;
+import com.vaadin.flow.router.HasUrlParameter;
+import com.vaadin.flow.router.PageTitle;
+import com.vaadin.flow.router.Route;
+import com.vaadin.flow.shared.Registration;
+
+/**
+ * Follows the live position of another user tracking on the Track Position
+ * view. Positions come from the {@link PositionBroadcastHub}; when they
+ * arrive faster than the update window, only the latest one is rendered, so
+ * a slow connection does not fall behind.
+ */
+@Route(value = "follow", layout = MainLayout.class)
+@PageTitle("Follow")
+public class FollowView extends VerticalLayout
+        implements HasUrlParameter<String> {
+
+    private final PositionBroadcastHub broadcasts;
+    private final GeoFormat format = new GeoFormat();
+    private final Map map = new Map();
+    private final MovingMarker marker = new MovingMarker(map, "");
+    private final Span statusBadge = new Span("Waiting for position...");
+    private final Span accuracyField = new Span("--");
+    private final Span speedField = new Span("--");
+    private final Span timeField = new Span("--");
+    private final Span placeField = new Span("--");
+    private final UpdateCoalescer<SharedPosition> updates;
+    private String sessionId;
+    private Registration followRegistration;
+
+    public FollowView(PositionBroadcastHub broadcasts,
+            Optional<PmTilesArchive> tiles,
+            @Value("${geo.follow.update-window:1s}") Duration updateWindow) {
+        this.broadcasts = broadcasts;
+
+        H2 header = new H2("Follow");
+        Paragraph description = new Paragraph(
+                "Shows the live position of a user tracking on the Track "
+                        + "Position view. Open the follow link shown "
+                        + "there to get here.");
+
+        statusBadge.getElement().getThemeList().add("badge");
+
+        FormLayout details = new FormLayout();
+        details.setResponsiveSteps(new FormLayout.ResponsiveStep("0", 2),
+                new FormLayout.ResponsiveStep("500px", 4));
+        details.addFormItem(accuracyField, "Accuracy");
+        details.addFormItem(speedField, "Speed");
+        details.addFormItem(timeField, "Updated");
+        details.addFormItem(placeField, "Nearest place");
+
+        map.setHeight("400px");
+        map.setWidthFull();
+        map.setZoom(2);
+        LocalTiles.apply(map, tiles);
+
+        add(header, description, statusBadge, map, details);
+        setPadding(true);
+
+        updates = new UpdateCoalescer<>(this, updateWindow, this::render);
+    }
+
+    @Override
+    public void setParameter(BeforeEvent event, String parameter) {
+        sessionId = parameter;
+    }
+
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        super.onAttach(attachEvent);
+        followRegistration = broadcasts.follow(sessionId, updates::offer);
+    }
+
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        followRegistration.remove();
+        followRegistration = null;
+        super.onDetach(detachEvent);
+    }
+
+    private void render(SharedPosition position) {
+        Fix fix = position.fix();
+        boolean first = !marker.isPlaced();
+        marker.setText(position.label());
+        marker.moveTo(fix.latitude(), fix.longitude(), fix.accuracy());
+        map.setCenter(marker.getCoordinates());
+        if (first) {
+            map.setZoom(15);
+        }
+
+        accuracyField.setText(format.meters(fix.accuracy()));
+        speedField.setText(
+                fix.speed() != null ? format.speed(fix.speed()) : "N/A");
+        timeField.setText(format.clockTime(fix.timestamp()));
+        Place place = position.place();
+        placeField.setText(place == null ? "--"
+                : format.place(place, GeoMath.distanceMeters(fix.latitude(),
+                        fix.longitude(), place.latitude(),
+                        place.longitude())));
+
+        statusBadge.setText(position.ended()
+                ? position.label() + " stopped tracking"
+                : "Following " + position.label());
+        // The badge theme is set once, only the state changes
+        ThemeList theme = statusBadge.getElement().getThemeList();
+        theme.set("contrast", position.ended());
+        theme.set("success", !position.ended());
+    }
+}
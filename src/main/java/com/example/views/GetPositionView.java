@@ -1,31 +1,33 @@
 package com.example.views;
 
-import java.time.Instant;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
-
+import java.util.Optional;
+
+import com.example.geo.GeoFormat;
+import com.example.geo.GeoMath;
+import com.example.geo.ReverseGeocoder;
+import com.example.metrics.GeolocationMetrics;
+import com.example.tiles.PmTilesArchive;
+import com.example.track.Fix;
+import com.example.track.PositionCache;
 import com.vaadin.flow.component.Component;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
 import com.vaadin.flow.component.checkbox.Checkbox;
 import com.vaadin.flow.component.formlayout.FormLayout;
 import com.vaadin.flow.component.geolocation.Geolocation;
-import com.vaadin.flow.component.geolocation.GeolocationCoordinates;
 import com.vaadin.flow.component.geolocation.GeolocationError;
 import com.vaadin.flow.component.geolocation.GeolocationOptions;
-import com.vaadin.flow.component.geolocation.GeolocationPosition;
 import com.vaadin.flow.component.html.Div;
 import com.vaadin.flow.component.html.H2;
 import com.vaadin.flow.component.html.Paragraph;
 import com.vaadin.flow.component.html.Span;
 import com.vaadin.flow.component.icon.VaadinIcon;
 import com.vaadin.flow.component.map.Map;
-import com.vaadin.flow.component.map.configuration.Coordinate;
-import com.vaadin.flow.component.map.configuration.feature.MarkerFeature;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.textfield.IntegerField;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
+import com.vaadin.flow.server.VaadinSession;
 
 /**
  * Demonstrates one-shot position requests using
@@ -35,11 +37,17 @@ import com.vaadin.flow.router.Route;
 @PageTitle("Get Position")
 public class GetPositionView extends VerticalLayout {
 
+    private final GeoFormat format = new GeoFormat();
     private final Div resultArea = new Div();
     private final Map map = new Map();
-    private MarkerFeature marker;
-
-    public GetPositionView() {
+    private final MovingMarker marker = new MovingMarker(map, "You are here");
+    private final ReverseGeocoder geocoder;
+    private final PositionCache positionCache;
+
+    public GetPositionView(GeolocationMetrics metrics,
+            ReverseGeocoder geocoder, Optional<PmTilesArchive> tiles) {
+        this.geocoder = geocoder;
+        this.positionCache = PositionCache.of(VaadinSession.getCurrent());
         H2 header = new H2("Get Current Position");
         Paragraph description = new Paragraph(
                 "Click the button to request your current position using "
@@ -59,8 +67,14 @@ public class GetPositionView extends VerticalLayout {
         maxAgeField.setStep(1000);
         maxAgeField.setMin(0);
 
+        Checkbox refreshInBackground = new Checkbox(
+                "Refresh cached positions in the background");
+        refreshInBackground.setTooltipText("When the maximum age allows a "
+                + "position known to the server, show it right away and "
+                + "still ask the browser for a fresh one");
+
         FormLayout optionsForm = new FormLayout(highAccuracy, timeoutField,
-                maxAgeField);
+                maxAgeField, refreshInBackground);
         optionsForm.setResponsiveSteps(
                 new FormLayout.ResponsiveStep("0", 1),
                 new FormLayout.ResponsiveStep("500px", 3));
@@ -74,6 +88,7 @@ public class GetPositionView extends VerticalLayout {
         map.setHeight("400px");
         map.setWidthFull();
         map.setZoom(2);
+        LocalTiles.apply(map, tiles);
 
         // Result area
         resultArea.setText("Click the button to request your position.");
@@ -84,21 +99,44 @@ public class GetPositionView extends VerticalLayout {
             resultArea.add(new Span("Requesting position..."));
             getButton.setEnabled(false);
 
+            boolean high = highAccuracy.getValue();
             GeolocationOptions opts = new GeolocationOptions(
-                    highAccuracy.getValue() ? true : null,
+                    high ? true : null,
                     timeoutField.getValue(),
                     maxAgeField.getValue());
 
+            // Answer from the server when the maximum age allows it
+            Integer maxAge = maxAgeField.getValue();
+            Optional<PositionCache.Entry> cached = maxAge != null
+                    ? positionCache.find(maxAge, high)
+                    : Optional.empty();
+            if (cached.isPresent()) {
+                metrics.getCached();
+                showPosition(cached.get().fix(), cached.get().age());
+                if (!refreshInBackground.getValue()) {
+                    getButton.setEnabled(true);
+                    return;
+                }
+                // Enabled again when the refresh completes
+            }
+
+            long start = System.nanoTime();
             // #geolocation
             Geolocation.get(opts, pos -> {
-                resultArea.removeAll();
-                resultArea.add(createPositionDetails(pos));
-                updateMap(pos);
+                metrics.getSuccess(start);
+                Fix fix = Fix.of(pos);
+                positionCache.put(fix, high);
+                showPosition(fix, -1);
                 getButton.setEnabled(true);
             }, error -> {
+                metrics.getError(start, error.code());
+                getButton.setEnabled(true);
+                if (cached.isPresent()) {
+                    // Keep showing the cached position
+                    return;
+                }
                 resultArea.removeAll();
                 resultArea.add(createErrorDisplay(error));
-                getButton.setEnabled(true);
             });
         });
 
@@ -106,62 +144,78 @@ public class GetPositionView extends VerticalLayout {
         setPadding(true);
     }
 
-    private void updateMap(GeolocationPosition pos) {
-        GeolocationCoordinates c = pos.coords();
-        Coordinate coord = new Coordinate(c.longitude(), c.latitude());
-
-        if (marker != null) {
-            map.getFeatureLayer().removeFeature(marker);
+    /**
+     * Shows a position.
+     *
+     * @param age
+     *            age of a cached position in milliseconds, or -1 for a
+     *            position just received from the browser
+     */
+    private void showPosition(Fix fix, long age) {
+        resultArea.removeAll();
+        if (age >= 0) {
+            Span cachedBadge = new Span("Cached, received "
+                    + format.elapsed(age) + " ago");
+            cachedBadge.getElement().getThemeList().add("badge");
+            cachedBadge.getElement().getThemeList().add("contrast");
+            resultArea.add(cachedBadge);
         }
-        marker = new MarkerFeature(coord);
-        marker.setText("You are here");
-        map.getFeatureLayer().addFeature(marker);
-        map.setCenter(coord);
+        resultArea.add(createPositionDetails(fix));
+        updateMap(fix);
+    }
+
+    private void updateMap(Fix fix) {
+        marker.moveTo(fix.latitude(), fix.longitude(), fix.accuracy());
+        map.setCenter(marker.getCoordinates());
         map.setZoom(15);
     }
 
-    private Component createPositionDetails(GeolocationPosition pos) {
-        GeolocationCoordinates c = pos.coords();
+    private Component createPositionDetails(Fix c) {
         FormLayout form = new FormLayout();
         form.setResponsiveSteps(
                 new FormLayout.ResponsiveStep("0", 1),
                 new FormLayout.ResponsiveStep("500px", 2));
 
         form.addFormItem(
-                new Span(String.format("%.6f\u00B0", c.latitude())),
+                new Span(format.degrees(c.latitude())),
                 "Latitude");
         form.addFormItem(
-                new Span(String.format("%.6f\u00B0", c.longitude())),
+                new Span(format.degrees(c.longitude())),
                 "Longitude");
         form.addFormItem(
-                new Span(String.format("%.1f m", c.accuracy())),
+                new Span(format.meters(c.accuracy())),
                 "Accuracy");
+        geocoder.nearest(c.latitude(), c.longitude())
+                .ifPresent(place -> form.addFormItem(
+                        new Span(format.place(place,
+                                GeoMath.distanceMeters(c.latitude(),
+                                        c.longitude(), place.latitude(),
+                                        place.longitude()))),
+                        "Nearest place"));
 
         if (c.altitude() != null) {
             form.addFormItem(
-                    new Span(String.format("%.1f m", c.altitude())),
+                    new Span(format.meters(c.altitude())),
                     "Altitude");
         }
         if (c.altitudeAccuracy() != null) {
             form.addFormItem(
-                    new Span(String.format("%.1f m", c.altitudeAccuracy())),
+                    new Span(format.meters(c.altitudeAccuracy())),
                     "Altitude Accuracy");
         }
         if (c.heading() != null) {
             form.addFormItem(
-                    new Span(String.format("%.1f\u00B0", c.heading())),
+                    new Span(format.heading(c.heading())),
                     "Heading");
         }
         if (c.speed() != null) {
             form.addFormItem(
-                    new Span(String.format("%.2f m/s", c.speed())),
+                    new Span(format.speed(c.speed())),
                     "Speed");
         }
 
-        String time = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
-                .withZone(ZoneId.systemDefault())
-                .format(Instant.ofEpochMilli(pos.timestamp()));
-        form.addFormItem(new Span(time), "Timestamp");
+        form.addFormItem(new Span(format.dateTime(c.timestamp())),
+                "Timestamp");
 
         return form;
     }
@@ -0,0 +1,229 @@
+package com.example.views;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import com.example.geo.DensityGrid;
+import com.example.tiles.PmTilesArchive;
+import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.DetachEvent;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.html.H2;
+import com.vaadin.flow.component.html.Paragraph;
+import com.vaadin.flow.component.html.Span;
+import com.vaadin.flow.component.icon.VaadinIcon;
+import com.vaadin.flow.component.map.Map;
+import com.vaadin.flow.component.map.configuration.Coordinate;
+import com.vaadin.flow.component.map.configuration.Extent;
+import com.vaadin.flow.component.map.configuration.feature.PolygonFeature;
+import com.vaadin.flow.component.map.configuration.layer.VectorLayer;
+import com.vaadin.flow.component.map.configuration.style.Fill;
+import com.vaadin.flow.component.map.configuration.style.Stroke;
+import com.vaadin.flow.component.map.configuration.style.Style;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.router.PageTitle;
+import com.vaadin.flow.router.Route;
+import com.vaadin.flow.shared.Registration;
+
+/**
+ * Shows where tracked positions cluster as a heatmap. Counts come from the
+ * shared {@link DensityGrid}, on the level matching the current zoom, and only
+ * the cells in the visible area are sent to the browser. Cells already shown
+ * are only updated when their color changes.
+ */
+@Route(value = "heatmap", layout = MainLayout.class)
+@PageTitle("Heatmap")
+public class HeatmapView extends VerticalLayout {
+
+    private static final int REFRESH_INTERVAL_MS = 5000;
+
+    /**
+     * Difference between the map zoom and the grid level shown, so that a
+     * cell is about 16 pixels wide.
+     */
+    static final int LEVEL_OFFSET = 4;
+
+    /**
+     * Maximum number of cells drawn. When more cells are visible, only the
+     * densest are drawn.
+     */
+    static final int MAX_CELLS = 2000;
+
+    /**
+     * Colors from the sparsest to the densest cells.
+     */
+    private static final String[] COLORS = { "rgba(255, 255, 178, 0.45)",
+            "rgba(254, 217, 118, 0.5)", "rgba(254, 178, 76, 0.55)",
+            "rgba(253, 141, 60, 0.6)", "rgba(252, 78, 42, 0.65)",
+            "rgba(227, 26, 28, 0.7)", "rgba(177, 0, 38, 0.75)" };
+
+    /**
+     * A cell drawn on the map.
+     */
+    private static final class ShownCell {
+
+        private final PolygonFeature feature;
+        private int color = -1;
+
+        ShownCell(PolygonFeature feature) {
+            this.feature = feature;
+        }
+    }
+
+    private record CellKey(int x, int y) {
+    }
+
+    private final DensityGrid density;
+    private final Map map = new Map();
+    private final VectorLayer cellLayer = new VectorLayer();
+    private final java.util.Map<CellKey, ShownCell> shown = new HashMap<>();
+    private final Span summary = new Span();
+    private int shownLevel = -1;
+    private double zoom = 2;
+    private Extent extent;
+    private Registration pollRegistration;
+
+    public HeatmapView(DensityGrid density, Optional<PmTilesArchive> tiles) {
+        this.density = density;
+
+        H2 header = new H2("Heatmap");
+        Paragraph description = new Paragraph(
+                "Shows where the positions recorded on the Track Position "
+                        + "view cluster. Counts are updated as positions "
+                        + "arrive; zoom in for finer cells.");
+
+        summary.getElement().getThemeList().add("badge");
+        Button rebuild = new Button("Rebuild from history",
+                VaadinIcon.REFRESH.create());
+        rebuild.setTooltipText("Recount all recorded tracks");
+        rebuild.addClickListener(e -> {
+            rebuild.setEnabled(false);
+            UI ui = UI.getCurrent();
+            Thread.ofVirtual().name("density-rebuild").start(() -> {
+                try {
+                    density.rebuild();
+                } finally {
+                    try {
+                        ui.access(() -> {
+                            rebuild.setEnabled(true);
+                            refresh();
+                        });
+                    } catch (UIDetachedException ex) {
+                        // Closed while counting, nothing left to update
+                    }
+                }
+            });
+        });
+        HorizontalLayout toolbar = new HorizontalLayout(summary, rebuild);
+        toolbar.setAlignItems(Alignment.CENTER);
+
+        map.setHeight("500px");
+        map.setWidthFull();
+        map.setZoom(zoom);
+        LocalTiles.apply(map, tiles);
+        map.addLayer(cellLayer);
+        map.addViewMoveEndEventListener(e -> {
+            zoom = e.getZoom();
+            extent = e.getExtent();
+            refresh();
+        });
+
+        add(header, description, toolbar, map);
+        setPadding(true);
+        refresh();
+    }
+
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        super.onAttach(attachEvent);
+        attachEvent.getUI().setPollInterval(REFRESH_INTERVAL_MS);
+        pollRegistration = attachEvent.getUI()
+                .addPollListener(e -> refresh());
+    }
+
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        pollRegistration.remove();
+        detachEvent.getUI().setPollInterval(-1);
+        super.onDetach(detachEvent);
+    }
+
+    private void refresh() {
+        int level = Math.clamp(Math.round(zoom) + LEVEL_OFFSET, 0,
+                density.getMaxLevel());
+        if (level != shownLevel) {
+            shown.clear();
+            cellLayer.removeAllFeatures();
+            shownLevel = level;
+        }
+
+        List<DensityGrid.Cell> cells = extent == null
+                ? density.cells(level, -90, -180, 90, 180)
+                : density.cells(level, extent.getMinY(), extent.getMinX(),
+                        extent.getMaxY(), extent.getMaxX());
+        int visible = cells.size();
+        if (visible > MAX_CELLS) {
+            cells = cells.stream()
+                    .sorted(Comparator.comparingLong(DensityGrid.Cell::count)
+                            .reversed())
+                    .limit(MAX_CELLS).toList();
+        }
+        long max = cells.stream().mapToLong(DensityGrid.Cell::count).max()
+                .orElse(0);
+
+        Set<CellKey> seen = new HashSet<>();
+        for (DensityGrid.Cell cell : cells) {
+            CellKey key = new CellKey(cell.x(), cell.y());
+            seen.add(key);
+            ShownCell shownCell = shown.computeIfAbsent(key, k -> {
+                PolygonFeature feature = new PolygonFeature(List.of(
+                        new Coordinate(cell.west(), cell.north()),
+                        new Coordinate(cell.east(), cell.north()),
+                        new Coordinate(cell.east(), cell.south()),
+                        new Coordinate(cell.west(), cell.south()),
+                        new Coordinate(cell.west(), cell.north())));
+                cellLayer.addFeature(feature);
+                return new ShownCell(feature);
+            });
+            int color = color(cell.count(), max);
+            if (color != shownCell.color) {
+                shownCell.color = color;
+                Style style = new Style();
+                style.setFill(new Fill(COLORS[color]));
+                style.setStroke(new Stroke(COLORS[color], 0));
+                shownCell.feature.setStyle(style);
+            }
+        }
+        shown.entrySet().removeIf(entry -> {
+            if (seen.contains(entry.getKey())) {
+                return false;
+            }
+            cellLayer.removeFeature(entry.getValue().feature);
+            return true;
+        });
+
+        summary.setText(density.total() + " positions, " + visible
+                + " cells in view" + (visible > cells.size()
+                        ? " (densest " + cells.size() + " shown)"
+                        : ""));
+    }
+
+    /**
+     * Returns the color of a cell on a logarithmic scale, as the densest
+     * cells would otherwise make all others look empty.
+     */
+    private static int color(long count, long max) {
+        if (max <= 1) {
+            return 0;
+        }
+        double scale = Math.log(count) / Math.log(max);
+        return Math.min(COLORS.length - 1, (int) (scale * COLORS.length));
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.views;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Processes the items of one session in order on a virtual thread, outside
+ * of the session lock.
+ * <p>
+ * Items may be offered from any thread and never block the caller. The queue
+ * is bounded: when processing falls behind, the oldest items are dropped, as
+ * newer positions supersede them. A virtual thread is started when items
+ * arrive and ends when the queue is empty, so an idle session holds no
+ * thread.
+ *
+ * @param <T>
+ *            the item type
+ */
+class IngestPipeline<T> {
+
+    private static final Logger log = LoggerFactory
+            .getLogger(IngestPipeline.class);
+
+    private final String name;
+    private final int capacity;
+    private final Consumer<T> processor;
+    private final Runnable onDrop;
+    private final ArrayDeque<T> queue;
+    // Not synchronized, which would pin the virtual thread on JDK 21
+    private final ReentrantLock lock = new ReentrantLock();
+    private boolean running;
+    private boolean closed;
+    private Runnable onClose;
+
+    /**
+     * Creates a pipeline.
+     *
+     * @param name
+     *            name of the processing thread
+     * @param capacity
+     *            maximum number of queued items
+     * @param processor
+     *            processes an item, called from one thread at a time
+     * @param onDrop
+     *            called when an item is dropped because the queue is full
+     */
+    IngestPipeline(String name, int capacity, Consumer<T> processor,
+            Runnable onDrop) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException(
+                    "Capacity must be positive: " + capacity);
+        }
+        this.name = name;
+        this.capacity = capacity;
+        this.processor = processor;
+        this.onDrop = onDrop;
+        this.queue = new ArrayDeque<>(Math.min(capacity, 16));
+    }
+
+    /**
+     * Queues an item for processing, dropping the oldest queued item if the
+     * queue is full.
+     *
+     * @return {@code false} if the pipeline has been closed
+     */
+    boolean offer(T item) {
+        boolean dropped = false;
+        boolean start = false;
+        lock.lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            if (queue.size() == capacity) {
+                queue.pollFirst();
+                dropped = true;
+            }
+            queue.addLast(item);
+            if (!running) {
+                running = true;
+                start = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (dropped) {
+            onDrop.run();
+        }
+        if (start) {
+            Thread.ofVirtual().name(name).start(this::drain);
+        }
+        return true;
+    }
+
+    /**
+     * Stops accepting items. Items already queued are still processed, after
+     * which the given action runs on the processing thread.
+     */
+    void close(Runnable finisher) {
+        boolean start = false;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            onClose = finisher;
+            if (!running) {
+                running = true;
+                start = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (start) {
+            Thread.ofVirtual().name(name).start(this::drain);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            T item;
+            Runnable finisher = null;
+            lock.lock();
+            try {
+                item = queue.pollFirst();
+                if (item == null) {
+                    running = false;
+                    finisher = onClose;
+                    onClose = null;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (item == null) {
+                if (finisher != null) {
+                    finisher.run();
+                }
+                return;
+            }
+            try {
+                processor.accept(item);
+            } catch (RuntimeException e) {
+                log.error("Processing failed in {}", name, e);
+            }
+        }
+    }
+}
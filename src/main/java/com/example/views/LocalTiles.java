@@ -0,0 +1,50 @@
+package com.example.views;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.example.tiles.PmTilesArchive;
+import com.vaadin.flow.component.map.Map;
+import com.vaadin.flow.component.map.configuration.layer.TileLayer;
+import com.vaadin.flow.component.map.configuration.source.XYZSource;
+
+/**
+ * Points the background layer of a {@link Map} to the local tile server, if
+ * a tile archive is configured.
+ */
+final class LocalTiles {
+
+    private static final Logger log = LoggerFactory
+            .getLogger(LocalTiles.class);
+
+    private LocalTiles() {
+    }
+
+    /**
+     * Uses the local tiles as the background of a map. Leaves the default
+     * background in place if there is no archive, or if it has vector tiles,
+     * which the map cannot draw.
+     */
+    static void apply(Map map, Optional<PmTilesArchive> tiles) {
+        PmTilesArchive archive = tiles.orElse(null);
+        if (archive == null) {
+            return;
+        }
+        if (!archive.getTileType().isRaster()) {
+            log.debug("Not using {} tiles from {} as map background",
+                    archive.getTileType(), archive.getFile());
+            return;
+        }
+        XYZSource.Options options = new XYZSource.Options();
+        // Relative to the base URL of the application
+        options.setUrl("tiles/{z}/{x}/{y}");
+        archive.getAttribution().ifPresent(
+                attribution -> options.setAttributions(List.of(attribution)));
+        TileLayer layer = new TileLayer();
+        layer.setSource(new XYZSource(options));
+        map.setBackgroundLayer(layer);
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.views;
 
+import com.example.source.SourceFile;
+import com.example.source.SourceIndex;
 import com.vaadin.flow.component.HasElement;
 import com.vaadin.flow.component.applayout.AppLayout;
 import com.vaadin.flow.component.applayout.DrawerToggle;
@@ -7,20 +9,22 @@ import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
 import com.vaadin.flow.component.dialog.Dialog;
 import com.vaadin.flow.component.html.H2;
-import com.vaadin.flow.component.html.Pre;
 import com.vaadin.flow.component.icon.VaadinIcon;
 import com.vaadin.flow.component.sidenav.SideNav;
 import com.vaadin.flow.component.sidenav.SideNavItem;
+import com.vaadin.flow.component.virtuallist.VirtualList;
+import com.vaadin.flow.data.provider.DataProvider;
+import com.vaadin.flow.data.renderer.LitRenderer;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.util.stream.IntStream;
 
 public class MainLayout extends AppLayout {
 
-    public MainLayout() {
+    private final SourceIndex sources;
+
+    public MainLayout(SourceIndex sources) {
+        this.sources = sources;
+
         DrawerToggle toggle = new DrawerToggle();
         H2 title = new H2("Geolocation Demo");
         title.getStyle().set("margin", "0").set("font-size", "1.2em");
@@ -31,6 +35,10 @@ public class MainLayout extends AppLayout {
                 GetPositionView.class, VaadinIcon.MAP_MARKER.create()));
         nav.addItem(new SideNavItem("Track Position",
                 TrackPositionView.class, VaadinIcon.CROSSHAIRS.create()));
+        nav.addItem(new SideNavItem("Nearby Users",
+                NearbyView.class, VaadinIcon.USERS.create()));
+        nav.addItem(new SideNavItem("Heatmap",
+                HeatmapView.class, VaadinIcon.FIRE.create()));
         addToDrawer(nav);
     }
 
@@ -38,15 +46,13 @@ public class MainLayout extends AppLayout {
     public void showRouterLayoutContent(HasElement content) {
         super.showRouterLayoutContent(content);
 
-        String source = readSource(content);
+        SourceFile source = sources.find(content.getClass()).orElse(null);
         if (source == null) {
             return;
         }
 
-        String fileName = content.getClass().getSimpleName() + ".java";
-
         Button sourceButton = new Button("View Source",
-                e -> showSourceDialog(fileName, source));
+                e -> showSourceDialog(source));
         sourceButton.addThemeVariants(ButtonVariant.LUMO_TERTIARY_INLINE,
                 ButtonVariant.LUMO_SMALL);
         sourceButton.getStyle()
@@ -59,25 +65,37 @@ public class MainLayout extends AppLayout {
         content.getElement().appendChild(sourceButton.getElement());
     }
 
-    private void showSourceDialog(String fileName, String source) {
+    private void showSourceDialog(SourceFile source) {
         Dialog dialog = new Dialog();
-        dialog.setHeaderTitle(fileName);
+        dialog.setHeaderTitle(source.fileName());
         dialog.setWidth("min(90vw, 800px)");
         dialog.setHeight("80vh");
 
-        Pre pre = new Pre(source);
-        pre.getStyle()
+        // Lines are rendered lazily, only the visible ones reach the browser,
+        // as the already highlighted HTML without a component per line
+        VirtualList<Integer> lines = new VirtualList<>();
+        lines.setRenderer(LitRenderer.<Integer> of(
+                "<div class=\"source-line\" .innerHTML=${item.html}></div>")
+                .withProperty("html", source::highlightedLine));
+        lines.setDataProvider(DataProvider.fromCallbacks(
+                query -> IntStream
+                        .range(query.getOffset(),
+                                Math.min(source.lineCount(),
+                                        query.getOffset() + query.getLimit()))
+                        .boxed(),
+                query -> source.lineCount()));
+        lines.addClassName("source-view");
+        lines.getStyle()
                 .set("font-family", "monospace")
                 .set("font-size", "var(--aura-font-size-s)")
                 .set("background", "#f5f5f5")
                 .set("padding", "16px")
                 .set("border-radius", "var(--aura-base-radius, 4px)")
-                .set("overflow", "auto")
                 .set("margin", "0")
                 .set("height", "100%")
                 .set("box-sizing", "border-box");
 
-        dialog.add(pre);
+        dialog.add(lines);
         dialog.setCloseOnEsc(true);
         Button closeButton = new Button(VaadinIcon.CLOSE_SMALL.create(),
                 e -> dialog.close());
@@ -86,45 +104,8 @@ public class MainLayout extends AppLayout {
         dialog.open();
 
         // Scroll to #geolocation marker
-        int markerLine = findMarkerLine(source);
-        if (markerLine > 0) {
-            pre.getElement().executeJs(
-                    "setTimeout(() => { const lh = parseFloat(getComputedStyle(this).lineHeight) || 16;"
-                            + " this.scrollTop = ($0 - 3) * lh; }, 0)",
-                    markerLine);
+        if (source.markerLine() > 0) {
+            lines.scrollToIndex(Math.max(0, source.markerLine() - 3));
         }
     }
-
-    private int findMarkerLine(String source) {
-        int line = 0;
-        for (String s : source.split("\n")) {
-            if (s.contains("// #geolocation")) {
-                return line;
-            }
-            line++;
-        }
-        return -1;
-    }
-
-    private String readSource(HasElement content) {
-        Class<?> viewClass = content.getClass();
-        String classFile = viewClass.getName().replace('.', '/') + ".java";
-
-        // Try filesystem first (dev mode)
-        try {
-            return Files.readString(Path.of("src/main/java", classFile));
-        } catch (IOException ignored) {
-        }
-
-        // Fall back to classpath (production)
-        try (InputStream is = getClass().getClassLoader()
-                .getResourceAsStream("sources/" + classFile)) {
-            if (is != null) {
-                return new String(is.readAllBytes(), StandardCharsets.UTF_8);
-            }
-        } catch (IOException ignored) {
-        }
-
-        return null;
-    }
 }
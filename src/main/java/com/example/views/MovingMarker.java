@@ -0,0 +1,169 @@
+package com.example.views;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import com.example.geo.GeoMath;
+import com.vaadin.flow.component.map.Map;
+import com.vaadin.flow.component.map.configuration.Coordinate;
+import com.vaadin.flow.component.map.configuration.feature.MarkerFeature;
+import com.vaadin.flow.component.map.configuration.feature.PolygonFeature;
+
+/**
+ * A single persistent marker on the feature layer of a {@link Map}, with an
+ * optional circle showing the accuracy of the position.
+ * <p>
+ * The features are added once and then moved in place. Only properties that
+ * actually changed are set, so the map synchronizes small deltas of existing
+ * features instead of removing and adding a feature for every position.
+ */
+class MovingMarker {
+
+    private static final int CIRCLE_VERTICES = 32;
+    /**
+     * Relative accuracy change below which the accuracy circle is only moved
+     * along with the marker instead of being resized.
+     */
+    private static final double ACCURACY_TOLERANCE = 0.1;
+
+    private final Map map;
+    private final MarkerFeature marker = new MarkerFeature();
+    private PolygonFeature accuracyCircle;
+    private boolean accuracyVisible = true;
+    private boolean placed;
+    private String text;
+    private double latitude = Double.NaN;
+    private double longitude = Double.NaN;
+    private double accuracy = Double.NaN;
+    private double circleAccuracy = Double.NaN;
+
+    MovingMarker(Map map, String text) {
+        this.map = map;
+        setText(text);
+    }
+
+    /**
+     * Moves the marker to a new position, adding it to the map on the first
+     * call.
+     *
+     * @param accuracy
+     *            the radius of the accuracy circle in meters
+     */
+    void moveTo(double latitude, double longitude, double accuracy) {
+        boolean moved = latitude != this.latitude
+                || longitude != this.longitude;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.accuracy = accuracy;
+
+        if (moved) {
+            marker.setCoordinates(new Coordinate(longitude, latitude));
+        }
+        if (!placed) {
+            map.getFeatureLayer().addFeature(marker);
+            placed = true;
+        }
+        if (accuracyVisible) {
+            updateAccuracyCircle(moved);
+        }
+    }
+
+    /**
+     * Sets the label shown next to the marker.
+     */
+    void setText(String text) {
+        if (!Objects.equals(text, this.text)) {
+            this.text = text;
+            marker.setText(text);
+        }
+    }
+
+    /**
+     * Sets whether a circle showing the accuracy of the position is drawn
+     * around the marker. Visible by default.
+     */
+    void setAccuracyVisible(boolean accuracyVisible) {
+        this.accuracyVisible = accuracyVisible;
+        if (!accuracyVisible && accuracyCircle != null) {
+            map.getFeatureLayer().removeFeature(accuracyCircle);
+            accuracyCircle = null;
+            circleAccuracy = Double.NaN;
+        } else if (accuracyVisible && placed) {
+            updateAccuracyCircle(true);
+        }
+    }
+
+    boolean isPlaced() {
+        return placed;
+    }
+
+    Coordinate getCoordinates() {
+        return marker.getCoordinates();
+    }
+
+    /**
+     * Removes the marker and its accuracy circle from the map.
+     */
+    void remove() {
+        if (placed) {
+            map.getFeatureLayer().removeFeature(marker);
+            placed = false;
+        }
+        if (accuracyCircle != null) {
+            map.getFeatureLayer().removeFeature(accuracyCircle);
+            accuracyCircle = null;
+            circleAccuracy = Double.NaN;
+        }
+    }
+
+    private void updateAccuracyCircle(boolean moved) {
+        if (!(accuracy > 0)) {
+            return;
+        }
+        boolean resized = Double.isNaN(circleAccuracy) || Math
+                .abs(accuracy - circleAccuracy) > circleAccuracy
+                        * ACCURACY_TOLERANCE;
+        if (!moved && !resized && accuracyCircle != null) {
+            return;
+        }
+        if (resized) {
+            circleAccuracy = accuracy;
+        }
+        List<Coordinate> ring = circle(latitude, longitude, circleAccuracy);
+        if (accuracyCircle == null) {
+            accuracyCircle = new PolygonFeature(ring);
+            // Added below the marker so it does not hide it
+            map.getFeatureLayer().removeFeature(marker);
+            map.getFeatureLayer().addFeature(accuracyCircle);
+            map.getFeatureLayer().addFeature(marker);
+        } else {
+            accuracyCircle.setCoordinates(ring);
+        }
+    }
+
+    private static List<Coordinate> circle(double latitude, double longitude,
+            double radius) {
+        double angularRadius = radius / GeoMath.EARTH_RADIUS_METERS;
+        double latRad = Math.toRadians(latitude);
+        double lonRad = Math.toRadians(longitude);
+        double sinLat = Math.sin(latRad);
+        double cosLat = Math.cos(latRad);
+        double sinRadius = Math.sin(angularRadius);
+        double cosRadius = Math.cos(angularRadius);
+
+        List<Coordinate> ring = new ArrayList<>(CIRCLE_VERTICES + 1);
+        for (int i = 0; i < CIRCLE_VERTICES; i++) {
+            double bearing = 2 * Math.PI * i / CIRCLE_VERTICES;
+            double lat = Math.asin(sinLat * cosRadius
+                    + cosLat * sinRadius * Math.cos(bearing));
+            double lon = lonRad + Math.atan2(
+                    Math.sin(bearing) * sinRadius * cosLat,
+                    cosRadius - sinLat * Math.sin(lat));
+            ring.add(new Coordinate(Math.toDegrees(lon), Math.toDegrees(lat)));
+        }
+        // Close the ring
+        ring.add(ring.get(0));
+        return ring;
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.views;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.example.geo.LiveSession;
+import com.example.geo.LiveSessionIndex;
+import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.ComponentEffect;
+import com.vaadin.flow.component.DetachEvent;
+import com.vaadin.flow.component.geolocation.Geolocation;
+import com.vaadin.flow.component.geolocation.GeolocationCoordinates;
+import com.vaadin.flow.component.geolocation.GeolocationOptions;
+import com.vaadin.flow.component.geolocation.GeolocationPosition;
+import com.vaadin.flow.component.html.H2;
+import com.vaadin.flow.component.html.Paragraph;
+import com.vaadin.flow.component.html.Span;
+import com.vaadin.flow.component.map.Map;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.select.Select;
+import com.vaadin.flow.router.PageTitle;
+import com.vaadin.flow.router.Route;
+import com.vaadin.flow.shared.Registration;
+
+/**
+ * Shows the users currently tracking their position near you. Positions come
+ * from the shared {@link LiveSessionIndex}, which is queried for the selected
+ * radius on every refresh instead of visiting the UI of every tracked user.
+ */
+@Route(value = "nearby", layout = MainLayout.class)
+@PageTitle("Nearby Users")
+public class NearbyView extends VerticalLayout {
+
+    private static final int REFRESH_INTERVAL_MS = 2000;
+
+    private final LiveSessionIndex liveSessions;
+    private final Map map = new Map();
+    private final MovingMarker ownMarker = new MovingMarker(map, "You");
+    private final java.util.Map<String, MovingMarker> markers = new HashMap<>();
+    private final Select<Integer> radiusSelect = new Select<>();
+    private final Span summary = new Span("Waiting for position...");
+    private GeolocationCoordinates ownPosition;
+    private Registration pollRegistration;
+
+    public NearbyView(LiveSessionIndex liveSessions) {
+        this.liveSessions = liveSessions;
+
+        H2 header = new H2("Nearby Users");
+        Paragraph description = new Paragraph(
+                "Shows the users tracking their position on the Track "
+                        + "Position view within the selected distance "
+                        + "from you. The list refreshes every few seconds.");
+
+        radiusSelect.setLabel("Distance");
+        radiusSelect.setItems(1, 10, 100, 1000);
+        radiusSelect.setItemLabelGenerator(km -> km + " km");
+        radiusSelect.setValue(10);
+        radiusSelect.addValueChangeListener(e -> refresh());
+
+        summary.getElement().getThemeList().add("badge");
+
+        map.setHeight("400px");
+        map.setWidthFull();
+        map.setZoom(2);
+
+        add(header, description, radiusSelect, summary, map);
+        setPadding(true);
+
+        // #geolocation
+        Geolocation geo = Geolocation.track(this,
+                new GeolocationOptions(null, null, 30000));
+        ComponentEffect.effect(this, () -> {
+            if (geo.state().get() instanceof GeolocationPosition pos) {
+                boolean first = ownPosition == null;
+                ownPosition = pos.coords();
+                ownMarker.moveTo(ownPosition.latitude(),
+                        ownPosition.longitude(), ownPosition.accuracy());
+                if (first) {
+                    map.setCenter(ownMarker.getCoordinates());
+                    map.setZoom(11);
+                    refresh();
+                }
+            }
+        });
+    }
+
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        super.onAttach(attachEvent);
+        attachEvent.getUI().setPollInterval(REFRESH_INTERVAL_MS);
+        pollRegistration = attachEvent.getUI()
+                .addPollListener(e -> refresh());
+    }
+
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        pollRegistration.remove();
+        detachEvent.getUI().setPollInterval(-1);
+        super.onDetach(detachEvent);
+    }
+
+    private void refresh() {
+        if (ownPosition == null || radiusSelect.getValue() == null) {
+            return;
+        }
+        int radiusKm = radiusSelect.getValue();
+        List<LiveSession> nearby = liveSessions.findWithin(
+                ownPosition.latitude(), ownPosition.longitude(),
+                radiusKm * 1000.0);
+
+        Set<String> seen = new HashSet<>();
+        for (LiveSession session : nearby) {
+            seen.add(session.id());
+            MovingMarker marker = markers.computeIfAbsent(session.id(),
+                    id -> {
+                        MovingMarker created = new MovingMarker(map,
+                                session.label());
+                        created.setAccuracyVisible(false);
+                        return created;
+                    });
+            marker.moveTo(session.latitude(), session.longitude(),
+                    session.accuracy());
+        }
+        markers.entrySet().removeIf(entry -> {
+            if (seen.contains(entry.getKey())) {
+                return false;
+            }
+            entry.getValue().remove();
+            return true;
+        });
+
+        summary.setText(nearby.size() + " of " + liveSessions.size()
+                + " tracked users within " + radiusKm + " km");
+    }
+}
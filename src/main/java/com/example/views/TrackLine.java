@@ -0,0 +1,64 @@
+package com.example.views;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.track.StreamingSimplifier;
+import com.example.track.TrackSimplifier;
+import com.vaadin.flow.component.map.Map;
+import com.vaadin.flow.component.map.configuration.Coordinate;
+import com.vaadin.flow.component.map.configuration.feature.LineStringFeature;
+
+/**
+ * Draws a tracked path as a line on a {@link Map}. The line is taken from the
+ * level of a {@link TrackSimplifier} that matches the current zoom, and is only
+ * sent to the browser again when that level has changed or the zoom switches
+ * to another level.
+ */
+class TrackLine {
+
+    private final Map map;
+    private final TrackSimplifier simplifier;
+    private LineStringFeature line;
+    private StreamingSimplifier shownLevel;
+    private long shownModificationCount = -1;
+    private double zoom;
+
+    TrackLine(Map map, TrackSimplifier simplifier) {
+        this.map = map;
+        this.simplifier = simplifier;
+        zoom = map.getView().getZoom();
+        map.addViewMoveEndEventListener(e -> {
+            zoom = e.getZoom();
+            refresh();
+        });
+    }
+
+    /**
+     * Updates the line after points have been added to the simplifier.
+     */
+    void refresh() {
+        StreamingSimplifier level = simplifier.forZoom(zoom);
+        if (level == shownLevel
+                && level.modificationCount() == shownModificationCount) {
+            return;
+        }
+        if (level.size() < 2) {
+            return;
+        }
+        shownLevel = level;
+        shownModificationCount = level.modificationCount();
+
+        List<Coordinate> coordinates = new ArrayList<>(level.size());
+        for (int i = 0; i < level.size(); i++) {
+            coordinates.add(
+                    new Coordinate(level.longitude(i), level.latitude(i)));
+        }
+        if (line == null) {
+            line = new LineStringFeature(coordinates);
+            map.getFeatureLayer().addFeature(line);
+        } else {
+            line.setCoordinates(coordinates);
+        }
+    }
+}
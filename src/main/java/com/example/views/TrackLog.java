@@ -0,0 +1,75 @@
+package com.example.views;
+
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import com.example.geo.GeoFormat;
+import com.example.track.TrackHistory;
+import com.vaadin.flow.component.Composite;
+import com.vaadin.flow.component.virtuallist.VirtualList;
+import com.vaadin.flow.data.provider.DataProvider;
+import com.vaadin.flow.data.renderer.LitRenderer;
+
+/**
+ * Coordinate log backed by a {@link TrackHistory}, most recent entry on top.
+ * Rows are rendered by a {@link VirtualList}, so only the visible rows exist
+ * in the DOM and no server-side components are created per entry.
+ */
+class TrackLog extends Composite<VirtualList<Long>> {
+
+    private final TrackHistory history;
+    private final GeoFormat format;
+    private final DataProvider<Long, Void> dataProvider;
+
+    TrackLog(TrackHistory history, GeoFormat format) {
+        this.history = history;
+        this.format = format;
+        // Items are sequence numbers, so rows keep their identity while new
+        // entries are inserted on top
+        dataProvider = DataProvider.fromCallbacks(
+                query -> fetch(query.getOffset(), query.getLimit()),
+                query -> history.size());
+    }
+
+    @Override
+    protected VirtualList<Long> initContent() {
+        VirtualList<Long> list = new VirtualList<>();
+        list.setRenderer(LitRenderer.<Long> of(
+                "<span style=\"white-space: nowrap; display: block; padding: 2px 0\">${item.text}</span>")
+                .withProperty("text", this::formatRow));
+        list.setDataProvider(dataProvider);
+        list.getStyle()
+                .set("height", "400px")
+                .set("min-width", "260px")
+                .set("font-size", "var(--lumo-font-size-s)")
+                .set("font-family", "monospace")
+                .set("padding", "var(--lumo-space-s)")
+                .set("background", "var(--lumo-contrast-5pct)")
+                .set("border-radius", "var(--lumo-border-radius-m)");
+        return list;
+    }
+
+    /**
+     * Refreshes the visible rows after positions have been added to the
+     * history.
+     */
+    void refresh() {
+        dataProvider.refreshAll();
+    }
+
+    private Stream<Long> fetch(int offset, int limit) {
+        int end = (int) Math.min((long) offset + limit, history.size());
+        return LongStream.range(offset, Math.max(offset, end))
+                .mapToObj(index -> history.sequenceAt((int) index));
+    }
+
+    private String formatRow(Long sequence) {
+        if (!history.contains(sequence)) {
+            // Evicted after the row was fetched
+            return "";
+        }
+        return format.logRow(history.timestamp(sequence),
+                history.latitude(sequence), history.longitude(sequence),
+                history.accuracy(sequence));
+    }
+}
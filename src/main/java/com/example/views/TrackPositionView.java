@@ -1,29 +1,66 @@
 package com.example.views;
 
-import java.time.Instant;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+
+import com.example.geo.DensityGrid;
+import com.example.geo.GeoFormat;
+import com.example.geo.GeoMath;
+import com.example.geo.LiveSession;
+import com.example.geo.LiveSessionIndex;
+import com.example.geo.Place;
+import com.example.geo.PositionBroadcastHub;
+import com.example.geo.ReverseGeocoder;
+import com.example.geofence.Geofence;
+import com.example.geofence.GeofenceEvent;
+import com.example.geofence.GeofenceService;
+import com.example.geofence.GeofenceTracker;
+import com.example.metrics.GeolocationMetrics;
+import com.example.tiles.PmTilesArchive;
+import com.example.track.Fix;
+import com.example.track.PositionCache;
+import com.example.track.PositionFeed;
+import com.example.track.PositionFilter;
+import com.example.track.TrackExport;
+import com.example.track.TrackHistory;
+import com.example.track.TrackSimplifier;
+import com.example.track.TrackStore;
+import com.example.track.TrackWriter;
+import com.vaadin.flow.component.checkbox.Checkbox;
 import com.vaadin.flow.component.formlayout.FormLayout;
 import com.vaadin.flow.component.geolocation.Geolocation;
-import com.vaadin.flow.component.geolocation.GeolocationCoordinates;
 import com.vaadin.flow.component.geolocation.GeolocationError;
 import com.vaadin.flow.component.geolocation.GeolocationOptions;
 import com.vaadin.flow.component.geolocation.GeolocationPosition;
 import com.vaadin.flow.component.geolocation.GeolocationState;
+import com.vaadin.flow.component.html.Anchor;
 import com.vaadin.flow.component.html.Div;
 import com.vaadin.flow.component.html.H2;
 import com.vaadin.flow.component.html.Paragraph;
 import com.vaadin.flow.component.html.Span;
 import com.vaadin.flow.component.map.Map;
-import com.vaadin.flow.component.map.configuration.Coordinate;
-import com.vaadin.flow.component.map.configuration.feature.MarkerFeature;
+import com.vaadin.flow.component.notification.Notification;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.router.PageTitle;
+import com.vaadin.flow.router.RouteConfiguration;
 import com.vaadin.flow.router.Route;
+import com.vaadin.flow.server.VaadinSession;
+import com.vaadin.flow.server.streams.DownloadEvent;
+import com.vaadin.flow.server.streams.DownloadHandler;
+import com.vaadin.flow.shared.Registration;
 import com.vaadin.flow.component.ComponentEffect;
-import com.vaadin.flow.signals.local.ListSignal;
 
 /**
  * Demonstrates continuous position tracking using
@@ -35,15 +72,80 @@ import com.vaadin.flow.signals.local.ListSignal;
 @PageTitle("Track Position")
 public class TrackPositionView extends VerticalLayout {
 
-    record LogEntry(String time, double latitude, double longitude,
-            double accuracy) {
+    private static final Logger log = LoggerFactory
+            .getLogger(TrackPositionView.class);
+
+    /**
+     * Number of positions kept for the coordinate log. Older positions are
+     * dropped so that memory per tracked session stays constant.
+     */
+    static final int HISTORY_CAPACITY = 1000;
+
+    /**
+     * Maximum number of points of the drawn track line per zoom level. The
+     * line is simplified further as the track grows.
+     */
+    static final int TRACK_LINE_POINTS = 1000;
+
+    /**
+     * Maximum number of positions waiting for processing per session. When
+     * processing falls behind, the oldest positions are dropped.
+     */
+    static final int INGEST_CAPACITY = 64;
+
+    /**
+     * A processed position ready for rendering.
+     */
+    private record Update(Fix fix, Place place, int count,
+            List<Geofence> inside) {
     }
 
+    // Processing state, only accessed by the ingest pipeline
+    private final PositionFilter filter = new PositionFilter();
     private int updateCount = 0;
-    private MarkerFeature marker;
-    private final ListSignal<LogEntry> logEntries = new ListSignal<>();
+    private List<Geofence> inside = List.of();
+    private Update lastUpdate;
+    private TrackWriter trackWriter;
+
+    private final MovingMarker marker;
+    private final GeoFormat format = new GeoFormat();
+    private final TrackHistory history = new TrackHistory(HISTORY_CAPACITY);
+    private final TrackSimplifier simplifier = new TrackSimplifier(
+            TRACK_LINE_POINTS);
+    private final UpdateCoalescer<Update> updates;
+    private final IngestPipeline<Fix> ingest;
+    // Handed from the pipeline to the render step, which adds them in order
+    private final Queue<Fix> unrenderedFixes = new ConcurrentLinkedQueue<>();
+    private final Queue<GeofenceEvent> unrenderedEvents = new ConcurrentLinkedQueue<>();
+    private final String sessionId = UUID.randomUUID().toString();
+    private final LiveSessionIndex liveSessions;
+    private final TrackStore trackStore;
+    private final GeolocationMetrics metrics;
+    private final ReverseGeocoder geocoder;
+    private final DensityGrid density;
+    private final PositionBroadcastHub broadcasts;
+    private final GeofenceTracker geofences;
+    private final PositionCache positionCache;
+    private Registration feedRegistration;
+    // Read by download handlers, which do not hold the session lock
+    private volatile boolean gzipExport;
+
+    public TrackPositionView(LiveSessionIndex liveSessions,
+            TrackStore trackStore, GeolocationMetrics metrics,
+            ReverseGeocoder geocoder, GeofenceService geofenceService,
+            DensityGrid density, PositionBroadcastHub broadcasts,
+            Optional<PositionFeed> feed,
+            Optional<PmTilesArchive> tiles,
+            @Value("${geo.track.update-window:250ms}") Duration updateWindow) {
+        this.liveSessions = liveSessions;
+        this.trackStore = trackStore;
+        this.metrics = metrics;
+        this.geocoder = geocoder;
+        this.density = density;
+        this.broadcasts = broadcasts;
+        this.geofences = geofenceService.tracker(sessionId);
+        this.positionCache = PositionCache.of(VaadinSession.getCurrent());
 
-    public TrackPositionView() {
         H2 header = new H2("Track Position");
         Paragraph description = new Paragraph(
                 "This view uses Geolocation.track() with reactive Signals. "
@@ -62,6 +164,8 @@ public class TrackPositionView extends VerticalLayout {
         Span headField = new Span("--");
         Span speedField = new Span("--");
         Span countField = new Span("0");
+        Span placeField = new Span("--");
+        Span geofenceField = new Span("--");
 
         FormLayout coords = new FormLayout();
         coords.setResponsiveSteps(
@@ -74,39 +178,25 @@ public class TrackPositionView extends VerticalLayout {
         coords.addFormItem(headField, "Heading");
         coords.addFormItem(speedField, "Speed");
         coords.addFormItem(countField, "Updates");
+        coords.addFormItem(placeField, "Nearest place");
+        coords.addFormItem(geofenceField, "Geofences");
 
         // Map
         Map map = new Map();
         map.setHeight("400px");
         map.setWidthFull();
         map.setZoom(2);
+        LocalTiles.apply(map, tiles);
+        marker = new MovingMarker(map, "You are here");
+        TrackLine trackLine = new TrackLine(map, simplifier);
 
         // Coordinate log (most recent on top)
-        Div log = new Div();
-        log.getStyle()
-                .set("overflow-y", "auto")
-                .set("height", "400px")
-                .set("min-width", "260px")
-                .set("font-size", "var(--lumo-font-size-s)")
-                .set("font-family", "monospace")
-                .set("padding", "var(--lumo-space-s)")
-                .set("background", "var(--lumo-contrast-5pct)")
-                .set("border-radius", "var(--lumo-border-radius-m)");
-
-        ComponentEffect.bindChildren(log, logEntries, entrySignal -> {
-            LogEntry e = entrySignal.get();
-            Span row = new Span(String.format("%s  %.4f, %.4f  \u00B1%.0fm",
-                    e.time(), e.latitude(), e.longitude(), e.accuracy()));
-            row.getStyle().set("white-space", "nowrap")
-                    .set("display", "block")
-                    .set("padding", "2px 0");
-            return row;
-        });
+        TrackLog trackLog = new TrackLog(history, format);
 
-        HorizontalLayout mapRow = new HorizontalLayout(map, log);
+        HorizontalLayout mapRow = new HorizontalLayout(map, trackLog);
         mapRow.setWidthFull();
         mapRow.setFlexGrow(1, map);
-        mapRow.setFlexGrow(0, log);
+        mapRow.setFlexGrow(0, trackLog);
 
         // Error display
         Div errorDisplay = new Div();
@@ -117,76 +207,103 @@ public class TrackPositionView extends VerticalLayout {
                 .set("background", "var(--lumo-error-color-10pct)")
                 .set("border-radius", "var(--lumo-border-radius-m)");
 
-        add(header, description, statusBadge, mapRow, coords, errorDisplay);
+        // Others can follow this session live while the view is open
+        Anchor followLink = new Anchor(RouteConfiguration
+                .forApplicationScope().getUrl(FollowView.class, sessionId),
+                "Share live position");
+        followLink.setTarget("_blank");
+
+        add(header, description, statusBadge, followLink, mapRow,
+                createExport(), coords, errorDisplay);
         setPadding(true);
 
+        // Renders the latest position, at most once per update window. This
+        // is the only part of handling a position that holds the session lock.
+        updates = new UpdateCoalescer<>(this, updateWindow, update -> {
+            long start = System.nanoTime();
+            // Add log entries (most recent on top)
+            for (Fix added; (added = unrenderedFixes.poll()) != null;) {
+                history.add(added.latitude(), added.longitude(),
+                        added.accuracy(), added.timestamp());
+                simplifier.add(added.latitude(), added.longitude());
+            }
+            metrics.trackHistorySize(history.size());
+            for (GeofenceEvent event; (event = unrenderedEvents
+                    .poll()) != null;) {
+                showGeofenceEvent(event);
+            }
+            geofenceField.setText(update.inside().isEmpty() ? "--"
+                    : update.inside().stream().map(Geofence::getName)
+                            .collect(Collectors.joining(", ")));
+
+            Fix fix = update.fix();
+            latField.setText(format.degrees(fix.latitude()));
+            lonField.setText(format.degrees(fix.longitude()));
+            accField.setText(format.meters(fix.accuracy()));
+            altField.setText(fix.altitude() != null
+                    ? format.meters(fix.altitude())
+                    : "N/A");
+            headField.setText(fix.heading() != null
+                    ? format.heading(fix.heading())
+                    : "N/A");
+            speedField.setText(fix.speed() != null
+                    ? format.speed(fix.speed())
+                    : "N/A");
+            countField.setText(String.valueOf(update.count()));
+            Place place = update.place();
+            placeField.setText(place == null ? "--"
+                    : format.place(place, GeoMath.distanceMeters(
+                            fix.latitude(), fix.longitude(),
+                            place.latitude(), place.longitude())));
+
+            // Update map
+            boolean first = !marker.isPlaced();
+            marker.moveTo(fix.latitude(), fix.longitude(), fix.accuracy());
+            map.setCenter(marker.getCoordinates());
+            if (first) {
+                map.setZoom(15);
+            }
+            trackLine.refresh();
+
+            trackLog.refresh();
+
+            statusBadge.setText(
+                    "Tracking active (" + update.count() + " updates)");
+            statusBadge.getElement().getThemeList().clear();
+            statusBadge.getElement().getThemeList().add("badge");
+            statusBadge.getElement().getThemeList().add("success");
+
+            errorDisplay.setVisible(false);
+
+            feed.ifPresent(source -> source.rendered(fix));
+            metrics.trackRender(System.nanoTime() - start);
+        });
+
+        ingest = new IngestPipeline<>("ingest-" + sessionId,
+                INGEST_CAPACITY, this::process, metrics::ingestDropped);
+
         // #geolocation
         GeolocationOptions options = new GeolocationOptions(true, null, null);
         Geolocation geo = Geolocation.track(this, options);
 
-        // Reactive effect: runs whenever geo.state() changes
+        // Reactive effect: runs whenever geo.state() changes. Positions are
+        // only queued here, processing and rendering happen outside of the
+        // effect.
         ComponentEffect.effect(this, () -> {
             switch (geo.state().get()) {
                 case GeolocationState.Pending pending -> {
                     // Still waiting for the first position
                 }
-                case GeolocationPosition pos -> {
-                    GeolocationCoordinates c = pos.coords();
-                    updateCount++;
-
-                    latField.setText(
-                            String.format("%.6f\u00B0", c.latitude()));
-                    lonField.setText(
-                            String.format("%.6f\u00B0", c.longitude()));
-                    accField.setText(
-                            String.format("%.1f m", c.accuracy()));
-                    altField.setText(c.altitude() != null
-                            ? String.format("%.1f m", c.altitude())
-                            : "N/A");
-                    headField.setText(c.heading() != null
-                            ? String.format("%.1f\u00B0", c.heading())
-                            : "N/A");
-                    speedField.setText(c.speed() != null
-                            ? String.format("%.2f m/s", c.speed())
-                            : "N/A");
-                    countField.setText(String.valueOf(updateCount));
-
-                    // Update map
-                    Coordinate coord = new Coordinate(
-                            c.longitude(), c.latitude());
-                    if (marker != null) {
-                        map.getFeatureLayer().removeFeature(marker);
-                    }
-                    marker = new MarkerFeature(coord);
-                    marker.setText("You are here");
-                    map.getFeatureLayer().addFeature(marker);
-                    map.setCenter(coord);
-                    if (updateCount == 1) {
-                        map.setZoom(15);
-                    }
-
-                    // Add log entry (most recent on top)
-                    String time = DateTimeFormatter
-                            .ofPattern("HH:mm:ss")
-                            .withZone(ZoneId.systemDefault())
-                            .format(Instant.ofEpochMilli(pos.timestamp()));
-                    logEntries.insertFirst(new LogEntry(time,
-                            c.latitude(), c.longitude(), c.accuracy()));
-
-                    statusBadge.setText("Tracking active (" + updateCount
-                            + " updates)");
-                    statusBadge.getElement().getThemeList().clear();
-                    statusBadge.getElement().getThemeList().add("badge");
-                    statusBadge.getElement().getThemeList().add("success");
-
-                    errorDisplay.setVisible(false);
-                }
+                case GeolocationPosition pos -> ingest.offer(Fix.of(pos));
                 case GeolocationError err -> {
+                    metrics.trackError(err.code());
+                    // Errors are rare, render them right away and drop
+                    // the position that has not been rendered yet
+                    updates.clear();
                     errorDisplay.setVisible(true);
                     errorDisplay.removeAll();
-                    errorDisplay.add(new Span(
-                            errorCodeToString(err.code()) + ": "
-                                    + err.message()));
+                    errorDisplay.add(new Span(errorCodeToString(err.code())
+                            + ": " + err.message()));
                     statusBadge.setText("Error");
                     statusBadge.getElement().getThemeList().clear();
                     statusBadge.getElement().getThemeList().add("badge");
@@ -194,6 +311,164 @@ public class TrackPositionView extends VerticalLayout {
                 }
             }
         });
+
+        // A server side feed, such as the synthetic positions of the load
+        // test build, adds positions without a browser
+        feed.ifPresent(source -> {
+            addAttachListener(
+                    e -> feedRegistration = source.start(ingest::offer));
+            addDetachListener(e -> {
+                feedRegistration.remove();
+                feedRegistration = null;
+            });
+        });
+        addAttachListener(e -> metrics.trackingStarted());
+        addDetachListener(e -> {
+            metrics.trackingStopped();
+            unrenderedFixes.clear();
+            unrenderedEvents.clear();
+            // Views are not reused after navigating away, so the pipeline
+            // need not be restarted on attach
+            ingest.close(() -> {
+                liveSessions.remove(sessionId);
+                broadcasts.end(sessionId);
+                if (trackWriter != null) {
+                    trackWriter.close();
+                    trackWriter = null;
+                }
+            });
+        });
+    }
+
+    /**
+     * Creates the links for downloading the recorded track. The document is
+     * streamed from the track store while it is downloaded.
+     */
+    private HorizontalLayout createExport() {
+        Checkbox gzip = new Checkbox("Compress (gzip)");
+        gzip.addValueChangeListener(e -> gzipExport = e.getValue());
+
+        HorizontalLayout export = new HorizontalLayout();
+        export.setAlignItems(Alignment.BASELINE);
+        for (TrackExport.Format format : TrackExport.Format.values()) {
+            Anchor link = new Anchor((DownloadHandler) event -> download(
+                    event, format), "Download " + format);
+            link.getElement().setAttribute("download", true);
+            export.add(link);
+        }
+        export.add(gzip);
+        return export;
+    }
+
+    private void download(DownloadEvent event, TrackExport.Format format)
+            throws IOException {
+        boolean gzip = gzipExport;
+        String name = "track-" + sessionId.substring(0, 8);
+        event.setFileName(name + "." + format.getExtension()
+                + (gzip ? ".gz" : ""));
+        event.setContentType(
+                gzip ? "application/gzip" : format.getContentType());
+        TrackExport.write(trackStore, sessionId, name, format, gzip,
+                event.getOutputStream());
+    }
+
+    /**
+     * Filters, enriches and stores a new position, then schedules it for
+     * rendering. Runs on the ingest pipeline, without the session lock.
+     */
+    private void process(Fix fix) {
+        long start = System.nanoTime();
+        PositionFilter.Outcome outcome = filter.add(fix);
+        metrics.trackFiltered(outcome);
+        if (outcome == PositionFilter.Outcome.REJECTED) {
+            return;
+        }
+        // Geofences also see positions that did not move, so that dwell
+        // events fire for a device standing still
+        Fix current = filter.current();
+        // Lets one-shot requests in the same session use tracked positions
+        positionCache.put(current, true);
+        List<GeofenceEvent> events = geofences.update(current.latitude(),
+                current.longitude(), fix.timestamp());
+        if (!events.isEmpty()) {
+            unrenderedEvents.addAll(events);
+            inside = geofences.getInside();
+        }
+        if (outcome == PositionFilter.Outcome.SUPPRESSED) {
+            // Jitter of a device standing still
+            if (!events.isEmpty() && lastUpdate != null) {
+                lastUpdate = new Update(lastUpdate.fix(), lastUpdate.place(),
+                        lastUpdate.count(), inside);
+                updates.offer(lastUpdate);
+            }
+            return;
+        }
+        fix = current;
+        updateCount++;
+        unrenderedFixes.add(fix);
+        persist(fix);
+        density.add(sessionId, fix.latitude(), fix.longitude());
+        // Share the latest position with the nearby users view
+        String label = "User " + sessionId.substring(0, 8);
+        liveSessions.update(new LiveSession(sessionId, label, fix.latitude(),
+                fix.longitude(), fix.accuracy(), fix.timestamp()));
+        Place place = geocoder.nearest(fix.latitude(), fix.longitude())
+                .orElse(null);
+        // and with everyone following this session
+        broadcasts.publish(new PositionBroadcastHub.SharedPosition(sessionId,
+                label, fix, place, false));
+        lastUpdate = new Update(fix, place, updateCount, inside);
+        updates.offer(lastUpdate);
+        metrics.trackUpdate(System.nanoTime() - start);
+    }
+
+    /**
+     * Appends a position to the recorded track, which is kept after the view
+     * is closed. A failed write is counted and logged but does not stop
+     * tracking; a writer that has been closed is replaced on the next
+     * position.
+     */
+    private void persist(Fix fix) {
+        try {
+            if (trackWriter == null) {
+                trackWriter = trackStore.open(sessionId);
+            }
+            trackWriter.append(fix.timestamp(), fix.latitude(),
+                    fix.longitude(), fix.accuracy());
+        } catch (UncheckedIOException e) {
+            // The writer tries again on the next position
+            metrics.persistFailed();
+            log.warn("Unable to record a position of session {}", sessionId,
+                    e);
+        } catch (IllegalStateException e) {
+            metrics.persistFailed();
+            trackWriter = null;
+        }
+    }
+
+    /**
+     * Sets the minimum time between two screen updates. Positions arriving
+     * faster than this are still recorded in the log, but only the latest one
+     * is rendered.
+     *
+     * @param updateWindow
+     *            the update window, zero to render every position
+     */
+    public void setUpdateWindow(Duration updateWindow) {
+        updates.setWindow(updateWindow);
+    }
+
+    public Duration getUpdateWindow() {
+        return updates.getWindow();
+    }
+
+    private void showGeofenceEvent(GeofenceEvent event) {
+        String name = event.fence().getName();
+        Notification.show(switch (event.type()) {
+            case ENTER -> "Entered " + name;
+            case EXIT -> "Left " + name;
+            case DWELL -> "Staying in " + name;
+        });
     }
 
     private String errorCodeToString(int code) {
@@ -0,0 +1,133 @@
+package com.example.views;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
+import com.vaadin.flow.function.SerializableConsumer;
+
+/**
+ * Coalesces bursts of updates for a component. Only the latest offered value
+ * is handed to the consumer, at most once per update window. The consumer
+ * always runs in {@link UI#access(com.vaadin.flow.server.Command)}, so all
+ * changes it makes reach the browser in a single push.
+ * <p>
+ * A shared scheduler thread only keeps the time. Each flush is started on a
+ * virtual thread of its own, which runs the command and the push when the
+ * session lock is free, so a slow render or a slow client of one session
+ * does not hold up the updates of the others.
+ * <p>
+ * Values may be offered from any thread. Pending values are dropped while the
+ * owner component is detached.
+ *
+ * @param <T>
+ *            the update type
+ */
+class UpdateCoalescer<T> {
+
+    private static final ScheduledExecutorService SCHEDULER = Executors
+            .newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "update-coalescer");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private static final ThreadFactory FLUSH_THREADS = Thread.ofVirtual()
+            .name("update-flush-", 0).factory();
+
+    private final SerializableConsumer<T> consumer;
+    private final AtomicReference<T> pending = new AtomicReference<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile Duration window;
+    private volatile long nextFlushNanos = System.nanoTime();
+    private volatile UI ui;
+
+    /**
+     * Creates a coalescer bound to the life cycle of the given component.
+     *
+     * @param owner
+     *            the component whose UI applies the updates
+     * @param window
+     *            the minimum time between two updates
+     * @param consumer
+     *            applies the latest value to the UI
+     */
+    UpdateCoalescer(Component owner, Duration window,
+            SerializableConsumer<T> consumer) {
+        this.consumer = consumer;
+        setWindow(window);
+        owner.getUI().ifPresent(attachedUi -> ui = attachedUi);
+        owner.addAttachListener(e -> ui = e.getUI());
+        owner.addDetachListener(e -> {
+            ui = null;
+            pending.set(null);
+            // A flush still queued in the session may never run
+            scheduled.set(false);
+        });
+    }
+
+    /**
+     * Sets the minimum time between two updates. A zero window applies every
+     * value as soon as possible, still outside of the caller's thread.
+     */
+    void setWindow(Duration window) {
+        if (window.isNegative()) {
+            throw new IllegalArgumentException(
+                    "Update window must not be negative: " + window);
+        }
+        this.window = window;
+    }
+
+    Duration getWindow() {
+        return window;
+    }
+
+    /**
+     * Offers a new value, replacing any value that has not been applied yet.
+     */
+    void offer(T value) {
+        pending.set(value);
+        if (scheduled.compareAndSet(false, true)) {
+            long delay = Math.max(0, nextFlushNanos - System.nanoTime());
+            SCHEDULER.schedule(
+                    () -> FLUSH_THREADS.newThread(this::flush).start(), delay,
+                    TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Drops the value that has not been applied yet, if any.
+     */
+    void clear() {
+        pending.set(null);
+    }
+
+    private void flush() {
+        UI target = ui;
+        if (target == null) {
+            scheduled.set(false);
+            return;
+        }
+        try {
+            target.access(() -> {
+                nextFlushNanos = System.nanoTime() + window.toNanos();
+                // Clear the flag before taking the value, so that a value
+                // offered in between schedules a new flush instead of getting
+                // stuck
+                scheduled.set(false);
+                T value = pending.getAndSet(null);
+                if (value != null) {
+                    consumer.accept(value);
+                }
+            });
+        } catch (UIDetachedException e) {
+            scheduled.set(false);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import com.example.track.TrackStore;
+import com.example.track.TrackWriter;
+
+class DensityGridTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    private final Random random = new Random(1);
+
+    @Test
+    void countsPositionsPerCell() {
+        TrackStore store = store();
+        DensityGrid grid = new DensityGrid(store, 16);
+        // Helsinki twice, New York once
+        grid.add("a", 60.17, 24.94);
+        grid.add("b", 60.1701, 24.9401);
+        grid.add("a", 40.71, -74.01);
+
+        assertEquals(3, grid.total());
+        List<DensityGrid.Cell> world = grid.cells(0, -90, -180, 90, 180);
+        assertEquals(1, world.size());
+        assertEquals(3, world.get(0).count());
+        List<DensityGrid.Cell> finland = grid.cells(16, 59, 20, 70, 32);
+        assertEquals(1, finland.size());
+        DensityGrid.Cell cell = finland.get(0);
+        assertEquals(2, cell.count());
+        assertTrue(cell.south() <= 60.17 && cell.north() > 60.1701);
+        assertTrue(cell.west() <= 24.94 && cell.east() > 24.9401);
+        assertEquals(2, grid.cells(1, -90, -180, 90, 180).size());
+    }
+
+    @Test
+    void rebuildCountsStoredPositions() {
+        TrackStore store = store();
+        for (int track = 0; track < 10; track++) {
+            record(store, "track" + track, 1000);
+        }
+        DensityGrid grid = new DensityGrid(store, 16);
+        assertEquals(0, grid.total());
+
+        assertEquals(10_000, grid.rebuild());
+        assertEquals(10_000, grid.total());
+        assertEquals(10_000, grid.cells(0, -90, -180, 90, 180).get(0).count());
+        // Counting again replaces the counts instead of adding to them
+        assertEquals(10_000, grid.rebuild());
+        assertEquals(10_000, grid.total());
+    }
+
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    void positionsRecordedDuringRebuildAreCountedOnce() throws Exception {
+        TrackStore store = store();
+        for (int track = 0; track < 20; track++) {
+            record(store, "old" + track, 2000);
+        }
+        DensityGrid grid = new DensityGrid(store, 12);
+        grid.rebuild();
+
+        // Half of the writers continue existing tracks, half start new ones
+        int writers = 4;
+        int positions = 20_000;
+        CountDownLatch started = new CountDownLatch(writers);
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        List<Future<?>> written = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            String trackId = i % 2 == 0 ? "old" + i : "new" + i;
+            Random writerRandom = new Random(i);
+            written.add(executor.submit(() -> {
+                try (TrackWriter writer = store.open(trackId)) {
+                    started.countDown();
+                    for (int j = 0; j < positions; j++) {
+                        double latitude = writerRandom.nextDouble(-80, 80);
+                        double longitude = writerRandom.nextDouble(-180,
+                                180);
+                        // Like the track view: stored first, then counted
+                        writer.append(START + j * 1000L, latitude, longitude,
+                                5);
+                        grid.add(trackId, latitude, longitude);
+                        if (j % 100 == 0) {
+                            Thread.yield();
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        started.await();
+        int rebuilds = 0;
+        while (written.stream().anyMatch(future -> !future.isDone())) {
+            grid.rebuild();
+            rebuilds++;
+        }
+        for (Future<?> future : written) {
+            future.get();
+        }
+        executor.shutdown();
+        long total = 20 * 2000 + writers * positions;
+
+        assertEquals(total, stored(store));
+        // At most one position per writer off in each rebuild
+        assertTrue(Math.abs(grid.total() - total) <= writers * rebuilds,
+                grid.total() + " counted of " + total);
+        assertEquals(grid.total(),
+                grid.cells(0, -90, -180, 90, 180).get(0).count());
+        // Without concurrent writes the counts are exact
+        assertEquals(total, grid.rebuild());
+        assertEquals(total, grid.total());
+    }
+
+    private void record(TrackStore store, String trackId, int count) {
+        try (TrackWriter writer = store.open(trackId)) {
+            for (int i = 0; i < count; i++) {
+                writer.append(START + i * 1000L, randomLatitude(),
+                        randomLongitude(), 5);
+            }
+        }
+    }
+
+    private static long stored(TrackStore store) {
+        return store.tracks().stream().mapToLong(track -> store.replay(track,
+                (timestamp, latitude, longitude, accuracy) -> {
+                })).sum();
+    }
+
+    private double randomLatitude() {
+        return random.nextDouble(-80, 80);
+    }
+
+    private double randomLongitude() {
+        return random.nextDouble(-180, 180);
+    }
+
+    private TrackStore store() {
+        return new TrackStore(directory, DataSize.ofKilobytes(64),
+                Duration.ofDays(1), DataSize.ofGigabytes(1));
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class GeoFormatTest {
+
+    private static final Locale[] LOCALES = { Locale.US, Locale.GERMANY };
+    private static final ZoneId[] ZONES = { ZoneId.of("UTC"),
+            ZoneId.of("Europe/Helsinki"), ZoneId.of("America/St_Johns") };
+
+    @Test
+    void numbersMatchStringFormat() {
+        List<Double> values = values();
+        for (Locale locale : LOCALES) {
+            GeoFormat format = new GeoFormat(locale, ZoneId.of("UTC"));
+            for (double value : values) {
+                assertNumbers(locale, format, value);
+            }
+        }
+    }
+
+    @Test
+    void defaultLocaleIsUsed() {
+        Locale defaultLocale = Locale.getDefault(Locale.Category.FORMAT);
+        Locale.setDefault(Locale.Category.FORMAT, Locale.GERMANY);
+        try {
+            GeoFormat format = new GeoFormat();
+            assertEquals("60,169900\u00B0", format.degrees(60.1699));
+            for (double value : values()) {
+                assertEquals(String.format("%.6f\u00B0", value),
+                        format.degrees(value));
+                assertEquals(String.format("%.2f m/s", value),
+                        format.speed(value));
+            }
+        } finally {
+            Locale.setDefault(Locale.Category.FORMAT, defaultLocale);
+        }
+    }
+
+    @Test
+    void timesMatchDateTimeFormatter() {
+        Random random = new Random(1);
+        List<Long> times = new ArrayList<>(List.of(0L, -1L, 999L, -1000L,
+                // Daylight saving time changes in Helsinki
+                Instant.parse("2024-03-31T00:59:59Z").toEpochMilli(),
+                Instant.parse("2024-03-31T01:00:00Z").toEpochMilli(),
+                Instant.parse("2024-10-27T00:59:59.999Z").toEpochMilli(),
+                Instant.parse("2024-10-27T01:00:00Z").toEpochMilli(),
+                // Leap days, and years outside of four digits
+                Instant.parse("2000-02-29T12:00:00Z").toEpochMilli(),
+                Instant.parse("1900-03-01T00:00:00Z").toEpochMilli(),
+                Instant.parse("9999-12-31T23:59:59Z").toEpochMilli(),
+                Instant.parse("+10000-01-01T00:00:00Z").toEpochMilli(),
+                Instant.parse("0000-06-01T00:00:00Z").toEpochMilli()));
+        for (int i = 0; i < 100_000; i++) {
+            times.add(random.nextLong(-5_000_000_000_000L,
+                    5_000_000_000_000L));
+        }
+        for (Locale locale : LOCALES) {
+            for (ZoneId zone : ZONES) {
+                GeoFormat format = new GeoFormat(locale, zone);
+                DateTimeFormatter clock = DateTimeFormatter
+                        .ofPattern("HH:mm:ss", locale).withZone(zone);
+                DateTimeFormatter dateTime = DateTimeFormatter
+                        .ofPattern("yyyy-MM-dd HH:mm:ss", locale)
+                        .withZone(zone);
+                for (long time : times) {
+                    Instant instant = Instant.ofEpochMilli(time);
+                    assertEquals(clock.format(instant),
+                            format.clockTime(time), instant + " in " + zone);
+                    assertEquals(dateTime.format(instant),
+                            format.dateTime(time), instant + " in " + zone);
+                }
+            }
+        }
+    }
+
+    private static void assertNumbers(Locale locale, GeoFormat format,
+            double value) {
+        assertEquals(String.format(locale, "%.6f\u00B0", value),
+                format.degrees(value));
+        assertEquals(String.format(locale, "%.1f m", value),
+                format.meters(value));
+        assertEquals(String.format(locale, "%.2f m/s", value),
+                format.speed(value));
+        assertEquals(String.format(locale, "%.1f\u00B0", value),
+                format.heading(value));
+        for (int decimals = 0; decimals <= 8; decimals++) {
+            StringBuilder formatted = new StringBuilder();
+            format.appendFixed(formatted, value, decimals);
+            assertEquals(String.format(locale, "%." + decimals + "f", value),
+                    formatted.toString(), value + " with " + decimals
+                            + " decimals");
+        }
+    }
+
+    private static List<Double> values() {
+        List<Double> values = new ArrayList<>(List.of(0.0, -0.0, 0.5, -0.5,
+                1.5, 2.5, -2.5, 0.05, 0.15, 0.25, 0.35, -0.04, -0.000_000_4,
+                60.123_456_5, -24.987_654_5, 0.000_000_5, -0.000_000_5,
+                179.999_999_5, -179.999_999_5, 89.999_999_95, 1.005, 2.675,
+                Double.NaN, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.MIN_VALUE, -Double.MIN_VALUE,
+                Double.MAX_VALUE, -Double.MAX_VALUE, 1e7, 1e15, 1e16, -1e20,
+                9_007_199_254_740_993.0, 123_456_789.123_456_789));
+        Random random = new Random(1);
+        for (int i = 0; i < 5_000; i++) {
+            int decimals = random.nextInt(9);
+            double scale = Math.pow(10, decimals);
+            // Ties and near-ties at every precision, like x.xxxxxx5
+            double tie = (random.nextInt(2_000_000) - 1_000_000 + 0.5) / scale;
+            values.add(tie);
+            values.add(Math.nextUp(tie));
+            values.add(Math.nextDown(tie));
+            values.add(tie + 1e-9 / scale);
+            values.add(tie - 1e-9 / scale);
+            values.add((random.nextDouble() - 0.5) * 360);
+            values.add(random.nextGaussian() * Math.pow(10,
+                    random.nextInt(20)));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+class LiveSessionIndexTest {
+
+    private final Random random = new Random(1);
+    private final LiveSessionIndex index = new LiveSessionIndex(0.05);
+
+    @Test
+    void findsSessionsWithinRadiusLikeLinearScan() {
+        List<LiveSession> sessions = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            sessions.add(session("S" + i, randomLatitude(),
+                    randomLongitude()));
+        }
+        // Sessions on both sides of the antimeridian and around the poles
+        for (int i = 0; i < 300; i++) {
+            sessions.add(session("A" + i, random.nextDouble(-60, 60),
+                    i % 2 == 0 ? 180 - random.nextDouble(0.5)
+                            : -180 + random.nextDouble(0.5)));
+            sessions.add(session("N" + i, 90 - random.nextDouble(0.5),
+                    randomLongitude()));
+            sessions.add(session("P" + i, -90 + random.nextDouble(0.5),
+                    randomLongitude()));
+        }
+        sessions.forEach(index::update);
+
+        double[] radii = { 100, 5_000, 50_000, 1_000_000 };
+        List<double[]> queries = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            queries.add(new double[] { randomLatitude(), randomLongitude() });
+            queries.add(new double[] { random.nextDouble(-60, 60),
+                    i % 2 == 0 ? 179.99 : -179.99 });
+            queries.add(new double[] { i % 2 == 0 ? 89.97 : -89.97,
+                    randomLongitude() });
+        }
+        queries.add(new double[] { 90, 0 });
+        queries.add(new double[] { -90, 0 });
+        for (double[] query : queries) {
+            for (double radius : radii) {
+                assertEquals(linearScan(sessions, query[0], query[1], radius),
+                        ids(index.findWithin(query[0], query[1], radius)),
+                        "Within " + radius + " m of " + query[0] + ", "
+                                + query[1]);
+            }
+        }
+    }
+
+    @Test
+    void findsSessionAcrossPoleInEveryLongitude() {
+        // Ten kilometers apart over the North Pole
+        index.update(session("far", 89.96, 180));
+        assertEquals(Set.of("far"), ids(index.findWithin(89.96, 0, 10_000)));
+        assertEquals(Set.of(), ids(index.findWithin(89.96, 0, 8_000)));
+    }
+
+    @Test
+    void findsSessionsInBoxCrossingAntimeridian() {
+        index.update(session("east", 10, 179.9));
+        index.update(session("west", 10, -179.9));
+        index.update(session("middle", 10, 0));
+        index.update(session("north", 30, 179.9));
+
+        assertEquals(Set.of("east", "west"),
+                ids(index.findInBox(0, 179, 20, -179)));
+        assertEquals(Set.of("middle"), ids(index.findInBox(0, -1, 20, 1)));
+        assertEquals(Set.of("east", "west", "middle"),
+                ids(index.findInBox(0, -180, 20, 180)));
+        // Given as a continuous range past 180
+        assertEquals(Set.of("east", "west"),
+                ids(index.findInBox(0, 179, 20, 181)));
+    }
+
+    @Test
+    void movesAndRemovesSessions() {
+        index.update(session("a", 60.17, 24.94));
+        index.update(session("b", 60.17, 24.95));
+        assertEquals(Set.of("a", "b"), ids(index.findWithin(60.17, 24.94,
+                1_000)));
+
+        // Moving to another cell leaves the old one
+        index.update(session("a", 40.71, -74.01));
+        assertEquals(Set.of("b"), ids(index.findWithin(60.17, 24.94, 1_000)));
+        assertEquals(Set.of("a"),
+                ids(index.findWithin(40.71, -74.01, 1_000)));
+        assertEquals(40.71, index.get("a").orElseThrow().latitude());
+
+        index.remove("a");
+        index.remove("unknown");
+        assertEquals(Optional.empty(), index.get("a"));
+        assertEquals(Set.of(), ids(index.findWithin(40.71, -74.01, 1_000)));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void largeQueriesVisitOccupiedCellsOnly() {
+        for (int i = 0; i < 100; i++) {
+            index.update(session("S" + i, randomLatitude(),
+                    randomLongitude()));
+        }
+        // A radius around a pole covers millions of cells
+        for (int i = 0; i < 10_000; i++) {
+            index.findWithin(89.9, 0, 1_000_000);
+            index.findInBox(-90, -180, 90, 180);
+        }
+        assertTrue(index.findWithin(89.9, 0, 1_000_000).size() < 100);
+        assertEquals(100, index.findInBox(-90, -180, 90, 180).size());
+    }
+
+    private static Set<String> linearScan(List<LiveSession> sessions,
+            double latitude, double longitude, double radius) {
+        return sessions.stream()
+                .filter(session -> GeoMath.distanceMeters(latitude, longitude,
+                        session.latitude(), session.longitude()) <= radius)
+                .map(LiveSession::id).collect(Collectors.toSet());
+    }
+
+    private static Set<String> ids(List<LiveSession> sessions) {
+        Set<String> ids = sessions.stream().map(LiveSession::id)
+                .collect(Collectors.toSet());
+        assertEquals(sessions.size(), ids.size(), "Duplicate sessions");
+        return ids;
+    }
+
+    /**
+     * Returns a latitude of a point uniformly distributed on the sphere.
+     */
+    private double randomLatitude() {
+        return Math.toDegrees(Math.asin(random.nextDouble(-1, 1)));
+    }
+
+    private double randomLongitude() {
+        return random.nextDouble(-180, 180);
+    }
+
+    private static LiveSession session(String id, double latitude,
+            double longitude) {
+        return new LiveSession(id, id, latitude, longitude, 5, 0);
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.geo.PositionBroadcastHub.SharedPosition;
+import com.example.track.Fix;
+import com.vaadin.flow.shared.Registration;
+
+class PositionBroadcastHubTest {
+
+    private static final Place HELSINKI = new Place("Helsinki", "FI",
+            60.1699, 24.9384, 658_864);
+
+    private final PositionBroadcastHub hub = new PositionBroadcastHub();
+
+    @Test
+    void followerReceivesLatestAndPublishedPositions() {
+        SharedPosition first = position("a", 0);
+        hub.publish(first);
+        List<SharedPosition> received = new ArrayList<>();
+
+        hub.follow("a", received::add);
+        assertEquals(List.of(first), received);
+        assertEquals(1, hub.followers("a"));
+
+        SharedPosition second = position("a", 1);
+        hub.publish(second);
+        hub.publish(position("b", 0));
+        assertEquals(List.of(first, second), received);
+        assertEquals(Optional.of(second), hub.latest("a"));
+    }
+
+    @Test
+    void followerOfIdleSessionWaitsForPosition() {
+        List<SharedPosition> received = new ArrayList<>();
+        hub.follow("a", received::add);
+        assertEquals(List.of(), received);
+        assertEquals(Optional.empty(), hub.latest("a"));
+
+        SharedPosition position = position("a", 0);
+        hub.publish(position);
+        assertEquals(List.of(position), received);
+    }
+
+    @Test
+    void followersShareOnePosition() {
+        List<SharedPosition> received = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            hub.follow("a", received::add);
+        }
+        SharedPosition position = position("a", 0);
+        hub.publish(position);
+
+        assertEquals(3, received.size());
+        for (SharedPosition shared : received) {
+            assertSame(position, shared);
+        }
+    }
+
+    @Test
+    void removedFollowerReceivesNothing() {
+        List<SharedPosition> stayed = new ArrayList<>();
+        List<SharedPosition> left = new ArrayList<>();
+        hub.follow("a", stayed::add);
+        Registration registration = hub.follow("a", left::add);
+
+        registration.remove();
+        assertEquals(1, hub.followers("a"));
+        hub.publish(position("a", 0));
+        assertEquals(1, stayed.size());
+        assertEquals(List.of(), left);
+        // Removing twice does nothing
+        registration.remove();
+        assertEquals(1, hub.followers("a"));
+    }
+
+    @Test
+    void followerRemovedDuringDeliveryGetsCurrentPositionOnly() {
+        List<SharedPosition> received = new ArrayList<>();
+        Registration[] second = new Registration[1];
+        hub.follow("a", position -> second[0].remove());
+        second[0] = hub.follow("a", received::add);
+
+        // Delivery iterates the followers as they were when it started
+        SharedPosition position = position("a", 0);
+        hub.publish(position);
+        assertEquals(List.of(position), received);
+        assertEquals(1, hub.followers("a"));
+        hub.publish(position("a", 1));
+        assertEquals(List.of(position), received);
+    }
+
+    @Test
+    void failingFollowerDoesNotStopOthers() {
+        List<SharedPosition> received = new ArrayList<>();
+        hub.follow("a", position -> {
+            throw new IllegalStateException("Expected");
+        });
+        hub.follow("a", received::add);
+
+        hub.publish(position("a", 0));
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    void endTellsFollowersAndForgetsSession() {
+        List<SharedPosition> received = new ArrayList<>();
+        SharedPosition last = position("a", 0);
+        hub.publish(last);
+        Registration registration = hub.follow("a", received::add);
+
+        hub.end("a");
+        assertEquals(2, received.size());
+        SharedPosition ended = received.get(1);
+        assertTrue(ended.ended());
+        assertSame(last.fix(), ended.fix());
+        // Ending again does not repeat the last position
+        hub.end("a");
+        assertEquals(2, received.size());
+        // Kept while followed, so that a late follower sees the end
+        assertEquals(Optional.of(ended), hub.latest("a"));
+
+        registration.remove();
+        assertEquals(Optional.empty(), hub.latest("a"));
+        assertEquals(0, hub.followers("a"));
+    }
+
+    @Test
+    void endWithoutFollowersForgetsSession() {
+        hub.publish(position("a", 0));
+        hub.end("a");
+        assertEquals(Optional.empty(), hub.latest("a"));
+        hub.end("unknown");
+        assertEquals(Optional.empty(), hub.latest("unknown"));
+    }
+
+    @Test
+    void activeSessionOutlivesItsFollowers() {
+        hub.publish(position("a", 0));
+        hub.follow("a", position -> {
+        }).remove();
+
+        assertEquals(0, hub.followers("a"));
+        assertFalse(hub.latest("a").isEmpty());
+    }
+
+    private static SharedPosition position(String sessionId, int second) {
+        Fix fix = new Fix(60.17 + second * 0.0001, 24.94, 5, null, null, null,
+                null, 1_700_000_000_000L + second * 1000L);
+        return new SharedPosition(sessionId, "User " + sessionId, fix,
+                HELSINKI, false);
+    }
+}
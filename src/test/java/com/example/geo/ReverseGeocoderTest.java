@@ -0,0 +1,152 @@
+package com.example.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class ReverseGeocoderTest {
+
+    private final Random random = new Random(1);
+
+    @Test
+    void findsNearestPlaceLikeLinearScan() {
+        List<Place> places = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            places.add(place("P" + i, randomLatitude(), randomLongitude()));
+        }
+        // Places on both sides of the antimeridian and around the poles
+        for (int i = 0; i < 100; i++) {
+            places.add(place("A" + i, randomLatitude(),
+                    180 - random.nextDouble(0.5) * (i % 2 == 0 ? 1 : -1)
+                            - (i % 2 == 0 ? 0 : 360)));
+            places.add(place("N" + i, 90 - random.nextDouble(0.5),
+                    randomLongitude()));
+            places.add(place("S" + i, -90 + random.nextDouble(0.5),
+                    randomLongitude()));
+        }
+        // Cells of about 4 cm, so the cache returns exact answers
+        ReverseGeocoder geocoder = new ReverseGeocoder(places, 1024, 12);
+
+        List<double[]> queries = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            queries.add(new double[] { randomLatitude(), randomLongitude() });
+            queries.add(new double[] { randomLatitude(),
+                    (i % 2 == 0 ? 180 : -180) - random.nextDouble(0.2)
+                            * (i % 2 == 0 ? 1 : -1) });
+            queries.add(new double[] {
+                    (i % 2 == 0 ? 90 : -90)
+                            - random.nextDouble(0.2) * (i % 2 == 0 ? 1 : -1),
+                    randomLongitude() });
+        }
+        queries.add(new double[] { 90, 0 });
+        queries.add(new double[] { -90, 0 });
+        queries.add(new double[] { 0, 180 });
+        queries.add(new double[] { 0, -180 });
+        queries.add(new double[] { 45, 540 });
+
+        for (double[] query : queries) {
+            Place found = geocoder.nearest(query[0], query[1]).orElseThrow();
+            Place expected = linearScan(places, query[0], query[1]);
+            assertEquals(distance(expected, query[0], query[1]),
+                    distance(found, query[0], query[1]), 1e-6,
+                    "Nearest place of " + query[0] + ", " + query[1]);
+        }
+    }
+
+    @Test
+    void positionsInCachedCellGetFirstAnswer() {
+        // A geohash cell of precision 6 is 0.011 degrees of longitude wide
+        // and 0.0055 degrees of latitude high. Two places are on opposite
+        // sides of the middle of the cell around (60.17, 24.94).
+        double cellWidth = 360.0 / (1 << 15);
+        double cellHeight = 180.0 / (1 << 15);
+        double west = Math.floor((24.94 + 180) / cellWidth) * cellWidth - 180;
+        double south = Math.floor((60.17 + 90) / cellHeight) * cellHeight - 90;
+        double latitude = south + cellHeight / 2;
+        double longitude = west + cellWidth / 2;
+        Place westPlace = place("West", latitude, longitude - 0.01);
+        Place eastPlace = place("East", latitude, longitude + 0.01);
+        List<Place> places = List.of(westPlace, eastPlace);
+        double westOfMiddle = longitude - 0.4 * cellWidth;
+        double eastOfMiddle = longitude + 0.4 * cellWidth;
+
+        ReverseGeocoder geocoder = new ReverseGeocoder(places, 1024, 6);
+        assertEquals(Optional.of(westPlace),
+                geocoder.nearest(latitude, westOfMiddle));
+        // Same cell, so the cached place even though the other is nearer
+        assertEquals(Optional.of(westPlace),
+                geocoder.nearest(latitude, eastOfMiddle));
+        assertEquals(eastPlace, linearScan(places, latitude, eastOfMiddle));
+        // The error is bounded by the size of the cell
+        double cellDiagonal = GeoMath.distanceMeters(south, west,
+                south + cellHeight, west + cellWidth);
+        assertTrue(distance(westPlace, latitude, eastOfMiddle)
+                - distance(eastPlace, latitude, eastOfMiddle) < 2
+                        * cellDiagonal);
+
+        // A new geocoder caches the other answer first
+        ReverseGeocoder other = new ReverseGeocoder(places, 1024, 6);
+        assertEquals(Optional.of(eastPlace),
+                other.nearest(latitude, eastOfMiddle));
+        // The neighboring cell is looked up separately
+        assertEquals(Optional.of(eastPlace),
+                other.nearest(latitude, west + cellWidth * 1.5));
+    }
+
+    @Test
+    void findsNothingWithoutPlaces() {
+        ReverseGeocoder geocoder = new ReverseGeocoder(List.of(), 16, 6);
+        assertEquals(Optional.empty(), geocoder.nearest(60.17, 24.94));
+    }
+
+    @Test
+    void findsNothingForInvalidPosition() {
+        ReverseGeocoder geocoder = new ReverseGeocoder(
+                List.of(place("Helsinki", 60.17, 24.94)), 16, 6);
+        assertEquals(Optional.empty(), geocoder.nearest(Double.NaN, 24.94));
+        assertEquals(Optional.empty(),
+                geocoder.nearest(60.17, Double.POSITIVE_INFINITY));
+    }
+
+    private static Place linearScan(List<Place> places, double latitude,
+            double longitude) {
+        Place nearest = null;
+        double nearestDistance = Double.POSITIVE_INFINITY;
+        for (Place place : places) {
+            double distance = distance(place, latitude, longitude);
+            if (distance < nearestDistance) {
+                nearest = place;
+                nearestDistance = distance;
+            }
+        }
+        return nearest;
+    }
+
+    private static double distance(Place place, double latitude,
+            double longitude) {
+        return GeoMath.distanceMeters(place.latitude(), place.longitude(),
+                latitude, longitude);
+    }
+
+    /**
+     * Returns a latitude of a point uniformly distributed on the sphere.
+     */
+    private double randomLatitude() {
+        return Math.toDegrees(Math.asin(random.nextDouble(-1, 1)));
+    }
+
+    private double randomLongitude() {
+        return random.nextDouble(-180, 180);
+    }
+
+    private static Place place(String name, double latitude,
+            double longitude) {
+        return new Place(name, "XX", latitude, longitude, 0);
+    }
+}
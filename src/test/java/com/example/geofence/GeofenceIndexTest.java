@@ -0,0 +1,97 @@
+package com.example.geofence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class GeofenceIndexTest {
+
+    private final Random random = new Random(1);
+
+    @Test
+    void findsSameFencesAsLinearScan() {
+        List<Geofence> fences = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            fences.add(randomFence("f" + i));
+        }
+        GeofenceIndex index = new GeofenceIndex(fences);
+        assertEquals(fences.size(), index.size());
+
+        int matches = 0;
+        for (int i = 0; i < 20_000; i++) {
+            double latitude = 60 + random.nextDouble();
+            double longitude = 24 + random.nextDouble(2);
+            Set<String> expected = new HashSet<>();
+            for (Geofence fence : fences) {
+                if (fence.contains(latitude, longitude)) {
+                    expected.add(fence.getId());
+                }
+            }
+            Set<String> found = new HashSet<>();
+            index.forEachContaining(latitude, longitude,
+                    fence -> assertTrue(found.add(fence.getId()),
+                            "Found twice: " + fence));
+            assertEquals(expected, found, latitude + ", " + longitude);
+            matches += found.size();
+        }
+        // The fences overlap, so many positions are in more than one
+        assertTrue(matches > 20_000, matches + " matches");
+    }
+
+    @Test
+    void excludesHoles() {
+        Geofence fence = Geofence.fromWkt("ring", "Ring",
+                "POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0), "
+                        + "(4 4, 6 4, 6 6, 4 6, 4 4))");
+        GeofenceIndex index = new GeofenceIndex(List.of(fence));
+        assertEquals(List.of(fence), containing(index, 2, 2));
+        assertEquals(List.of(), containing(index, 5, 5));
+        assertEquals(List.of(), containing(index, 11, 5));
+    }
+
+    @Test
+    void emptyIndexFindsNothing() {
+        assertEquals(List.of(), containing(GeofenceIndex.empty(), 60, 24));
+        assertEquals(List.of(),
+                containing(new GeofenceIndex(List.of()), 60, 24));
+    }
+
+    private static List<Geofence> containing(GeofenceIndex index,
+            double latitude, double longitude) {
+        List<Geofence> found = new ArrayList<>();
+        index.forEachContaining(latitude, longitude, found::add);
+        return found;
+    }
+
+    /**
+     * Creates a star-shaped polygon of random size around a random center,
+     * so that it is concave but never self-intersecting.
+     */
+    private Geofence randomFence(String id) {
+        double centerLatitude = 60 + random.nextDouble();
+        double centerLongitude = 24 + random.nextDouble(2);
+        double size = 0.005 + random.nextDouble(0.05);
+        int vertices = 3 + random.nextInt(10);
+        StringBuilder wkt = new StringBuilder("POLYGON ((");
+        String first = null;
+        for (int i = 0; i < vertices; i++) {
+            double angle = 2 * Math.PI * i / vertices;
+            double radius = size * (0.3 + random.nextDouble(0.7));
+            String point = (centerLongitude + radius * 2 * Math.cos(angle))
+                    + " " + (centerLatitude + radius * Math.sin(angle));
+            if (first == null) {
+                first = point;
+            }
+            wkt.append(point).append(", ");
+        }
+        wkt.append(first).append("))");
+        return Geofence.fromWkt(id, "Fence " + id, wkt.toString());
+    }
+}
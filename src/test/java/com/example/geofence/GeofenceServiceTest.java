@@ -0,0 +1,129 @@
+package com.example.geofence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GeofenceServiceTest {
+
+    private static final String DEPOT = "depot\tDepot\tPOLYGON ((24.930 60.165, "
+            + "24.945 60.165, 24.945 60.172, 24.930 60.172, 24.930 60.165))\n";
+    private static final String YARD = "yard\tYard\tPOLYGON ((24.940 60.170, "
+            + "24.950 60.170, 24.950 60.175, 24.940 60.175, 24.940 60.170))\n";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void loadsChangedFile() throws IOException {
+        Path file = directory.resolve("geofences.txt");
+        GeofenceService service = new GeofenceService(file,
+                Duration.ofMinutes(5));
+        assertEquals(0, service.getIndex().size());
+
+        write(file, "# Fences\n\n" + DEPOT, 1);
+        service.reloadIfModified();
+        assertEquals(1, service.getIndex().size());
+
+        write(file, DEPOT + YARD, 2);
+        service.reloadIfModified();
+        assertEquals(2, service.getIndex().size());
+    }
+
+    @Test
+    void keepsPreviousFencesWhenFileIsInvalid() throws IOException {
+        Path file = directory.resolve("geofences.txt");
+        write(file, DEPOT, 1);
+        GeofenceService service = new GeofenceService(file,
+                Duration.ofMinutes(5));
+        GeofenceIndex loaded = service.getIndex();
+
+        write(file, DEPOT + "broken\tBroken\tPOLYGON ((1 2, 3))\n", 2);
+        service.reloadIfModified();
+        assertSame(loaded, service.getIndex());
+
+        write(file, DEPOT + DEPOT, 3);
+        service.reloadIfModified();
+        assertSame(loaded, service.getIndex());
+
+        Files.delete(file);
+        service.reloadIfModified();
+        assertEquals(0, service.getIndex().size());
+    }
+
+    @Test
+    void reloadsWhileLookingUp() throws Exception {
+        Path file = directory.resolve("geofences.txt");
+        write(file, DEPOT, 1);
+        GeofenceService service = new GeofenceService(file,
+                Duration.ofMinutes(5));
+
+        // Inside both fences, so every lookup sees exactly one version
+        Set<Set<String>> versions = Set.of(Set.of("depot"),
+                Set.of("depot", "yard"));
+        AtomicBoolean reloading = new AtomicBoolean(true);
+        ConcurrentLinkedQueue<Object> failures = new ConcurrentLinkedQueue<>();
+        CountDownLatch done = new CountDownLatch(4);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            GeofenceTracker tracker = service.tracker("session" + t);
+            threads.add(new Thread(() -> {
+                try {
+                    long lookups = 0;
+                    while (reloading.get() || lookups < 1000) {
+                        Set<String> found = new HashSet<>();
+                        service.getIndex().forEachContaining(60.171, 24.942,
+                                fence -> found.add(fence.getId()));
+                        if (!versions.contains(found)) {
+                            failures.add(found);
+                        }
+                        // Trackers only ever move between the two versions
+                        tracker.update(60.171, 24.942, lookups);
+                        lookups++;
+                    }
+                } catch (RuntimeException e) {
+                    failures.add(e);
+                } finally {
+                    done.countDown();
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+
+        for (int i = 2; i < 200; i++) {
+            write(file, i % 2 == 0 ? DEPOT + YARD : DEPOT, i);
+            service.reloadIfModified();
+            assertEquals(i % 2 == 0 ? 2 : 1, service.getIndex().size());
+        }
+        reloading.set(false);
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(List.of(), new ArrayList<>(failures));
+    }
+
+    /**
+     * Writes the file with an explicit modification time, since two writes
+     * within the resolution of the file system would look unchanged.
+     */
+    private static void write(Path file, String content, long version)
+            throws IOException {
+        Files.writeString(file, content);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(version * 1000));
+    }
+}
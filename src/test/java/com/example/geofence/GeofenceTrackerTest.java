@@ -0,0 +1,116 @@
+package com.example.geofence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.geofence.GeofenceEvent.Type;
+
+class GeofenceTrackerTest {
+
+    private static final long MINUTE = 60_000;
+
+    private static final Geofence DEPOT = Geofence.fromWkt("depot", "Depot",
+            "POLYGON ((24.930 60.165, 24.945 60.165, 24.945 60.172, "
+                    + "24.930 60.172, 24.930 60.165))");
+    private static final Geofence YARD = Geofence.fromWkt("yard", "Yard",
+            "POLYGON ((24.940 60.170, 24.950 60.170, 24.950 60.175, "
+                    + "24.940 60.175, 24.940 60.170))");
+
+    @TempDir
+    Path directory;
+
+    private GeofenceService service;
+    private GeofenceTracker tracker;
+    private final List<GeofenceEvent> published = new ArrayList<>();
+
+    @BeforeEach
+    void createService() {
+        service = new GeofenceService(directory.resolve("geofences.txt"),
+                Duration.ofMinutes(5));
+        service.setIndex(new GeofenceIndex(List.of(DEPOT, YARD)));
+        service.addListener(published::add);
+        tracker = service.tracker("session");
+    }
+
+    @Test
+    void reportsEnterDwellAndExit() {
+        assertEquals(List.of(), types(tracker.update(60.160, 24.935, 0)));
+        assertEquals(List.of(Type.ENTER),
+                types(tracker.update(60.167, 24.935, MINUTE)));
+        assertEquals(List.of(DEPOT), tracker.getInside());
+        assertEquals(List.of(),
+                types(tracker.update(60.168, 24.936, 5 * MINUTE)));
+        assertEquals(List.of(Type.DWELL),
+                types(tracker.update(60.168, 24.936, 6 * MINUTE)));
+        // Dwelling is reported once per visit
+        assertEquals(List.of(),
+                types(tracker.update(60.168, 24.936, 20 * MINUTE)));
+        assertEquals(List.of(Type.EXIT),
+                types(tracker.update(60.160, 24.935, 21 * MINUTE)));
+        assertEquals(List.of(), tracker.getInside());
+
+        // A new visit starts over
+        assertEquals(List.of(Type.ENTER),
+                types(tracker.update(60.167, 24.935, 22 * MINUTE)));
+        assertEquals(List.of(),
+                types(tracker.update(60.167, 24.935, 26 * MINUTE)));
+        assertEquals(List.of(Type.DWELL),
+                types(tracker.update(60.167, 24.935, 27 * MINUTE)));
+
+        assertEquals(List.of(Type.ENTER, Type.DWELL, Type.EXIT, Type.ENTER,
+                Type.DWELL), types(published));
+        published.forEach(event -> assertEquals("session",
+                event.sessionId()));
+    }
+
+    @Test
+    void movesBetweenOverlappingFences() {
+        tracker.update(60.167, 24.935, 0);
+        List<GeofenceEvent> events = tracker.update(60.171, 24.942, MINUTE);
+        assertEquals(List.of(Type.ENTER), types(events));
+        assertEquals(YARD, events.get(0).fence());
+        assertEquals(2, tracker.getInside().size());
+
+        events = tracker.update(60.174, 24.948, 2 * MINUTE);
+        assertEquals(List.of(Type.EXIT), types(events));
+        assertEquals(DEPOT, events.get(0).fence());
+        assertEquals(List.of(YARD), tracker.getInside());
+    }
+
+    @Test
+    void keepsVisitWhenFenceIsReloadedWithNewShape() {
+        tracker.update(60.167, 24.935, 0);
+        Geofence larger = Geofence.fromWkt("depot", "Main depot",
+                "POLYGON ((24.920 60.160, 24.950 60.160, 24.950 60.180, "
+                        + "24.920 60.180, 24.920 60.160))");
+        service.setIndex(new GeofenceIndex(List.of(larger)));
+
+        assertEquals(List.of(), types(tracker.update(60.167, 24.935, MINUTE)));
+        assertEquals(List.of(larger), tracker.getInside());
+        // The dwell time counts from the original entry
+        assertEquals(List.of(Type.DWELL),
+                types(tracker.update(60.167, 24.935, 5 * MINUTE)));
+    }
+
+    @Test
+    void exitsFenceRemovedByReload() {
+        tracker.update(60.167, 24.935, 0);
+        service.setIndex(GeofenceIndex.empty());
+
+        List<GeofenceEvent> events = tracker.update(60.167, 24.935, MINUTE);
+        assertEquals(List.of(Type.EXIT), types(events));
+        assertEquals(DEPOT, events.get(0).fence());
+    }
+
+    private static List<Type> types(List<GeofenceEvent> events) {
+        return events.stream().map(GeofenceEvent::type).toList();
+    }
+}
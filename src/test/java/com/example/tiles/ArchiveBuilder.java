@@ -0,0 +1,201 @@
+package com.example.tiles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import com.example.tiles.PmTilesArchive.Compression;
+import com.example.tiles.PmTilesArchive.TileType;
+
+/**
+ * Writes small PMTiles archives for tests.
+ * <p>
+ * Tiles can be added in any order. Runs of tiles share their data, and the
+ * tiles can be split into leaf directories of a given size.
+ */
+class ArchiveBuilder {
+
+    /**
+     * A directory entry. A run length of zero points to a leaf directory.
+     */
+    private record Entry(long tileId, int runLength, long offset,
+            int length) {
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final ByteArrayOutputStream tileData = new ByteArrayOutputStream();
+    private Compression internalCompression = Compression.NONE;
+    private Compression tileCompression = Compression.NONE;
+    private TileType tileType = TileType.PNG;
+    private int minZoom = 0;
+    private int maxZoom = 14;
+    private String metadata;
+    private int leafSize;
+
+    ArchiveBuilder internalCompression(Compression compression) {
+        internalCompression = compression;
+        return this;
+    }
+
+    /**
+     * Sets the compression of the tiles. The tile data is stored as given.
+     */
+    ArchiveBuilder tileCompression(Compression compression) {
+        tileCompression = compression;
+        return this;
+    }
+
+    ArchiveBuilder tileType(TileType type) {
+        tileType = type;
+        return this;
+    }
+
+    ArchiveBuilder zoom(int min, int max) {
+        minZoom = min;
+        maxZoom = max;
+        return this;
+    }
+
+    ArchiveBuilder metadata(String json) {
+        metadata = json;
+        return this;
+    }
+
+    /**
+     * Puts the entries into leaf directories of this many entries each,
+     * referenced from the root directory.
+     */
+    ArchiveBuilder leafSize(int entries) {
+        leafSize = entries;
+        return this;
+    }
+
+    ArchiveBuilder tile(int z, int x, int y, byte[] data) {
+        return run(PmTilesArchive.tileId(z, x, y), 1, data);
+    }
+
+    /**
+     * Adds tiles with consecutive ids that all have the same data.
+     */
+    ArchiveBuilder run(long tileId, int runLength, byte[] data) {
+        entries.add(new Entry(tileId, runLength, tileData.size(),
+                data.length));
+        tileData.writeBytes(data);
+        return this;
+    }
+
+    Path write(Path file) {
+        entries.sort(Comparator.comparingLong(Entry::tileId));
+        byte[] root;
+        ByteArrayOutputStream leaves = new ByteArrayOutputStream();
+        if (leafSize > 0) {
+            List<Entry> rootEntries = new ArrayList<>();
+            for (int i = 0; i < entries.size(); i += leafSize) {
+                List<Entry> leafEntries = entries.subList(i,
+                        Math.min(i + leafSize, entries.size()));
+                byte[] leaf = compress(directory(leafEntries));
+                rootEntries.add(new Entry(leafEntries.get(0).tileId(), 0,
+                        leaves.size(), leaf.length));
+                leaves.writeBytes(leaf);
+            }
+            root = compress(directory(rootEntries));
+        } else {
+            root = compress(directory(entries));
+        }
+        byte[] meta = metadata == null ? new byte[0]
+                : compress(metadata.getBytes(StandardCharsets.UTF_8));
+
+        long rootOffset = 127;
+        long metadataOffset = rootOffset + root.length;
+        long leavesOffset = metadataOffset + meta.length;
+        long tileDataOffset = leavesOffset + leaves.size();
+        ByteBuffer header = ByteBuffer.allocate(127)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        header.put("PMTiles".getBytes(StandardCharsets.US_ASCII));
+        header.put((byte) 3);
+        header.putLong(8, rootOffset);
+        header.putLong(16, root.length);
+        header.putLong(24, metadataOffset);
+        header.putLong(32, meta.length);
+        header.putLong(40, leavesOffset);
+        header.putLong(48, leaves.size());
+        header.putLong(56, tileDataOffset);
+        header.putLong(64, tileData.size());
+        header.put(97, (byte) internalCompression.ordinal());
+        header.put(98, (byte) tileCompression.ordinal());
+        header.put(99, (byte) tileType.ordinal());
+        header.put(100, (byte) minZoom);
+        header.put(101, (byte) maxZoom);
+        header.putInt(102, -1_800_000_000);
+        header.putInt(106, -850_000_000);
+        header.putInt(110, 1_800_000_000);
+        header.putInt(114, 850_000_000);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(header.array());
+        out.writeBytes(root);
+        out.writeBytes(meta);
+        out.writeBytes(leaves.toByteArray());
+        out.writeBytes(tileData.toByteArray());
+        try {
+            return Files.write(file, out.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] compress(byte[] data) {
+        return internalCompression == Compression.GZIP ? gzip(data) : data;
+    }
+
+    static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] directory(List<Entry> entries) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, entries.size());
+        long lastId = 0;
+        for (Entry entry : entries) {
+            writeVarint(out, entry.tileId() - lastId);
+            lastId = entry.tileId();
+        }
+        for (Entry entry : entries) {
+            writeVarint(out, entry.runLength());
+        }
+        for (Entry entry : entries) {
+            writeVarint(out, entry.length());
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            Entry previous = i > 0 ? entries.get(i - 1) : null;
+            // Zero for an entry directly after the previous one
+            writeVarint(out, previous != null && entry.offset() == previous
+                    .offset() + previous.length() ? 0 : entry.offset() + 1);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while (value >= 0x80) {
+            out.write((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
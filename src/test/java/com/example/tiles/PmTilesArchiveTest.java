@@ -0,0 +1,216 @@
+package com.example.tiles;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.tiles.PmTilesArchive.Compression;
+import com.example.tiles.PmTilesArchive.TileType;
+
+class PmTilesArchiveTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void tileIdsFollowHilbertCurve() {
+        assertEquals(0, PmTilesArchive.tileId(0, 0, 0));
+        assertEquals(1, PmTilesArchive.tileId(1, 0, 0));
+        assertEquals(2, PmTilesArchive.tileId(1, 0, 1));
+        assertEquals(3, PmTilesArchive.tileId(1, 1, 1));
+        assertEquals(4, PmTilesArchive.tileId(1, 1, 0));
+        assertEquals(5, PmTilesArchive.tileId(2, 0, 0));
+        // From the test suite of the reference implementation
+        assertEquals(19_078_479, PmTilesArchive.tileId(12, 3423, 1763));
+
+        for (int z = 0; z <= 6; z++) {
+            long first = ((1L << 2 * z) - 1) / 3;
+            int size = 1 << z;
+            Map<Long, int[]> tiles = new HashMap<>();
+            for (int x = 0; x < size; x++) {
+                for (int y = 0; y < size; y++) {
+                    tiles.put(PmTilesArchive.tileId(z, x, y),
+                            new int[] { x, y });
+                }
+            }
+            // Every id of the zoom level once, each tile next to the
+            // previous one
+            assertEquals(size * size, tiles.size());
+            int[] previous = tiles.get(first);
+            for (long id = first + 1; id < first + size * size; id++) {
+                int[] tile = tiles.get(id);
+                assertEquals(1, Math.abs(tile[0] - previous[0])
+                        + Math.abs(tile[1] - previous[1]), "Tile " + id);
+                previous = tile;
+            }
+        }
+        // Ids of the deepest zoom level do not overflow
+        long lowest = ((1L << 52) - 1) / 3;
+        long highest = ((1L << 54) - 1) / 3 - 1;
+        int last = (1 << 26) - 1;
+        for (long id : new long[] { PmTilesArchive.tileId(26, 0, 0),
+                PmTilesArchive.tileId(26, last, 0),
+                PmTilesArchive.tileId(26, 0, last),
+                PmTilesArchive.tileId(26, last, last) }) {
+            assertTrue(id >= lowest && id <= highest, "Tile " + id);
+        }
+    }
+
+    @Test
+    void findsTilesInRootDirectory() {
+        Path file = new ArchiveBuilder().zoom(0, 3)
+                .tile(0, 0, 0, bytes("world"))
+                .tile(1, 0, 1, bytes("southwest"))
+                // Tiles 21 to 23 of zoom level 3 are all sea
+                .run(21, 3, bytes("sea"))
+                .tile(3, 7, 7, bytes("corner"))
+                .write(directory.resolve("root.pmtiles"));
+        PmTilesArchive archive = new PmTilesArchive(file, 16);
+
+        assertTile(archive, 0, 0, 0, "world");
+        assertTile(archive, 1, 0, 1, "southwest");
+        assertTile(archive, 3, 7, 7, "corner");
+        assertEquals(Optional.empty(), archive.tile(1, 0, 0));
+        assertEquals(Optional.empty(), archive.tile(1, 1, 1));
+        // Outside of the zoom levels and of the tile grid
+        assertEquals(Optional.empty(), archive.tile(4, 0, 0));
+        assertEquals(Optional.empty(), archive.tile(1, 2, 0));
+        assertEquals(Optional.empty(), archive.tile(1, 0, -1));
+
+        int sea = 0;
+        String seaTag = null;
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                long id = PmTilesArchive.tileId(3, x, y);
+                Optional<PmTilesArchive.Tile> tile = archive.tile(3, x, y);
+                if (id >= 21 && id < 24) {
+                    assertEquals("sea", text(tile.orElseThrow()));
+                    // The tiles of a run are one entity
+                    if (seaTag != null) {
+                        assertEquals(seaTag, tile.get().etag());
+                    }
+                    seaTag = tile.get().etag();
+                    sea++;
+                } else if (x != 7 || y != 7) {
+                    assertEquals(Optional.empty(), tile, "Tile " + id);
+                }
+            }
+        }
+        assertEquals(3, sea);
+        assertNotEquals(seaTag,
+                archive.tile(0, 0, 0).orElseThrow().etag());
+    }
+
+    @Test
+    void findsTilesInLeafDirectories() {
+        ArchiveBuilder builder = new ArchiveBuilder()
+                .internalCompression(Compression.GZIP).zoom(0, 4)
+                .leafSize(5);
+        // Every other tile of zoom level 4
+        for (int x = 0; x < 16; x++) {
+            for (int y = 0; y < 16; y++) {
+                if ((x + y) % 2 == 0) {
+                    builder.tile(4, x, y, bytes(x + "/" + y));
+                }
+            }
+        }
+        PmTilesArchive archive = new PmTilesArchive(
+                builder.write(directory.resolve("leaves.pmtiles")), 4);
+
+        // Twice, the second time from the cache
+        for (int pass = 0; pass < 2; pass++) {
+            for (int x = 0; x < 16; x++) {
+                for (int y = 0; y < 16; y++) {
+                    if ((x + y) % 2 == 0) {
+                        assertTile(archive, 4, x, y, x + "/" + y);
+                    } else {
+                        assertEquals(Optional.empty(), archive.tile(4, x, y));
+                    }
+                }
+            }
+        }
+        assertEquals(Optional.empty(), archive.tile(3, 0, 0));
+    }
+
+    @Test
+    void readsHeaderAndMetadata() {
+        Path file = new ArchiveBuilder().internalCompression(Compression.GZIP)
+                .tileCompression(Compression.GZIP).tileType(TileType.MVT)
+                .zoom(2, 9)
+                .metadata("{\"name\":\"Test\",\"attribution\":"
+                        + "\"\\u00a9 OpenStreetMap contributors\"}")
+                .tile(2, 1, 1, bytes("tile"))
+                .write(directory.resolve("metadata.pmtiles"));
+        PmTilesArchive archive = new PmTilesArchive(file, 16);
+
+        assertEquals(TileType.MVT, archive.getTileType());
+        assertEquals(Compression.GZIP, archive.getTileCompression());
+        assertEquals(2, archive.getMinZoom());
+        assertEquals(9, archive.getMaxZoom());
+        assertArrayEquals(new double[] { -180, -85, 180, 85 },
+                archive.getBounds());
+        assertEquals(Optional.of("\u00a9 OpenStreetMap contributors"),
+                archive.getAttribution());
+    }
+
+    @Test
+    void hasNoAttributionWithoutMetadata() {
+        PmTilesArchive archive = new PmTilesArchive(new ArchiveBuilder()
+                .tile(0, 0, 0, bytes("world"))
+                .write(directory.resolve("plain.pmtiles")), 16);
+        assertEquals(Optional.empty(), archive.getAttribution());
+
+        archive = new PmTilesArchive(new ArchiveBuilder()
+                .metadata("{\"attribution\":\" \"}")
+                .tile(0, 0, 0, bytes("world"))
+                .write(directory.resolve("blank.pmtiles")), 16);
+        assertEquals(Optional.empty(), archive.getAttribution());
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        Path file = directory.resolve("other.pmtiles");
+        Files.write(file, new byte[200]);
+        assertThrows(IllegalArgumentException.class,
+                () -> new PmTilesArchive(file, 16));
+
+        Path brotli = new ArchiveBuilder()
+                .internalCompression(Compression.BROTLI)
+                .write(directory.resolve("brotli.pmtiles"));
+        assertThrows(IllegalArgumentException.class,
+                () -> new PmTilesArchive(brotli, 16));
+    }
+
+    private static void assertTile(PmTilesArchive archive, int z, int x,
+            int y, String expected) {
+        PmTilesArchive.Tile tile = archive.tile(z, x, y).orElseThrow(
+                () -> new AssertionError("No tile " + z + "/" + x + "/" + y));
+        assertEquals(expected, text(tile));
+        assertTrue(tile.data().isReadOnly());
+        assertTrue(tile.etag().startsWith("\"") && tile.etag().endsWith("\""),
+                tile.etag());
+    }
+
+    private static String text(PmTilesArchive.Tile tile) {
+        ByteBuffer data = tile.data().duplicate();
+        return StandardCharsets.UTF_8.decode(data).toString();
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
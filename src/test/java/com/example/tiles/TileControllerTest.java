@@ -0,0 +1,170 @@
+package com.example.tiles;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.example.tiles.PmTilesArchive.Compression;
+import com.example.tiles.PmTilesArchive.TileType;
+
+class TileControllerTest {
+
+    private static final byte[] TILE = "vector tile"
+            .getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void acceptsListedEncodings() {
+        assertTrue(TileController.accepts("gzip", "gzip"));
+        assertTrue(TileController.accepts("deflate, gzip;q=0.5", "gzip"));
+        assertTrue(TileController.accepts("GZIP", "gzip"));
+        assertTrue(TileController.accepts("br;q=1.0, zstd", "zstd"));
+        assertTrue(TileController.accepts("gzip;q=0.001", "gzip"));
+        // Old name of gzip
+        assertTrue(TileController.accepts("x-gzip", "gzip"));
+        assertFalse(TileController.accepts("x-gzip", "br"));
+
+        assertFalse(TileController.accepts(null, "gzip"));
+        assertFalse(TileController.accepts("", "gzip"));
+        assertFalse(TileController.accepts("identity", "gzip"));
+        assertFalse(TileController.accepts("gzip, deflate", "br"));
+        assertFalse(TileController.accepts("gzips", "gzip"));
+    }
+
+    @Test
+    void rejectsEncodingsWithZeroQuality() {
+        assertFalse(TileController.accepts("gzip;q=0", "gzip"));
+        assertFalse(TileController.accepts("gzip; Q=0.000", "gzip"));
+        assertFalse(TileController.accepts("br, gzip;q=0.0", "gzip"));
+    }
+
+    @Test
+    void acceptsWildcardUnlessExcluded() {
+        assertTrue(TileController.accepts("*", "br"));
+        assertTrue(TileController.accepts("identity, *;q=0.1", "zstd"));
+        assertFalse(TileController.accepts("*;q=0", "gzip"));
+        // A listed encoding takes precedence over the wildcard
+        assertFalse(TileController.accepts("gzip;q=0, *", "gzip"));
+        assertTrue(TileController.accepts("*;q=0, gzip", "gzip"));
+    }
+
+    @Test
+    void sendsCompressedTileAsStored() throws IOException {
+        TileController controller = controller(Compression.GZIP);
+        byte[] stored = ArchiveBuilder.gzip(TILE);
+
+        MockHttpServletResponse response = get(controller, null,
+                "gzip, deflate, br");
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(stored, response.getContentAsByteArray());
+        assertEquals(stored.length, response.getContentLength());
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        assertEquals(TileType.MVT.getContentType(),
+                response.getContentType());
+        assertEquals("public, max-age=3600",
+                response.getHeader("Cache-Control"));
+    }
+
+    @Test
+    void decompressesGzipTileForOtherClients() throws IOException {
+        TileController controller = controller(Compression.GZIP);
+
+        MockHttpServletResponse response = get(controller, null, null);
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(TILE, response.getContentAsByteArray());
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+
+        // The two representations have different tags
+        String identity = response.getHeader("ETag");
+        String gzip = get(controller, null, "gzip").getHeader("ETag");
+        assertTrue(identity.endsWith("-identity\""), identity);
+        assertNotEquals(gzip, identity);
+        assertArrayEquals(TILE,
+                get(controller, null, "br;q=1, gzip;q=0")
+                        .getContentAsByteArray());
+    }
+
+    @Test
+    void answersNotAcceptableForOtherEncodings() throws IOException {
+        TileController controller = controller(Compression.BROTLI);
+
+        MockHttpServletResponse response = get(controller, null, "gzip");
+        assertEquals(406, response.getStatus());
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        assertEquals(0, response.getContentAsByteArray().length);
+
+        response = get(controller, null, "gzip, br");
+        assertEquals(200, response.getStatus());
+        assertEquals("br", response.getHeader("Content-Encoding"));
+    }
+
+    @Test
+    void sendsUncompressedTileWithoutVary() throws IOException {
+        TileController controller = controller(Compression.NONE);
+
+        MockHttpServletResponse response = get(controller, null, null);
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(TILE, response.getContentAsByteArray());
+        assertNull(response.getHeader("Content-Encoding"));
+        assertNull(response.getHeader("Vary"));
+    }
+
+    @Test
+    void answersRevalidationWithNotModified() throws IOException {
+        TileController controller = controller(Compression.GZIP);
+        String gzip = get(controller, null, "gzip").getHeader("ETag");
+        String identity = get(controller, null, null).getHeader("ETag");
+
+        MockHttpServletResponse response = get(controller, gzip, "gzip");
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(304, get(controller, identity, null).getStatus());
+        assertEquals(304, get(controller, "*", null).getStatus());
+        // A tag of the other representation does not match
+        assertEquals(200, get(controller, identity, "gzip").getStatus());
+        assertEquals(200, get(controller, gzip, null).getStatus());
+    }
+
+    @Test
+    void answersNotFoundForMissingTile() throws IOException {
+        TileController controller = controller(Compression.GZIP);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.tile(1, 1, 1, null, "gzip", response);
+        assertEquals(404, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    private TileController controller(Compression compression) {
+        byte[] stored = compression == Compression.GZIP
+                ? ArchiveBuilder.gzip(TILE)
+                : TILE;
+        Path file = new ArchiveBuilder().tileType(TileType.MVT)
+                .tileCompression(compression).tile(1, 0, 1, stored)
+                .write(directory.resolve(compression + ".pmtiles"));
+        return new TileController(new PmTilesArchive(file, 16),
+                Duration.ofHours(1));
+    }
+
+    private static MockHttpServletResponse get(TileController controller,
+            String ifNoneMatch, String acceptEncoding) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.tile(1, 0, 1, ifNoneMatch, acceptEncoding, response);
+        return response;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.track;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+class PositionCacheTest {
+
+    private static final Fix HELSINKI = fix(60.1699, 24.9384);
+    private static final Fix NEW_YORK = fix(40.7128, -74.0060);
+
+    private final PositionCache cache = new PositionCache();
+
+    @Test
+    void findsNothingWhenEmpty() {
+        assertEquals(Optional.empty(), cache.find(Long.MAX_VALUE, false));
+    }
+
+    @Test
+    void findsLatestPosition() {
+        long before = System.currentTimeMillis();
+        cache.put(HELSINKI, false);
+        cache.put(NEW_YORK, false);
+
+        PositionCache.Entry entry = cache.find(60_000, false).orElseThrow();
+        assertSame(NEW_YORK, entry.fix());
+        assertTrue(entry.receivedAt() >= before);
+        assertTrue(entry.age() >= 0 && entry.age() < 60_000);
+    }
+
+    @Test
+    void skipsPositionOlderThanMaximumAge() throws InterruptedException {
+        cache.put(HELSINKI, true);
+        Thread.sleep(50);
+
+        assertEquals(Optional.empty(), cache.find(10, true));
+        assertEquals(Optional.empty(), cache.find(0, false));
+        assertSame(HELSINKI, cache.find(60_000, true).orElseThrow().fix());
+    }
+
+    @Test
+    void usesLowAccuracyPositionOnlyForLowAccuracyRequest() {
+        cache.put(HELSINKI, false);
+        assertEquals(Optional.empty(), cache.find(60_000, true));
+        assertSame(HELSINKI, cache.find(60_000, false).orElseThrow().fix());
+
+        // A high accuracy position serves both
+        cache.put(NEW_YORK, true);
+        assertSame(NEW_YORK, cache.find(60_000, true).orElseThrow().fix());
+        assertSame(NEW_YORK, cache.find(60_000, false).orElseThrow().fix());
+    }
+
+    @Test
+    void clearForgetsPosition() {
+        cache.put(HELSINKI, true);
+        cache.clear();
+        assertEquals(Optional.empty(), cache.find(Long.MAX_VALUE, false));
+    }
+
+    private static Fix fix(double latitude, double longitude) {
+        return new Fix(latitude, longitude, 10, null, null, null, null,
+                1_700_000_000_000L);
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.track;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.geo.GeoMath;
+import com.example.track.PositionFilter.Outcome;
+
+class PositionFilterTest {
+
+    private static final double LATITUDE = 60.1699;
+    private static final double LONGITUDE = 24.9384;
+    private static final double ACCURACY = 10;
+    /**
+     * Standard deviation of a fix with the accuracy, which is a 95%
+     * confidence radius.
+     */
+    private static final double SIGMA = ACCURACY / 2.448;
+    private static final long START = 1_700_000_000_000L;
+
+    private final Random random = new Random(1);
+    private final PositionFilter filter = new PositionFilter();
+
+    @Test
+    void suppressesJitterOfDeviceStandingStill() {
+        int suppressed = 0;
+        for (int i = 0; i < 600; i++) {
+            Outcome outcome = filter.add(jittered(0, 0, i));
+            assertTrue(outcome != Outcome.REJECTED, "Fix " + i);
+            if (outcome == Outcome.SUPPRESSED) {
+                suppressed++;
+            }
+        }
+        // An order of magnitude fewer updates than fixes
+        assertTrue(suppressed >= 0.9 * 600, suppressed + " suppressed");
+        assertTrue(distanceFromStart(filter.current()) < ACCURACY);
+    }
+
+    @Test
+    void rejectsSingleOutlier() {
+        for (int i = 0; i < 60; i++) {
+            filter.add(jittered(0, 0, i));
+        }
+        Fix current = filter.current();
+
+        assertEquals(Outcome.REJECTED, filter.add(fix(500, 0, 60)));
+        assertEquals(current, filter.current());
+        assertTrue(filter.add(jittered(0, 0, 61)) != Outcome.REJECTED);
+        assertTrue(distanceFromStart(filter.current()) < ACCURACY);
+    }
+
+    @Test
+    void rejectsFixOlderThanPrevious() {
+        filter.add(fix(0, 0, 10));
+        assertEquals(Outcome.REJECTED, filter.add(fix(0, 0, 9)));
+    }
+
+    @Test
+    void acceptsWalkingAwaySoon() {
+        for (int i = 0; i < 60; i++) {
+            filter.add(jittered(0, 0, i));
+        }
+        // Walking north at 1.4 m/s
+        int firstAccepted = -1;
+        for (int i = 0; i < 120; i++) {
+            Outcome outcome = filter.add(jittered(1.4 * (i + 1), 0, 60 + i));
+            assertTrue(outcome != Outcome.REJECTED, "Fix " + i);
+            if (outcome == Outcome.ACCEPTED && firstAccepted < 0) {
+                firstAccepted = i;
+            }
+        }
+        assertTrue(firstAccepted >= 0 && firstAccepted < 15,
+                "First accepted after " + firstAccepted + " fixes");
+        // Follows the walk, not lagging further than the error radius
+        double walked = 1.4 * 120;
+        assertEquals(walked, distanceFromStart(filter.current()),
+                2 * ACCURACY);
+    }
+
+    @Test
+    void acceptsJumpAfterConsecutiveOutliers() {
+        for (int i = 0; i < 60; i++) {
+            filter.add(jittered(0, 0, i));
+        }
+        // Out of a tunnel, two kilometers further
+        assertEquals(Outcome.REJECTED, filter.add(fix(2000, 0, 60)));
+        assertEquals(Outcome.REJECTED, filter.add(fix(2000, 0, 61)));
+        assertEquals(Outcome.ACCEPTED, filter.add(fix(2000, 0, 62)));
+        assertEquals(2000, distanceFromStart(filter.current()), 1);
+    }
+
+    private Fix jittered(double northMeters, double eastMeters, int second) {
+        return fix(northMeters + random.nextGaussian() * SIGMA,
+                eastMeters + random.nextGaussian() * SIGMA, second);
+    }
+
+    private static Fix fix(double northMeters, double eastMeters,
+            int second) {
+        return new Fix(LATITUDE + northMeters / GeoMath.METERS_PER_DEGREE,
+                LONGITUDE + eastMeters / (GeoMath.METERS_PER_DEGREE
+                        * Math.cos(Math.toRadians(LATITUDE))),
+                ACCURACY, null, null, null, null, START + second * 1000L);
+    }
+
+    private static double distanceFromStart(Fix fix) {
+        return GeoMath.distanceMeters(LATITUDE, LONGITUDE, fix.latitude(),
+                fix.longitude());
+    }
+}
@@ -0,0 +1,413 @@
+package com.example.track;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import com.example.track.TrackExport.Format;
+
+class TrackExportTest {
+
+    private static final long START = 1_700_000_000_000L;
+    private static final int COUNT = 100_000;
+    /**
+     * Characters that need escaping in XML or JSON, a control character that
+     * XML does not allow, and characters outside of ASCII and of the BMP.
+     */
+    private static final String NAME = "Tom & Jerry's <\"walk\"> \\ /\t\r\n"
+            + "\u0001 \u00FC\u20AC\uD83D\uDDFA";
+    private static final Pattern COORDINATE = Pattern
+            .compile("-?\\d{1,3}\\.\\d{7}");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    void gpxRoundTrip() throws Exception {
+        TrackStore store = store();
+        long[][] positions = record(store);
+        Path file = directory.resolve("track.gpx");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            assertEquals(COUNT, TrackExport.write(store, "track", NAME,
+                    Format.GPX, false, out));
+        }
+
+        int index = 0;
+        try (InputStream in = Files.newInputStream(file)) {
+            XMLStreamReader reader = XMLInputFactory.newFactory()
+                    .createXMLStreamReader(in);
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                switch (reader.getLocalName()) {
+                case "name" -> assertEquals(
+                        NAME.replace('\u0001', '\uFFFD'),
+                        reader.getElementText());
+                case "trkpt" -> {
+                    long[] position = positions[index];
+                    assertCoordinate(position[1],
+                            reader.getAttributeValue(null, "lat"));
+                    assertCoordinate(position[2],
+                            reader.getAttributeValue(null, "lon"));
+                }
+                case "time" -> assertEquals(
+                        Instant.ofEpochMilli(positions[index++][0]),
+                        Instant.parse(reader.getElementText()));
+                default -> {
+                }
+                }
+            }
+        }
+        assertEquals(COUNT, index);
+    }
+
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    void geoJsonRoundTrip() throws Exception {
+        TrackStore store = store();
+        long[][] positions = record(store);
+        Path file = directory.resolve("track.geojson.gz");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            assertEquals(COUNT, TrackExport.write(store, "track", NAME,
+                    Format.GEOJSON, true, out));
+        }
+
+        Map<?, ?> feature = parseGeoJson(file);
+        assertEquals("Feature", feature.get("type"));
+        Map<?, ?> properties = (Map<?, ?>) feature.get("properties");
+        assertEquals(NAME, properties.get("name"));
+        List<?> times = (List<?>) ((Map<?, ?>) properties
+                .get("coordinateProperties")).get("times");
+        Map<?, ?> geometry = (Map<?, ?>) feature.get("geometry");
+        assertEquals("LineString", geometry.get("type"));
+        List<?> coordinates = (List<?>) geometry.get("coordinates");
+        assertEquals(COUNT, times.size());
+        assertEquals(COUNT, coordinates.size());
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(Instant.ofEpochMilli(positions[i][0]),
+                    Instant.parse((String) times.get(i)));
+            List<?> coordinate = (List<?>) coordinates.get(i);
+            assertEquals(2, coordinate.size());
+            assertCoordinate(positions[i][2], (String) coordinate.get(0));
+            assertCoordinate(positions[i][1], (String) coordinate.get(1));
+        }
+    }
+
+    @Test
+    void geoJsonLeavesOutPositionsAppendedBetweenPasses() throws Exception {
+        // Appends a position after the pass writing the times
+        TrackStore store = new TrackStore(directory.resolve("tracks"),
+                DataSize.ofKilobytes(64), Duration.ofDays(1),
+                DataSize.ofGigabytes(1)) {
+            private int replays;
+
+            @Override
+            public long replay(String trackId, TrackVisitor visitor) {
+                long count = super.replay(trackId, visitor);
+                if (replays++ == 0) {
+                    try (TrackWriter writer = open(trackId)) {
+                        writer.append(START + 1000 * 1000L, 1, 1, 5);
+                    }
+                }
+                return count;
+            }
+        };
+        try (TrackWriter writer = store.open("track")) {
+            for (int i = 0; i < 1000; i++) {
+                writer.append(START + i * 1000L, 60.17, 24.94, 5);
+            }
+        }
+        Path file = directory.resolve("track.geojson");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            assertEquals(1000, TrackExport.write(store, "track", "Track",
+                    Format.GEOJSON, false, out));
+        }
+
+        Map<?, ?> feature = parseGeoJson(file);
+        List<?> times = (List<?>) ((Map<?, ?>) ((Map<?, ?>) feature
+                .get("properties")).get("coordinateProperties")).get("times");
+        List<?> coordinates = (List<?>) ((Map<?, ?>) feature.get("geometry"))
+                .get("coordinates");
+        assertEquals(1000, times.size());
+        assertEquals(1000, coordinates.size());
+        assertEquals(List.of("24.9400000", "60.1700000"),
+                coordinates.get(999));
+        assertEquals(1001, store.replay("track",
+                (timestamp, latitude, longitude, accuracy) -> {
+                }));
+    }
+
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    void exportDoesNotKeepPositionsOnHeap() throws IOException {
+        TrackStore store = store();
+        record(store);
+        for (Format format : Format.values()) {
+            HeapSampler out = new HeapSampler();
+            TrackExport.write(store, "track", NAME, format, false, out);
+            // The document is several megabytes, the positions even more as
+            // objects
+            assertTrue(out.written > 2_000_000, out.written + " bytes");
+            assertTrue(out.samples.size() > 2);
+            long first = out.samples.get(0);
+            long max = out.samples.stream().mapToLong(Long::longValue).max()
+                    .getAsLong();
+            assertTrue(max - first < 1_000_000, format + " grew the heap by "
+                    + (max - first) + " bytes");
+        }
+    }
+
+    /**
+     * Discards the written bytes, sampling the used heap after a garbage
+     * collection every megabyte.
+     */
+    private static class HeapSampler extends OutputStream {
+
+        private final List<Long> samples = new ArrayList<>();
+        private long written;
+
+        @Override
+        public void write(int b) {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (written / 1_000_000 != (written + len) / 1_000_000) {
+                System.gc();
+                Runtime runtime = Runtime.getRuntime();
+                samples.add(runtime.totalMemory() - runtime.freeMemory());
+            }
+            written += len;
+        }
+    }
+
+    /**
+     * Records a track of positions around the world, including negative
+     * coordinates, both sides of the antimeridian and fractions down to the
+     * stored precision.
+     *
+     * @return the timestamps and fixed latitudes and longitudes
+     */
+    private static long[][] record(TrackStore store) {
+        Random random = new Random(1);
+        long[][] positions = new long[COUNT][];
+        try (TrackWriter writer = store.open("track")) {
+            for (int i = 0; i < COUNT; i++) {
+                double latitude;
+                double longitude;
+                switch (i % 4) {
+                case 0 -> {
+                    // Within a few units of the last decimal from zero
+                    latitude = (random.nextInt(21) - 10) * 1e-7;
+                    longitude = (random.nextInt(21) - 10) * 1e-7;
+                }
+                case 1 -> {
+                    latitude = -random.nextDouble(90);
+                    longitude = 180 - random.nextDouble(1e-5)
+                            - (i % 8 == 1 ? 0 : 360 - 2e-5);
+                }
+                default -> {
+                    latitude = random.nextDouble(-90, 90);
+                    longitude = random.nextDouble(-180, 180);
+                }
+                }
+                long timestamp = START + i * 1000L + random.nextInt(1000);
+                writer.append(timestamp, latitude, longitude, 5);
+                positions[i] = new long[] { timestamp,
+                        TrackSegment.toFixed(latitude),
+                        TrackSegment.toFixed(longitude) };
+            }
+        }
+        return positions;
+    }
+
+    private static void assertCoordinate(long fixed, String written) {
+        assertTrue(COORDINATE.matcher(written).matches(), written);
+        assertEquals(BigDecimal.valueOf(fixed, 7), new BigDecimal(written));
+    }
+
+    private static Map<?, ?> parseGeoJson(Path file) throws IOException {
+        try (InputStream in = file.toString().endsWith(".gz")
+                ? new GZIPInputStream(Files.newInputStream(file))
+                : Files.newInputStream(file)) {
+            String json = new String(in.readAllBytes(),
+                    StandardCharsets.UTF_8);
+            return (Map<?, ?>) new JsonReader(json).read();
+        }
+    }
+
+    /**
+     * A minimal strict JSON parser. Numbers are returned as their text, so
+     * that their notation can be checked.
+     */
+    private static final class JsonReader {
+
+        private static final Pattern NUMBER = Pattern
+                .compile("-?(0|[1-9]\\d*)(\\.\\d+)?([eE][+-]?\\d+)?");
+
+        private final String text;
+        private int position;
+
+        JsonReader(String text) {
+            this.text = text;
+        }
+
+        Object read() {
+            Object value = value();
+            skipWhitespace();
+            if (position != text.length()) {
+                throw error("Trailing content");
+            }
+            return value;
+        }
+
+        private Object value() {
+            skipWhitespace();
+            if (position == text.length()) {
+                throw error("Unexpected end");
+            }
+            switch (text.charAt(position)) {
+            case '{':
+                return object();
+            case '[':
+                return array();
+            case '"':
+                return string();
+            default:
+                Matcher number = NUMBER.matcher(text).region(position,
+                        text.length());
+                if (!number.lookingAt()) {
+                    throw error("Unexpected character");
+                }
+                position = number.end();
+                return number.group();
+            }
+        }
+
+        private Map<String, Object> object() {
+            Map<String, Object> object = new LinkedHashMap<>();
+            position++;
+            skipWhitespace();
+            if (text.charAt(position) == '}') {
+                position++;
+                return object;
+            }
+            do {
+                skipWhitespace();
+                String key = string();
+                skipWhitespace();
+                expect(':');
+                if (object.put(key, value()) != null) {
+                    throw error("Duplicate key " + key);
+                }
+                skipWhitespace();
+            } while (text.charAt(position++) == ',');
+            position--;
+            expect('}');
+            return object;
+        }
+
+        private List<Object> array() {
+            List<Object> array = new ArrayList<>();
+            position++;
+            skipWhitespace();
+            if (text.charAt(position) == ']') {
+                position++;
+                return array;
+            }
+            do {
+                array.add(value());
+                skipWhitespace();
+            } while (text.charAt(position++) == ',');
+            position--;
+            expect(']');
+            return array;
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder string = new StringBuilder();
+            while (true) {
+                char c = text.charAt(position++);
+                if (c == '"') {
+                    return string.toString();
+                } else if (c < 0x20) {
+                    throw error("Unescaped control character");
+                } else if (c != '\\') {
+                    string.append(c);
+                    continue;
+                }
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                case '"', '\\', '/' -> string.append(escaped);
+                case 'b' -> string.append('\b');
+                case 'f' -> string.append('\f');
+                case 'n' -> string.append('\n');
+                case 'r' -> string.append('\r');
+                case 't' -> string.append('\t');
+                case 'u' -> {
+                    string.append((char) Integer.parseInt(
+                            text.substring(position, position + 4), 16));
+                    position += 4;
+                }
+                default -> throw error("Invalid escape");
+                }
+            }
+        }
+
+        private void expect(char c) {
+            if (position >= text.length() || text.charAt(position) != c) {
+                throw error("Expected " + c);
+            }
+            position++;
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length()
+                    && " \t\r\n".indexOf(text.charAt(position)) >= 0) {
+                position++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(
+                    message + " at " + position);
+        }
+    }
+
+    private TrackStore store() {
+        return new TrackStore(directory.resolve("tracks"),
+                DataSize.ofKilobytes(64), Duration.ofDays(1),
+                DataSize.ofGigabytes(1));
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.track;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class TrackHistoryTest {
+
+    @Test
+    void keepsPositionsUntilFull() {
+        TrackHistory history = new TrackHistory(4);
+        assertTrue(history.isEmpty());
+        assertEquals(0, history.size());
+        assertFalse(history.contains(0));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, add(history, i));
+        }
+        assertFalse(history.isEmpty());
+        assertEquals(3, history.size());
+        assertEquals(3, history.totalCount());
+        assertEquals(4, history.capacity());
+        for (int index = 0; index < 3; index++) {
+            long sequence = history.sequenceAt(index);
+            assertEquals(2 - index, sequence);
+            assertPosition(history, sequence);
+        }
+        assertFalse(history.contains(-1));
+        assertFalse(history.contains(3));
+    }
+
+    @Test
+    void evictsOldestWhenFull() {
+        TrackHistory history = new TrackHistory(4);
+        // Wraps around the arrays several times
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, add(history, i));
+        }
+
+        assertEquals(4, history.size());
+        assertEquals(10, history.totalCount());
+        for (int index = 0; index < 4; index++) {
+            long sequence = history.sequenceAt(index);
+            assertEquals(9 - index, sequence);
+            assertTrue(history.contains(sequence));
+            assertPosition(history, sequence);
+        }
+        for (long sequence = 0; sequence < 6; sequence++) {
+            assertFalse(history.contains(sequence));
+        }
+        assertFalse(history.contains(10));
+    }
+
+    @Test
+    void rejectsEvictedSequencesAndInvalidIndexes() {
+        TrackHistory history = new TrackHistory(4);
+        for (int i = 0; i < 6; i++) {
+            add(history, i);
+        }
+
+        // Sequence 1 would map to the slot now holding sequence 5
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> history.latitude(1));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> history.timestamp(0));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> history.accuracy(6));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> history.longitude(-1));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> history.sequenceAt(4));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> history.sequenceAt(-1));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> new TrackHistory(1).sequenceAt(0));
+    }
+
+    @Test
+    void historyOfOneKeepsLatest() {
+        TrackHistory history = new TrackHistory(1);
+        add(history, 0);
+        add(history, 1);
+        assertEquals(1, history.size());
+        assertEquals(1, history.sequenceAt(0));
+        assertPosition(history, 1);
+        assertFalse(history.contains(0));
+    }
+
+    @Test
+    void rejectsInvalidCapacity() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new TrackHistory(0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new TrackHistory(-1));
+    }
+
+    private static long add(TrackHistory history, int i) {
+        return history.add(60 + i, 24 + i, i, 1_700_000_000_000L + i);
+    }
+
+    private static void assertPosition(TrackHistory history, long sequence) {
+        assertEquals(60.0 + sequence, history.latitude(sequence));
+        assertEquals(24.0 + sequence, history.longitude(sequence));
+        assertEquals((double) sequence, history.accuracy(sequence));
+        assertEquals(1_700_000_000_000L + sequence,
+                history.timestamp(sequence));
+    }
+}
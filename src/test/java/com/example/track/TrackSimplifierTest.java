@@ -0,0 +1,193 @@
+package com.example.track;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import com.example.geo.GeoMath;
+
+class TrackSimplifierTest {
+
+    private static final double START_LATITUDE = 60.17;
+    private static final double METERS_PER_LONGITUDE_DEGREE = GeoMath.METERS_PER_DEGREE
+            * Math.cos(Math.toRadians(START_LATITUDE));
+    private static final double[] ZOOMS = { 6, 9, 12, 15, 18 };
+
+    @Test
+    void keepsFewPointsOfLongTrack() {
+        double[][] track = track(200_000, 1);
+        TrackSimplifier simplifier = new TrackSimplifier(1000);
+        for (int i = 0; i < track.length; i++) {
+            simplifier.add(track[i][0], track[i][1]);
+            for (double zoom : ZOOMS) {
+                assertTrue(simplifier.forZoom(zoom).size() <= 1000);
+            }
+        }
+
+        assertEquals(track.length, simplifier.inputCount());
+        // Even the most detailed level drops the jitter and straight runs
+        assertTrue(ratio(simplifier.forZoom(18)) < 0.25,
+                "Ratio was " + ratio(simplifier.forZoom(18)));
+        assertTrue(ratio(simplifier.forZoom(6)) < 0.01,
+                "Ratio was " + ratio(simplifier.forZoom(6)));
+    }
+
+    @Test
+    void staysWithinToleranceBeforeCompacting() {
+        double[][] track = track(5000, 2);
+        for (double tolerance : new double[] { 1, 5, 20 }) {
+            StreamingSimplifier simplifier = new StreamingSimplifier(
+                    tolerance, 5000);
+            for (double[] point : track) {
+                simplifier.add(point[0], point[1]);
+            }
+            assertEquals(tolerance, simplifier.tolerance());
+            assertTrue(simplifier.size() < track.length);
+            assertWithin(tolerance, track, simplifier);
+        }
+    }
+
+    @Test
+    void staysWithinTwiceToleranceAfterCompacting() {
+        // Every compaction adds at most its own tolerance, which doubles, to
+        // the distance of the original points
+        double[][] track = track(20_000, 3);
+        StreamingSimplifier simplifier = new StreamingSimplifier(1, 100);
+        for (double[] point : track) {
+            simplifier.add(point[0], point[1]);
+            assertTrue(simplifier.size() <= 100);
+        }
+        assertTrue(simplifier.tolerance() > 1);
+        assertWithin(2 * simplifier.tolerance(), track, simplifier);
+    }
+
+    @Test
+    void modificationCountIgnoresMovesWithinTolerance() {
+        StreamingSimplifier simplifier = new StreamingSimplifier(10, 1000);
+        double changedLatitude = Double.NaN;
+        double changedLongitude = Double.NaN;
+        long changes = 0;
+        long modificationCount = -1;
+        // A straight run with one meter steps
+        for (int i = 0; i < 1000; i++) {
+            double latitude = START_LATITUDE + i / GeoMath.METERS_PER_DEGREE;
+            simplifier.add(latitude, 24.94);
+            if (simplifier.modificationCount() != modificationCount) {
+                modificationCount = simplifier.modificationCount();
+                changedLatitude = latitude;
+                changedLongitude = 24.94;
+                changes++;
+            }
+            assertTrue(distance(changedLatitude, changedLongitude, latitude,
+                    24.94) <= 10);
+        }
+        // Once per tolerance moved, and when a full window is kept
+        assertTrue(changes <= 1000 / 10 + 1000 / 64 + 1,
+                "Changed " + changes + " times");
+    }
+
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void costPerPointDoesNotGrowWithTrackLength() {
+        // At a bounded cost per point, ten times the points take about ten
+        // times as long, which a cost growing with the kept points would not
+        double[][] track = track(100_000, 4);
+        addAll(track, 5);
+        long shortTrack = addAll(track, 1);
+        long longTrack = addAll(track, 10);
+        assertTrue(longTrack < 30 * shortTrack,
+                "Took " + shortTrack + " ns and " + longTrack + " ns");
+    }
+
+    private static long addAll(double[][] track, int rounds) {
+        TrackSimplifier simplifier = new TrackSimplifier(1000);
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            // Every round continues further north, so the track keeps growing
+            double offset = round * 0.5;
+            for (double[] point : track) {
+                simplifier.add(point[0] + offset, point[1]);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Creates a track of one fix per second alternating between straight
+     * runs, zig-zags and standing still, all with GPS noise.
+     */
+    private static double[][] track(int length, long seed) {
+        Random random = new Random(seed);
+        double[][] track = new double[length][];
+        double x = 0;
+        double y = 0;
+        double bearing = 0;
+        for (int i = 0; i < length;) {
+            int kind = random.nextInt(3);
+            int duration = 50 + random.nextInt(300);
+            for (int j = 0; j < duration && i < length; j++, i++) {
+                if (kind == 0) {
+                    bearing += random.nextGaussian() * 0.01;
+                } else if (kind == 1 && j % 10 == 0) {
+                    bearing += j % 20 == 0 ? 1.5 : -1.5;
+                }
+                double speed = kind == 2 ? 0 : 1.4;
+                x += Math.sin(bearing) * speed;
+                y += Math.cos(bearing) * speed;
+                track[i] = new double[] {
+                        START_LATITUDE + (y + random.nextGaussian() * 3)
+                                / GeoMath.METERS_PER_DEGREE,
+                        24.94 + (x + random.nextGaussian() * 3)
+                                / METERS_PER_LONGITUDE_DEGREE };
+            }
+        }
+        return track;
+    }
+
+    private static void assertWithin(double tolerance, double[][] track,
+            StreamingSimplifier simplifier) {
+        for (double[] point : track) {
+            double nearest = Double.MAX_VALUE;
+            for (int i = 1; i < simplifier.size(); i++) {
+                nearest = Math.min(nearest,
+                        distanceToSegment(point[0], point[1],
+                                simplifier.latitude(i - 1),
+                                simplifier.longitude(i - 1),
+                                simplifier.latitude(i),
+                                simplifier.longitude(i)));
+            }
+            assertTrue(nearest <= tolerance + 1e-6,
+                    "Point was " + nearest + " m from the line, tolerance "
+                            + tolerance + " m");
+        }
+    }
+
+    private static double distanceToSegment(double latitude, double longitude,
+            double startLatitude, double startLongitude, double endLatitude,
+            double endLongitude) {
+        double bx = (endLongitude - startLongitude)
+                * METERS_PER_LONGITUDE_DEGREE;
+        double by = (endLatitude - startLatitude) * GeoMath.METERS_PER_DEGREE;
+        double px = (longitude - startLongitude) * METERS_PER_LONGITUDE_DEGREE;
+        double py = (latitude - startLatitude) * GeoMath.METERS_PER_DEGREE;
+        double lengthSquared = bx * bx + by * by;
+        double t = lengthSquared == 0 ? 0
+                : Math.max(0, Math.min(1, (px * bx + py * by) / lengthSquared));
+        return Math.hypot(px - t * bx, py - t * by);
+    }
+
+    private static double distance(double fromLatitude, double fromLongitude,
+            double toLatitude, double toLongitude) {
+        return distanceToSegment(toLatitude, toLongitude, fromLatitude,
+                fromLongitude, fromLatitude, fromLongitude);
+    }
+
+    private static double ratio(StreamingSimplifier level) {
+        return (double) level.size() / level.inputCount();
+    }
+}
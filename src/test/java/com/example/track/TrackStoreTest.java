@@ -0,0 +1,173 @@
+package com.example.track;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+class TrackStoreTest {
+
+    private static final DataSize SEGMENT_SIZE = DataSize.ofBytes(1024);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysAppendedPositionsAcrossSegments() {
+        TrackStore store = store(Duration.ofDays(1), DataSize.ofGigabytes(1));
+        try (TrackWriter writer = store.open("track")) {
+            for (int i = 0; i < 1000; i++) {
+                writer.append(1_700_000_000_000L + i * 1000L,
+                        60.1699 + i * 1e-5, -24.9384 - i * 1e-5, 5 + i % 7);
+            }
+        }
+        assertTrue(segments("track").size() > 1);
+
+        List<double[]> replayed = new ArrayList<>();
+        long count = store.replay("track",
+                (timestamp, latitude, longitude, accuracy) -> replayed.add(
+                        new double[] { timestamp, latitude, longitude,
+                                accuracy }));
+        assertEquals(1000, count);
+        for (int i = 0; i < 1000; i++) {
+            double[] position = replayed.get(i);
+            assertEquals(1_700_000_000_000L + i * 1000L, (long) position[0]);
+            assertEquals(60.1699 + i * 1e-5, position[1], 1e-7);
+            assertEquals(-24.9384 - i * 1e-5, position[2], 1e-7);
+            assertEquals(5 + i % 7, position[3], 0.05);
+        }
+    }
+
+    @Test
+    void closeCutsOffUnusedEndOfSegment() throws IOException {
+        TrackStore store = store(Duration.ofDays(1), DataSize.ofGigabytes(1));
+        try (TrackWriter writer = store.open("track")) {
+            writer.append(1_700_000_000_000L, 60.17, 24.94, 5);
+        }
+        Path segment = segments("track").get(0);
+        assertTrue(Files.size(segment) < SEGMENT_SIZE.toBytes());
+        assertEquals(1, store.replay("track",
+                (timestamp, latitude, longitude, accuracy) -> {
+                }));
+    }
+
+    @Test
+    void failedRollOverIsRetriedOnNextAppend() throws IOException {
+        TrackStore store = store(Duration.ofDays(1), DataSize.ofGigabytes(1));
+        Path trackDirectory = directory.resolve("track");
+        try (TrackWriter writer = store.open("track")) {
+            // The mapped segment stays usable after its file is deleted
+            for (Path segment : segments("track")) {
+                Files.delete(segment);
+            }
+            Files.delete(trackDirectory);
+
+            UncheckedIOException failure = null;
+            for (int i = 0; i < 1000 && failure == null; i++) {
+                try {
+                    writer.append(1_700_000_000_000L + i, 60.17, 24.94, 5);
+                } catch (UncheckedIOException e) {
+                    failure = e;
+                }
+            }
+            assertTrue(failure != null, "Starting a segment should fail");
+
+            Files.createDirectories(trackDirectory);
+            writer.append(1_700_000_001_000L, 60.18, 24.95, 5);
+        }
+        List<Long> timestamps = new ArrayList<>();
+        store.replay("track", (timestamp, latitude, longitude,
+                accuracy) -> timestamps.add(timestamp));
+        assertEquals(List.of(1_700_000_001_000L), timestamps);
+    }
+
+    @Test
+    void deletesTracksOlderThanMaxAge() throws IOException {
+        TrackStore store = store(Duration.ofDays(30), DataSize.ofGigabytes(1));
+        record("old", store);
+        record("recent", store);
+        age("old", Duration.ofDays(31));
+        age("recent", Duration.ofDays(29));
+
+        assertEquals(1, store.deleteExpired());
+        assertEquals(List.of("recent"), store.tracks());
+    }
+
+    @Test
+    void deletesLeastRecentlyWrittenTracksBeyondMaxSize() throws IOException {
+        TrackStore store = store(Duration.ofDays(30), DataSize.ofBytes(250));
+        for (int i = 0; i < 5; i++) {
+            record("track" + i, store);
+            age("track" + i, Duration.ofMinutes(10 - i));
+        }
+        long trackSize = Files.size(segments("track0").get(0));
+
+        store.deleteExpired();
+        List<String> kept = store.tracks();
+        assertEquals(250 / trackSize, kept.size());
+        assertEquals("track4", kept.get(kept.size() - 1));
+        assertFalse(kept.contains("track0"));
+    }
+
+    @Test
+    void keepsTracksWithOpenWriter() throws IOException {
+        TrackStore store = store(Duration.ofDays(30), DataSize.ofBytes(1));
+        try (TrackWriter writer = store.open("open")) {
+            writer.append(1_700_000_000_000L, 60.17, 24.94, 5);
+            age("open", Duration.ofDays(31));
+
+            assertEquals(0, store.deleteExpired());
+            assertEquals(List.of("open"), store.tracks());
+        }
+    }
+
+    @Test
+    void rejectsInvalidTrackIds() {
+        TrackStore store = store(Duration.ofDays(1), DataSize.ofGigabytes(1));
+        assertThrows(IllegalArgumentException.class,
+                () -> store.open("../escape"));
+    }
+
+    private TrackStore store(Duration maxAge, DataSize maxSize) {
+        return new TrackStore(directory, SEGMENT_SIZE, maxAge, maxSize);
+    }
+
+    private static void record(String trackId, TrackStore store) {
+        try (TrackWriter writer = store.open(trackId)) {
+            for (int i = 0; i < 10; i++) {
+                writer.append(1_700_000_000_000L + i * 1000L, 60.17, 24.94,
+                        5);
+            }
+        }
+    }
+
+    private void age(String trackId, Duration age) throws IOException {
+        FileTime time = FileTime.from(Instant.now().minus(age));
+        for (Path segment : segments(trackId)) {
+            Files.setLastModifiedTime(segment, time);
+        }
+    }
+
+    private List<Path> segments(String trackId) {
+        try (Stream<Path> files = Files.list(directory.resolve(trackId))) {
+            return files.sorted().toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.views;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+@Timeout(value = 30, unit = TimeUnit.SECONDS)
+class IngestPipelineTest {
+
+    private final List<Integer> processed = new ArrayList<>();
+    private final AtomicInteger dropped = new AtomicInteger();
+
+    @Test
+    void processesItemsInOrder() throws InterruptedException {
+        IngestPipeline<Integer> pipeline = new IngestPipeline<>("test",
+                100_000, processed::add, dropped::incrementAndGet);
+        List<Integer> offered = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(pipeline.offer(i));
+            offered.add(i);
+            if (i % 1000 == 0) {
+                // Lets the processing thread run empty and start again
+                Thread.sleep(1);
+            }
+        }
+        close(pipeline);
+
+        assertEquals(offered, processed);
+        assertEquals(0, dropped.get());
+    }
+
+    @Test
+    void keepsOrderOfEachProducer() throws Exception {
+        int producers = 4;
+        int items = 20_000;
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        IngestPipeline<Integer> pipeline = new IngestPipeline<>("test",
+                producers * items, item -> {
+                    maxActive.accumulateAndGet(active.incrementAndGet(),
+                            Math::max);
+                    processed.add(item);
+                    active.decrementAndGet();
+                }, dropped::incrementAndGet);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        List<Future<?>> offered = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            offered.add(executor.submit(() -> {
+                for (int i = 0; i < items; i++) {
+                    pipeline.offer(producer * items + i);
+                    if (i % 100 == 0) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : offered) {
+            future.get();
+        }
+        executor.shutdown();
+        close(pipeline);
+
+        assertEquals(producers * items, processed.size());
+        assertEquals(1, maxActive.get());
+        int[] last = new int[producers];
+        Arrays.fill(last, -1);
+        for (int item : processed) {
+            int producer = item / items;
+            assertTrue(item % items > last[producer],
+                    item + " after " + last[producer]);
+            last[producer] = item % items;
+        }
+    }
+
+    @Test
+    void dropsOldestItemsWhenFull() throws InterruptedException {
+        CountDownLatch processing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IngestPipeline<Integer> pipeline = new IngestPipeline<>("test", 10,
+                item -> {
+                    if (item == 0) {
+                        processing.countDown();
+                        await(release);
+                    }
+                    processed.add(item);
+                }, dropped::incrementAndGet);
+        pipeline.offer(0);
+        // The processing thread holds item 0, so the queue fills up
+        processing.await();
+        for (int i = 1; i <= 25; i++) {
+            assertTrue(pipeline.offer(i));
+        }
+        assertEquals(15, dropped.get());
+        release.countDown();
+        close(pipeline);
+
+        List<Integer> expected = new ArrayList<>(List.of(0));
+        for (int i = 16; i <= 25; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, processed);
+        assertEquals(15, dropped.get());
+    }
+
+    @Test
+    void closeRunsFinisherAfterLastItem() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        ConcurrentLinkedQueue<String> events = new ConcurrentLinkedQueue<>();
+        CountDownLatch finished = new CountDownLatch(1);
+        IngestPipeline<Integer> pipeline = new IngestPipeline<>("test", 100,
+                item -> {
+                    await(release);
+                    events.add("item " + item);
+                }, dropped::incrementAndGet);
+        for (int i = 0; i < 5; i++) {
+            pipeline.offer(i);
+        }
+        pipeline.close(() -> {
+            events.add("finisher");
+            finished.countDown();
+        });
+        // Closed to new items and to another finisher
+        assertFalse(pipeline.offer(5));
+        pipeline.close(() -> events.add("second finisher"));
+        release.countDown();
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        // Gives a wrongly started second finisher time to show up
+        Thread.sleep(100);
+
+        assertEquals(List.of("item 0", "item 1", "item 2", "item 3",
+                "item 4", "finisher"), new ArrayList<>(events));
+    }
+
+    @Test
+    void closeRunsFinisherWhenIdle() throws InterruptedException {
+        IngestPipeline<Integer> pipeline = new IngestPipeline<>("test", 10,
+                processed::add, dropped::incrementAndGet);
+        close(pipeline);
+        assertEquals(List.of(), processed);
+    }
+
+    @Test
+    void continuesAfterFailedItem() throws InterruptedException {
+        IngestPipeline<Integer> pipeline = new IngestPipeline<>("test", 10,
+                item -> {
+                    if (item == 1) {
+                        throw new IllegalStateException("Expected");
+                    }
+                    processed.add(item);
+                }, dropped::incrementAndGet);
+        for (int i = 0; i < 3; i++) {
+            pipeline.offer(i);
+        }
+        close(pipeline);
+        assertEquals(List.of(0, 2), processed);
+    }
+
+    @Test
+    void rejectsInvalidCapacity() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new IngestPipeline<Integer>("test", 0, item -> {
+                }, () -> {
+                }));
+    }
+
+    /**
+     * Closes the pipeline and waits until it has processed everything.
+     */
+    private static void close(IngestPipeline<?> pipeline)
+            throws InterruptedException {
+        CountDownLatch finished = new CountDownLatch(1);
+        pipeline.close(finished::countDown);
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}